@@ -94,28 +94,51 @@ public class AnswerDAO {
      * @throws SQLException 若資料庫操作失敗
      */
     public void insertAnswer(Answer answer) throws SQLException {
-        String sql = "INSERT INTO answer (" +
+        try (PreparedStatement ps = conn.prepareStatement(INSERT_SQL)) {
+            bindAnswer(ps, answer);
+            ps.executeUpdate();                          // 執行 INSERT
+        }
+    }
+
+    /**
+     * 以 JDBC 批次一次寫入多筆作答紀錄（單一往返，交易由呼叫端控制）
+     *
+     * @param answers 作答紀錄清單
+     * @throws SQLException 若資料庫操作失敗
+     */
+    public void insertAnswers(List<Answer> answers) throws SQLException {
+        if (answers.isEmpty()) return;
+        try (PreparedStatement ps = conn.prepareStatement(INSERT_SQL)) {
+            for (Answer answer : answers) {
+                bindAnswer(ps, answer);
+                ps.addBatch();                           // 加入批次
+            }
+            ps.executeBatch();                           // 一次執行所有 INSERT
+        }
+    }
+
+    // answer 表的 INSERT 語句（insertAnswer 與 insertAnswers 共用）
+    private static final String INSERT_SQL = "INSERT INTO answer (" +
                      "user_id, quiz_id, selected_option, is_correct, source, " +
                      "created_at, answered_at, question, option1, option2, option3, option4, " +
                      "video_id, answer, answer_index" +
                      ") VALUES (?, ?, ?, ?, ?, NOW(), NOW(), ?, ?, ?, ?, ?, ?, ?, ?)";
 
-        try (PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setInt(1, answer.getUserId());            // 使用者 ID
-            ps.setInt(2, answer.getQuizId());            // 題目 ID
-            ps.setInt(3, answer.getSelectedOption());    // 使用者選擇的選項
-            ps.setBoolean(4, answer.isCorrect());        // 是否正確
-            ps.setString(5, answer.getSource());         // 題目來源
-            ps.setString(6, answer.getQuestion());       // 題目內容
-            ps.setString(7, answer.getOption1());        // 選項 A
-            ps.setString(8, answer.getOption2());        // 選項 B
-            ps.setString(9, answer.getOption3());        // 選項 C
-            ps.setString(10, answer.getOption4());       // 選項 D
-            ps.setString(11, answer.getVideoId());       // 所屬影片
-            ps.setString(12, answer.getAnswer());        // 正確答案文字
-            ps.setInt(13, answer.getAnswerIndex());      // 正確答案的索引（支援 GPT 題）
-            ps.executeUpdate();                          // 執行 INSERT
-        }
+    // 將 Answer 欄位填入 INSERT 參數
+    private void bindAnswer(PreparedStatement ps, Answer answer) throws SQLException {
+        ps.setInt(1, answer.getUserId());            // 使用者 ID
+        ps.setInt(2, answer.getQuizId());            // 題目 ID
+        ps.setInt(3, answer.getSelectedOption());    // 使用者選擇的選項
+        ps.setBoolean(4, answer.isCorrect());        // 是否正確
+        ps.setString(5, answer.getSource());         // 題目來源
+        ps.setString(6, answer.getQuestion());       // 題目內容
+        ps.setString(7, answer.getOption1());        // 選項 A
+        ps.setString(8, answer.getOption2());        // 選項 B
+        ps.setString(9, answer.getOption3());        // 選項 C
+        ps.setString(10, answer.getOption4());       // 選項 D
+        ps.setString(11, answer.getVideoId());       // 所屬影片
+        ps.setString(12, answer.getAnswer());        // 正確答案文字
+        ps.setInt(13, answer.getAnswerIndex());      // 正確答案的索引（支援 GPT 題）
     }
     /**
      * 刪除指定使用者在某部影片中的所有答題紀錄（用於避免重複作答殘留）
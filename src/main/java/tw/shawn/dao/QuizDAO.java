@@ -1,44 +1,121 @@
 package tw.shawn.dao;
 
 import tw.shawn.model.Quiz;
+import tw.shawn.util.AppConfig;
+import tw.shawn.util.BloomFilter;
+import tw.shawn.util.NearDuplicateIndex;
+import tw.shawn.util.QuizCache;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Locale;
+import java.util.Set;
 
 /**
  * QuizDAO 類別：處理 quiz 題目的資料存取與查詢邏輯
+ * 新增題目時會寫入 content_hash（正規化題幹與選項的 SHA-256），由唯一索引搭配 ON DUPLICATE KEY UPDATE 排除重複題目；
+ * 匯入／產題時另以 NearDuplicateIndex（MinHash + LSH）排除只改寫幾個字的近似重複題目。
+ * 連線為 autoCommit 時寫入後立即清除 QuizCache；呼叫端自行管理交易時，需在 commit() 後呼叫 afterCommit()、
+ * rollback() 後呼叫 afterRollback()，避免其他請求在提交前讀到舊資料並寫回快取。
+ * 新增題目的雜湊與簽章同樣等提交後才加入 Bloom filter 與近似重複索引，回滾時捨棄，
+ * 否則回滾掉的題目仍會讓修正後重新上傳的題目被判定為重複。
  */
 public class QuizDAO {
     private final Connection conn;  // 資料庫連線物件
 
+    // 共用的新增語法：內容重複（content_hash 衝突）的題目保持原狀；
+    // 不使用 INSERT IGNORE，外鍵（video_id 不存在）與資料錯誤仍會丟出例外
+    public static final String INSERT_SQL = "INSERT INTO quiz " +
+            "(video_id, question, option1, option2, option3, option4, correct_index, explanation, content_hash) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?) " +
+            "ON DUPLICATE KEY UPDATE content_hash = content_hash";
+
+    // 一次 IN 查詢最多帶入的雜湊數
+    private static final int HASH_PROBE_CHUNK = 1000;
+
+    // 已存在題目雜湊的 Bloom filter（第一次使用時從資料庫載入），判斷「一定是新題目」時可略過資料庫查詢
+    private static volatile BloomFilter hashFilter;
+
+    // 題庫的近似重複索引（第一次使用時從資料庫載入）
+    private static volatile NearDuplicateIndex nearDuplicates;
+
+    // 寫入後尚未提交、提交後需清除快取的影片
+    private final Set<String> pendingVideos = new LinkedHashSet<>();
+    // 寫入後尚未提交、提交後才加入 Bloom filter 的雜湊與加入近似重複索引的簽章（影片 ID → 簽章）
+    private final List<String> pendingHashes = new ArrayList<>();
+    private final Map<String, List<int[]>> pendingSignatures = new LinkedHashMap<>();
+
     // 建構子：接收資料庫連線
     public QuizDAO(Connection conn) {
         this.conn = conn;
     }
 
     /**
-     * 批次新增多筆 quiz 題目到 quiz 資料表中（無重複檢查）
+     * ✅ 呼叫端提交交易後呼叫：清除此交易寫入過的影片快取，並將新增的題目加入重複判斷用的索引
+     */
+    public void afterCommit() {
+        for (String videoId : pendingVideos) {
+            QuizCache.getInstance().invalidateVideo(videoId); // 題庫已變動，清除該影片快取
+        }
+        rememberHashes(pendingHashes);
+        pendingSignatures.forEach(QuizDAO::rememberSignatures);
+        pendingVideos.clear();
+        pendingHashes.clear();
+        pendingSignatures.clear();
+    }
+
+    /**
+     * ✅ 呼叫端回滾交易後呼叫：題庫沒有變動，捨棄待清除的快取與待加入索引的雜湊、簽章
+     */
+    public void afterRollback() {
+        pendingVideos.clear();
+        pendingHashes.clear();
+        pendingSignatures.clear();
+    }
+
+    // 寫入題目後：autoCommit 時已生效，立即清除快取並更新索引；否則等呼叫端提交後再處理
+    private void afterWrite(String videoId) {
+        boolean autoCommit;
+        try {
+            autoCommit = conn.getAutoCommit();
+        } catch (SQLException e) {
+            autoCommit = true; // 無法判斷時立即清除（最多多查一次資料庫）
+        }
+        pendingVideos.add(videoId);
+        if (autoCommit) afterCommit();
+    }
+
+    /**
+     * 批次新增多筆 quiz 題目到 quiz 資料表中（只以一次 IN 查詢排除已存在的題目，不做近似重複檢查）
+     * 失敗時直接丟出例外，由呼叫端回滾交易（不可吞掉例外，否則失敗的影片會隨同一批次一起提交）
      * @param videoId 影片 ID（每題會綁定此影片）
      * @param quizList 題目清單
+     * @return 成功新增的題數
      */
-    public void insertQuizList(String videoId, List<Quiz> quizList) {
-        String sql = "INSERT INTO quiz (video_id, question, option1, option2, option3, option4, correct_index, explanation) VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
-        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+    public int insertQuizList(String videoId, List<Quiz> quizList) throws SQLException {
+        try {
+            Map<String, Quiz> byHash = new LinkedHashMap<>();
             for (Quiz q : quizList) {
-                stmt.setString(1, videoId);                 // 影片 ID
-                stmt.setString(2, q.getQuestion());         // 題目文字
-                stmt.setString(3, q.getOption1());          // 選項 A
-                stmt.setString(4, q.getOption2());          // 選項 B
-                stmt.setString(5, q.getOption3());          // 選項 C
-                stmt.setString(6, q.getOption4());          // 選項 D
-                stmt.setInt(7, q.getCorrectIndex());        // 正確答案索引
-                stmt.setString(8, q.getExplanation());      // 題解
-                stmt.addBatch();                            // 加入批次
-            }
-            stmt.executeBatch(); // 一次執行所有 insert
-        } catch (SQLException e) {
-            e.printStackTrace();
+                byHash.putIfAbsent(contentHash(q), q); // 清單內重複的題目只留第一筆
+            }
+            byHash.keySet().removeAll(findExistingHashes(new ArrayList<>(byHash.keySet()), null));
+            Set<String> inserted = insertNew(videoId, byHash);
+            pendingHashes.addAll(inserted); // 提交後才加入 Bloom filter
+            return inserted.size();
+        } finally {
+            afterWrite(videoId);
         }
     }
 
@@ -134,41 +211,225 @@ public class QuizDAO {
     }
 
     /**
-     * 批次新增 quiz 題目，若題目文字已存在（完全相同）則略過新增
+     * 批次新增 quiz 題目，內容（正規化的題幹與選項）已存在的題目會略過
+     * 流程：計算 content_hash → 清單內去重 → Bloom filter 判斷「可能已存在」的才以一次 IN 查詢確認
+     * → 近似重複檢查（quiz.nearDup.action：reject 略過、flag 只記錄、off 不檢查）
+     * → 其餘以單一批次寫入（同時匯入的競爭情況由唯一索引處理），再確認實際新增的題目
      * @param videoId 影片 ID
      * @param quizzes 題目清單
      * @return 成功新增的題數
      */
     public int insertQuizListAvoidDuplicate(String videoId, List<Quiz> quizzes) throws SQLException {
-        int count = 0;
-        String checkSql = "SELECT COUNT(*) FROM quiz WHERE question = ?";
-        String insertSql = "INSERT INTO quiz (video_id, question, option1, option2, option3, option4, correct_index, explanation) VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+        try {
+            // 清單內重複的題目只留第一筆
+            Map<String, Quiz> byHash = new LinkedHashMap<>();
+            for (Quiz quiz : quizzes) {
+                byHash.putIfAbsent(contentHash(quiz), quiz);
+            }
 
-        try (PreparedStatement checkStmt = conn.prepareStatement(checkSql);
-             PreparedStatement insertStmt = conn.prepareStatement(insertSql)) {
+            // 只有 Bloom filter 判斷可能存在的雜湊才需要查資料庫
+            BloomFilter filter = hashFilter();
+            List<String> maybeExisting = new ArrayList<>();
+            for (String hash : byHash.keySet()) {
+                if (filter.mightContain(hash)) maybeExisting.add(hash);
+            }
+            byHash.keySet().removeAll(findExistingHashes(maybeExisting, null));
+            Map<String, int[]> signatures = filterNearDuplicates(videoId, byHash);
+            if (byHash.isEmpty()) return 0;
 
-            for (Quiz quiz : quizzes) {
-                // 檢查是否已存在相同題目
-                checkStmt.setString(1, quiz.getQuestion());
-                ResultSet rs = checkStmt.executeQuery();
-                rs.next();
-                if (rs.getInt(1) > 0) continue; // 已存在則略過
-
-                List<String> options = quiz.getOptions();
-                insertStmt.setString(1, videoId);
-                insertStmt.setString(2, quiz.getQuestion());
-                insertStmt.setString(3, options.get(0));
-                insertStmt.setString(4, options.get(1));
-                insertStmt.setString(5, options.get(2));
-                insertStmt.setString(6, options.get(3));
-                insertStmt.setInt(7, quiz.getCorrectIndex());
-                insertStmt.setString(8, quiz.getExplanation());
+            Set<String> inserted = insertNew(videoId, byHash);
+            pendingHashes.addAll(inserted); // 提交後才加入 Bloom filter 與近似重複索引
+            signatures.keySet().retainAll(inserted);
+            if (!signatures.isEmpty()) {
+                pendingSignatures.computeIfAbsent(videoId, k -> new ArrayList<>()).addAll(signatures.values());
+            }
+            return inserted.size();
+        } finally {
+            afterWrite(videoId);
+        }
+    }
+
+    /**
+     * 近似重複檢查：與題庫及同批次先前的題目比對 MinHash 簽章
+     * reject 模式下會從 byHash 移除近似重複的題目
+     * @return 留下的題目雜湊 → 簽章（檢查關閉時為空）
+     */
+    private Map<String, int[]> filterNearDuplicates(String videoId, Map<String, Quiz> byHash) throws SQLException {
+        Map<String, int[]> signatures = new LinkedHashMap<>();
+        String action = AppConfig.get("quiz.nearDup.action", "reject");
+        if ("off".equalsIgnoreCase(action) || byHash.isEmpty()) return signatures;
+
+        NearDuplicateIndex index = nearDuplicateIndex();
+        NearDuplicateIndex batch = new NearDuplicateIndex(index.getThreshold());
+        for (Iterator<Map.Entry<String, Quiz>> it = byHash.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<String, Quiz> entry = it.next();
+            Quiz quiz = entry.getValue();
+            int[] sig = NearDuplicateIndex.signature(quiz);
+            NearDuplicateIndex.Match match = index.findNear(sig);
+            if (match == null) match = batch.findNear(sig);
+            if (match != null) {
+                System.out.println("⚠️ 近似重複題目（影片 " + match.videoId
+                        + (match.quizId > 0 ? "，題目 " + match.quizId : "") + "，相似度 " + String.format("%.2f", match.similarity) + "）："
+                        + quiz.getQuestion());
+                if (!"flag".equalsIgnoreCase(action)) {
+                    it.remove();
+                    continue;
+                }
+            }
+            batch.add(sig, -1, videoId);
+            signatures.put(entry.getKey(), sig);
+        }
+        return signatures;
+    }
+
+    /**
+     * 以單一批次寫入 byHash 的題目（需已排除資料庫中既有的雜湊），回傳確認新增的雜湊
+     * 改寫成多列 INSERT 時驅動程式只回傳 SUCCESS_NO_INFO，內容重複而未寫入的列也回報 1，
+     * 因此不以批次回傳值計數，而是寫入後再以同一連線查詢此影片下實際存在的雜湊。
+     */
+    private Set<String> insertNew(String videoId, Map<String, Quiz> byHash) throws SQLException {
+        if (byHash.isEmpty()) return Collections.emptySet();
+        try (PreparedStatement insertStmt = conn.prepareStatement(INSERT_SQL)) {
+            for (Map.Entry<String, Quiz> e : byHash.entrySet()) {
+                bindQuiz(insertStmt, videoId, e.getValue(), e.getKey());
                 insertStmt.addBatch(); // 加入批次
-                count++; // 成功新增計數
             }
-            insertStmt.executeBatch(); // 執行所有新增
+            insertStmt.executeBatch(); // 一次執行所有新增
+        }
+        return new LinkedHashSet<>(findExistingHashes(new ArrayList<>(byHash.keySet()), videoId));
+    }
+
+    // 以 IN 查詢找出資料庫中已存在的雜湊（每次最多 HASH_PROBE_CHUNK 個）；videoId 不為 null 時只找該影片的題目
+    private List<String> findExistingHashes(List<String> hashes, String videoId) throws SQLException {
+        List<String> existing = new ArrayList<>();
+        for (int from = 0; from < hashes.size(); from += HASH_PROBE_CHUNK) {
+            List<String> chunk = hashes.subList(from, Math.min(hashes.size(), from + HASH_PROBE_CHUNK));
+            String sql = "SELECT content_hash FROM quiz WHERE " + (videoId != null ? "video_id = ? AND " : "")
+                    + "content_hash IN (" + String.join(",", Collections.nCopies(chunk.size(), "?")) + ")";
+            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                int p = 1;
+                if (videoId != null) stmt.setString(p++, videoId);
+                for (String hash : chunk) {
+                    stmt.setString(p++, hash);
+                }
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        existing.add(rs.getString(1));
+                    }
+                }
+            }
+        }
+        return existing;
+    }
+
+    /**
+     * 填入 INSERT_SQL 的欄位值
+     */
+    public static void bindQuiz(PreparedStatement stmt, String videoId, Quiz q, String contentHash) throws SQLException {
+        stmt.setString(1, videoId);                 // 影片 ID
+        stmt.setString(2, q.getQuestion());         // 題目文字
+        stmt.setString(3, q.getOption1());          // 選項 A
+        stmt.setString(4, q.getOption2());          // 選項 B
+        stmt.setString(5, q.getOption3());          // 選項 C
+        stmt.setString(6, q.getOption4());          // 選項 D
+        stmt.setInt(7, q.getCorrectIndex());        // 正確答案索引
+        stmt.setString(8, q.getExplanation());      // 題解
+        stmt.setString(9, contentHash);             // 內容雜湊
+    }
+
+    /**
+     * 計算題目的內容雜湊：SHA-256(正規化題幹 + 0x01 + 正規化選項1..4)
+     * 正規化 = 去除空白（含全形空白、換行、Tab）後轉小寫，需與遷移檔 V002 的 SQL 一致
+     */
+    public static String contentHash(Quiz q) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(normalize(q.getQuestion()));
+        sb.append('\u0001').append(normalize(q.getOption1()));
+        sb.append('\u0001').append(normalize(q.getOption2()));
+        sb.append('\u0001').append(normalize(q.getOption3()));
+        sb.append('\u0001').append(normalize(q.getOption4()));
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(md.digest(sb.toString().getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String normalize(String s) {
+        if (s == null) return "";
+        StringBuilder sb = new StringBuilder(s.length());
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == ' ' || c == '\u3000' || c == '\t' || c == '\n' || c == '\r') continue;
+            sb.append(c);
+        }
+        return sb.toString().toLowerCase(Locale.ROOT);
+    }
+
+    // 取得（必要時載入）已存在題目雜湊的 Bloom filter
+    private BloomFilter hashFilter() throws SQLException {
+        BloomFilter f = hashFilter;
+        if (f != null) return f;
+        synchronized (QuizDAO.class) {
+            if (hashFilter == null) {
+                BloomFilter loaded = new BloomFilter(
+                        AppConfig.getLong("quiz.bloom.expectedItems", 1_000_000),
+                        Double.parseDouble(AppConfig.get("quiz.bloom.fpp", "0.01")));
+                try (Statement stmt = conn.createStatement();
+                     ResultSet rs = stmt.executeQuery("SELECT content_hash FROM quiz WHERE content_hash IS NOT NULL")) {
+                    while (rs.next()) {
+                        loaded.add(rs.getString(1));
+                    }
+                }
+                hashFilter = loaded;
+            }
+            return hashFilter;
+        }
+    }
+
+    // 取得（必要時載入）題庫的近似重複索引
+    private NearDuplicateIndex nearDuplicateIndex() throws SQLException {
+        NearDuplicateIndex index = nearDuplicates;
+        if (index != null) return index;
+        synchronized (QuizDAO.class) {
+            if (nearDuplicates == null) {
+                long start = System.currentTimeMillis();
+                NearDuplicateIndex loaded = new NearDuplicateIndex(
+                        Double.parseDouble(AppConfig.get("quiz.nearDup.threshold", "0.6")));
+                try (Statement stmt = conn.createStatement();
+                     ResultSet rs = stmt.executeQuery("SELECT id, video_id, question, option1, option2, option3, option4 FROM quiz")) {
+                    while (rs.next()) {
+                        int[] sig = NearDuplicateIndex.signature(rs.getString("question"),
+                                rs.getString("option1"), rs.getString("option2"),
+                                rs.getString("option3"), rs.getString("option4"));
+                        loaded.add(sig, rs.getInt("id"), rs.getString("video_id"));
+                    }
+                }
+                nearDuplicates = loaded;
+                System.out.println("✅ 近似重複索引載入完成：" + loaded.size() + " 題，耗時 "
+                        + (System.currentTimeMillis() - start) + " ms");
+            }
+            return nearDuplicates;
+        }
+    }
+
+    // 已提交的題目簽章加入近似重複索引
+    private static void rememberSignatures(String videoId, Collection<int[]> signatures) {
+        NearDuplicateIndex index = nearDuplicates;
+        if (index == null) return;
+        for (int[] sig : signatures) {
+            index.add(sig, -1, videoId);
+        }
+    }
+
+    // 已提交的雜湊加入 Bloom filter（尚未載入時不需處理，載入時會從資料庫讀到）
+    private static void rememberHashes(Collection<String> hashes) {
+        BloomFilter f = hashFilter;
+        if (f == null) return;
+        for (String h : hashes) {
+            f.add(h);
         }
-        return count;
     }
 
     /**
@@ -189,6 +450,36 @@ public class QuizDAO {
         return null;
     }
 
+    /**
+     * 以單一 IN 查詢一次取得多題 quiz（取代逐題呼叫 getQuizById）
+     * @param quizIds 題目 ID 集合（可含重複，空集合直接回傳空 Map）
+     * @return quizId → Quiz 的對照表（查無的 ID 不會出現在 Map 中）
+     */
+    public Map<Integer, Quiz> getQuizzesByIds(Collection<Integer> quizIds) throws SQLException {
+        Map<Integer, Quiz> map = new HashMap<>();
+        List<Integer> ids = quizIds.stream().distinct().toList();
+        if (ids.isEmpty()) return map;
+
+        StringBuilder sql = new StringBuilder("SELECT * FROM quiz WHERE id IN (");
+        for (int i = 0; i < ids.size(); i++) {
+            sql.append(i == 0 ? "?" : ", ?");
+        }
+        sql.append(")");
+
+        try (PreparedStatement stmt = conn.prepareStatement(sql.toString())) {
+            for (int i = 0; i < ids.size(); i++) {
+                stmt.setInt(i + 1, ids.get(i));
+            }
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    Quiz quiz = toQuiz(rs);
+                    map.put(quiz.getId(), quiz);
+                }
+            }
+        }
+        return map;
+    }
+
     /**
      * 查詢指定 quizId 與來源的題目正確選項索引
      * @param quizId 題目 ID
@@ -2,9 +2,18 @@ package tw.shawn.dao;
 
 // 匯入 Video 模型類別與 JDBC 所需套件
 import tw.shawn.model.Video;
+import tw.shawn.util.AppConfig;
+import tw.shawn.util.LatestVideoCache;
+import tw.shawn.util.VideoCatalog;
+import tw.shawn.util.VideoCursor;
+import tw.shawn.util.YouTubeRef;
+import java.nio.charset.StandardCharsets;
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * VideoDAO：負責對 video 資料表進行 CRUD 操作（建立、讀取、更新、刪除）
@@ -20,27 +29,122 @@ public class VideoDAO {
 
     /**
      * ✅ 新增單筆影片資料至資料表
-     * @param v Video 物件，包含影片所有屬性
+     * 主鍵 id 沒有預設值，由 nextVideoId 配號（與配號的鎖定讀取在同一個交易內）
+     * 寫入時以 YouTubeRef 解析一次 video_id（可能是網址），標準 ID／播放清單／起始秒數存入 yt_* 欄位
+     * @param v Video 物件，包含影片所有屬性；新增成功後會填入配到的 id
      */
     public void insertVideo(Video v) throws SQLException {
-        String sql = "INSERT INTO video (video_id, title, description, thumbnail_url, published_at) VALUES (?, ?, ?, ?, ?)";
+        String sql = "INSERT INTO video (id, video_id, title, description, thumbnail_url, published_at, " +
+                     "yt_video_id, yt_playlist_id, yt_start_sec, yt_parsed) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, 1)";
+        boolean manageTx = conn.getAutoCommit();
+        if (manageTx) conn.setAutoCommit(false);
         try (PreparedStatement stmt = conn.prepareStatement(sql)) {
-            stmt.setString(1, v.getVideoId());         // 設定 YouTube video_id
-            stmt.setString(2, v.getTitle());           // 影片標題
-            stmt.setString(3, v.getDescription());     // 影片描述
-            stmt.setString(4, v.getThumbnailUrl());    // 縮圖網址
-            stmt.setString(5, v.getPublishedAt());     // 發布時間（字串格式）
+            String id = String.valueOf(nextVideoId());
+            stmt.setString(1, id);                     // 主鍵 id
+            stmt.setString(2, v.getVideoId());         // 設定 YouTube video_id
+            stmt.setString(3, v.getTitle());           // 影片標題
+            stmt.setString(4, v.getDescription());     // 影片描述
+            stmt.setString(5, v.getThumbnailUrl());    // 縮圖網址
+            stmt.setString(6, v.getPublishedAt());     // 發布時間（字串格式）
+            bindYouTubeRef(stmt, 7, YouTubeRef.parse(v.getVideoId())); // 解析後的 YouTube 資訊
             stmt.executeUpdate();                      // 執行新增
+            if (manageTx) conn.commit();
+            v.setId(id);
+        } catch (SQLException e) {
+            if (manageTx) conn.rollback();
+            throw e;
+        } finally {
+            if (manageTx) conn.setAutoCommit(true);
         }
+        VideoCatalog.getInstance().invalidate();       // 影片清單已變動，下次讀取時重新載入快照
+        LatestVideoCache.getInstance().invalidate();   // 最新影片可能已改變
     }
 
     /**
-     * ✅ 批次新增影片資料（呼叫 insertVideo 重複執行）
+     * ✅ 批次新增或更新影片資料（依 video_id 唯一鍵 upsert，重複匯入同一頻道不會失敗）
+     * 每 video.import.batchSize 筆（預設 500）組成一個 JDBC batch，搭配連線參數 rewriteBatchedStatements
+     * 由驅動程式改寫成一句多列 INSERT；連線為 autoCommit 時每個 chunk 各自一個交易，
+     * 失敗時只回滾該 chunk（先前的 chunk 已提交），呼叫端已開啟交易時則交由呼叫端提交。
+     * 每個 chunk 開始時以 nextVideoId 取得起始 id 並依序配號；video_id 已存在的影片只更新內容，不改變原本的 id。
      * @param videos 多筆 Video 物件清單
+     * @return 寫入（新增或更新）的筆數
      */
-    public void insertVideoList(List<Video> videos) throws SQLException {
-        for (Video v : videos) {
-            insertVideo(v); // 每筆都呼叫 insertVideo()
+    public int insertVideoList(List<Video> videos) throws SQLException {
+        String sql = "INSERT INTO video (id, video_id, title, description, thumbnail_url, published_at, " +
+                     "yt_video_id, yt_playlist_id, yt_start_sec, yt_parsed) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, 1) " +
+                     "ON DUPLICATE KEY UPDATE title = VALUES(title), description = VALUES(description), " +
+                     "thumbnail_url = VALUES(thumbnail_url), published_at = VALUES(published_at), " +
+                     "yt_video_id = VALUES(yt_video_id), yt_playlist_id = VALUES(yt_playlist_id), " +
+                     "yt_start_sec = VALUES(yt_start_sec), yt_parsed = 1";
+        int batchSize = Math.max(1, AppConfig.getInt("video.import.batchSize", 500));
+        boolean manageTx = conn.getAutoCommit();
+        if (manageTx) conn.setAutoCommit(false);
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            int written = 0;
+            for (int from = 0; from < videos.size(); from += batchSize) {
+                List<Video> chunk = videos.subList(from, Math.min(videos.size(), from + batchSize));
+                try {
+                    long nextId = nextVideoId(); // 鎖定到此 chunk 提交為止，並行匯入不會配到相同的 id
+                    for (Video v : chunk) {
+                        stmt.setString(1, String.valueOf(nextId++)); // 主鍵 id（video_id 已存在時不使用）
+                        stmt.setString(2, v.getVideoId());         // YouTube video_id（唯一鍵）
+                        stmt.setString(3, v.getTitle());           // 影片標題
+                        stmt.setString(4, v.getDescription());     // 影片描述
+                        stmt.setString(5, v.getThumbnailUrl());    // 縮圖網址
+                        stmt.setString(6, v.getPublishedAt());     // 發布時間（字串格式）
+                        bindYouTubeRef(stmt, 7, YouTubeRef.parse(v.getVideoId()));
+                        stmt.addBatch();
+                    }
+                    stmt.executeBatch(); // 一個 chunk 一次往返
+                    if (manageTx) conn.commit();
+                } catch (SQLException e) {
+                    if (manageTx) conn.rollback();
+                    System.err.println("⚠️ 影片批次寫入失敗（第 " + (from + 1) + "～" + (from + chunk.size()) + " 筆）：" + e.getMessage());
+                    throw e;
+                }
+                written += chunk.size();
+            }
+            return written;
+        } finally {
+            if (manageTx) conn.setAutoCommit(true);
+            VideoCatalog.getInstance().invalidate(); // 影片清單已變動（可能只有部分 chunk 成功）
+            LatestVideoCache.getInstance().invalidate();
+        }
+    }
+
+    /**
+     * 下一個可用的主鍵 id（video.id 為沒有預設值的字串主鍵，既有資料為 '1'、'10' 等數字字串）
+     * 以 FOR UPDATE 鎖定讀取，需在交易內呼叫：並行新增時後到的交易會等待先前的交易提交後才取號
+     */
+    private long nextVideoId() throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COALESCE(MAX(CAST(id AS UNSIGNED)), 0) FROM video FOR UPDATE")) {
+            return (rs.next() ? rs.getLong(1) : 0) + 1;
+        }
+    }
+
+    // 依序填入 yt_video_id、yt_playlist_id、yt_start_sec
+    private static void bindYouTubeRef(PreparedStatement stmt, int index, YouTubeRef ref) throws SQLException {
+        stmt.setString(index, ref.getVideoId());
+        stmt.setString(index + 1, ref.getPlaylistId());
+        if (ref.getStartSeconds() != null) stmt.setInt(index + 2, ref.getStartSeconds());
+        else stmt.setNull(index + 2, Types.INTEGER);
+    }
+
+    /**
+     * 讀取解析後的 YouTube 欄位；尚未回填（yt_parsed = 0）的舊資料改為即時解析 video_id 與 youtube_url
+     */
+    private static void readYouTubeRef(ResultSet rs, Video v) throws SQLException {
+        if (rs.getBoolean("yt_parsed")) {
+            v.setCanonicalVideoId(rs.getString("yt_video_id"));
+            v.setPlaylistId(rs.getString("yt_playlist_id"));
+            int start = rs.getInt("yt_start_sec");
+            v.setStartSeconds(rs.wasNull() ? null : start);
+        } else {
+            YouTubeRef ref = YouTubeRef.of(rs.getString("video_id"), rs.getString("youtube_url"));
+            v.setCanonicalVideoId(ref.getVideoId());
+            v.setPlaylistId(ref.getPlaylistId());
+            v.setStartSeconds(ref.getStartSeconds());
         }
     }
 
@@ -62,6 +166,7 @@ public class VideoDAO {
                     v.setDescription(rs.getString("description"));   // 描述
                     v.setThumbnailUrl(rs.getString("thumbnail_url"));// 縮圖
                     v.setPublishedAt(rs.getString("published_at"));  // 發布日期
+                    readYouTubeRef(rs, v);                           // 解析後的 YouTube 資訊
                     return v;
                 }
             }
@@ -94,6 +199,111 @@ public class VideoDAO {
         return list; // 回傳影片清單
     }
 
+    // 可投影的欄位：JSON 屬性名稱 → 資料表欄位
+    public static final Map<String, String> FIELD_COLUMNS = Map.of(
+            "id", "id",
+            "videoId", "video_id",
+            "title", "title",
+            "description", "description",
+            "thumbnailUrl", "thumbnail_url",
+            "publishedAt", "published_at");
+
+    /**
+     * ✅ 以 keyset pagination 取得一頁影片，只查詢需要的欄位
+     * 條件為「排在游標之後」＋ LIMIT，不使用 OFFSET；排序與 VideoCatalog.comparator 相同，最後都以 video_id 比較
+     * @param sortBy 排序欄位（title、published、videoId，空白為標題長度排序）
+     * @param after 上一頁的游標（null 表示第一頁）
+     * @param limit 每頁筆數
+     * @param fields 要回傳的欄位（FIELD_COLUMNS 的鍵，null 表示全部）；排序需要的欄位會自動一併查詢
+     * @return 該頁影片（未查詢的欄位為 null）
+     */
+    public List<Video> getVideosPage(String sortBy, VideoCursor after, int limit, Set<String> fields) throws SQLException {
+        String sort = VideoCursor.normalizeSort(sortBy);
+
+        Set<String> columns = new LinkedHashSet<>();
+        columns.add("video_id");
+        if (sort.equals(VideoCursor.SORT_DEFAULT) || sort.equals(VideoCursor.SORT_TITLE)) columns.add("title");
+        if (sort.equals(VideoCursor.SORT_PUBLISHED)) columns.add("published_at");
+        for (String f : fields == null ? FIELD_COLUMNS.keySet() : fields) {
+            String column = FIELD_COLUMNS.get(f);
+            if (column != null) columns.add(column);
+        }
+
+        List<Object> params = new ArrayList<>();
+        String where = "";
+        String orderBy;
+        switch (sort) {
+            case VideoCursor.SORT_DEFAULT:
+                orderBy = "LENGTH(title), title, video_id";
+                if (after != null) {
+                    if (after.title == null) {
+                        where = "(title IS NULL AND video_id > ?) OR title IS NOT NULL";
+                        params.add(after.videoId);
+                    } else {
+                        where = "LENGTH(title) > ? OR (LENGTH(title) = ? AND (title > ? OR (title = ? AND video_id > ?)))";
+                        int bytes = after.title.getBytes(StandardCharsets.UTF_8).length;
+                        params.addAll(List.of(bytes, bytes, after.title, after.title, after.videoId));
+                    }
+                }
+                break;
+            case VideoCursor.SORT_PUBLISHED:
+                orderBy = "published_at DESC, video_id DESC"; // DESC 時 NULL 排最後
+                if (after != null) {
+                    if (after.publishedAt == null) {
+                        where = "published_at IS NULL AND video_id < ?";
+                        params.add(after.videoId);
+                    } else {
+                        where = "published_at < ? OR (published_at = ? AND video_id < ?) OR published_at IS NULL";
+                        params.addAll(List.of(after.publishedAt, after.publishedAt, after.videoId));
+                    }
+                }
+                break;
+            case VideoCursor.SORT_VIDEO_ID:
+                orderBy = "video_id";
+                if (after != null) {
+                    where = "video_id > ?";
+                    params.add(after.videoId);
+                }
+                break;
+            default:
+                orderBy = "title, video_id";
+                if (after != null) {
+                    if (after.title == null) {
+                        where = "(title IS NULL AND video_id > ?) OR title IS NOT NULL";
+                        params.add(after.videoId);
+                    } else {
+                        where = "title > ? OR (title = ? AND video_id > ?)";
+                        params.addAll(List.of(after.title, after.title, after.videoId));
+                    }
+                }
+        }
+
+        String sql = "SELECT " + String.join(", ", columns) + " FROM video"
+                + (where.isEmpty() ? "" : " WHERE " + where)
+                + " ORDER BY " + orderBy + " LIMIT ?";
+        params.add(limit);
+
+        List<Video> list = new ArrayList<>();
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            for (int i = 0; i < params.size(); i++) {
+                stmt.setObject(i + 1, params.get(i));
+            }
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    Video v = new Video();
+                    if (columns.contains("id")) v.setId(rs.getString("id"));
+                    v.setVideoId(rs.getString("video_id"));
+                    if (columns.contains("title")) v.setTitle(rs.getString("title"));
+                    if (columns.contains("description")) v.setDescription(rs.getString("description"));
+                    if (columns.contains("thumbnail_url")) v.setThumbnailUrl(rs.getString("thumbnail_url"));
+                    if (columns.contains("published_at")) v.setPublishedAt(rs.getString("published_at"));
+                    list.add(v);
+                }
+            }
+        }
+        return list;
+    }
+
     /**
      * ✅ 根據主鍵 id 取得對應影片的 YouTube 網址（video 表應包含 youtube_url 欄位）
      * @param id 資料庫主鍵
@@ -125,6 +335,7 @@ public class VideoDAO {
                 v.setId(rs.getString("id"));             // 影片主鍵
                 v.setVideoId(rs.getString("video_id"));  // YouTube ID
                 v.setTitle(rs.getString("title"));       // 標題
+                readYouTubeRef(rs, v);                   // 解析後的 YouTube 資訊
                 return v;
             }
         }
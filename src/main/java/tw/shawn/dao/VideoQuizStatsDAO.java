@@ -0,0 +1,164 @@
+package tw.shawn.dao;
+
+import tw.shawn.model.Answer;
+import tw.shawn.model.VideoQuizStats;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * VideoQuizStatsDAO：負責 video_quiz_stats（每部影片的測驗統計彙總）與 video_quiz_learner 的存取
+ * - 作答送出時由 recordSubmission 在同一個交易內增量更新，統計與 answer／quiz_results 同時提交或回滾
+ * - 查詢只讀彙總列，不需掃描 quiz_results／answer
+ * - rebuild 可從 quiz_results 重新計算合計（*）列（統計漂移或初次部署時使用）；
+ *   各來源（local／gpt）列只由作答增量累計，不參與重建
+ * - 來源只接受 local 與 gpt（與 SubmitAnswerServlet 判斷方式相同：非 gpt 一律視為 local），不會因任意字串產生新列
+ */
+public class VideoQuizStatsDAO {
+
+    public static final String ALL_SOURCES = "*";  // 所有來源合計的 source 值
+    public static final String SOURCE_LOCAL = "local";
+    public static final String SOURCE_GPT = "gpt";
+
+    private final Connection conn;  // 資料庫連線物件
+
+    public VideoQuizStatsDAO(Connection conn) {
+        this.conn = conn;
+    }
+
+    /**
+     * ✅ 記錄一次作答送出：更新合計與各來源的作答次數、題數、答對數，第一次作答的使用者計入 learners
+     * 需在呼叫端的交易內執行（與寫入 answer／quiz_results 同一個連線）。
+     * @param userId 使用者 ID
+     * @param videoId 影片 ID
+     * @param answers 本次送出的作答（已批改）
+     */
+    public void recordSubmission(int userId, String videoId, List<Answer> answers) throws SQLException {
+        // source → {題數, 答對數}；TreeMap 固定更新順序（* 排最前），同時作答的交易鎖定順序一致
+        Map<String, int[]> bySource = new TreeMap<>();
+        int[] all = new int[2];
+        bySource.put(ALL_SOURCES, all);
+        for (Answer a : answers) {
+            int[] counts = bySource.computeIfAbsent(normalizeSource(a.getSource()), s -> new int[2]);
+            counts[0]++;
+            all[0]++;
+            if (a.isCorrect()) {
+                counts[1]++;
+                all[1]++;
+            }
+        }
+
+        String learnerSql = "INSERT IGNORE INTO video_quiz_learner (video_id, source, user_id) VALUES (?, ?, ?)";
+        String statsSql = "INSERT INTO video_quiz_stats (video_id, source, attempts, total_questions, total_correct, learners) " +
+                          "VALUES (?, ?, 1, ?, ?, ?) " +
+                          "ON DUPLICATE KEY UPDATE attempts = attempts + 1, " +
+                          "total_questions = total_questions + VALUES(total_questions), " +
+                          "total_correct = total_correct + VALUES(total_correct), " +
+                          "learners = learners + VALUES(learners)";
+        try (PreparedStatement learner = conn.prepareStatement(learnerSql);
+             PreparedStatement stats = conn.prepareStatement(statsSql)) {
+            for (Map.Entry<String, int[]> e : bySource.entrySet()) {
+                // 逐筆執行：需要每一列的影響筆數判斷是否為新的使用者（批次改寫後無法取得）
+                learner.setString(1, videoId);
+                learner.setString(2, e.getKey());
+                learner.setInt(3, userId);
+                boolean firstTime = learner.executeUpdate() == 1;
+
+                stats.setString(1, videoId);
+                stats.setString(2, e.getKey());
+                stats.setInt(3, e.getValue()[0]);
+                stats.setInt(4, e.getValue()[1]);
+                stats.setInt(5, firstTime ? 1 : 0);
+                stats.addBatch();
+            }
+            stats.executeBatch();
+        }
+    }
+
+    /**
+     * ✅ 查詢某部影片的統計（合計與各來源）
+     * @return source → 統計；尚無作答時為空 Map
+     */
+    public Map<String, VideoQuizStats> getStats(String videoId) throws SQLException {
+        String sql = "SELECT video_id, source, attempts, total_questions, total_correct, learners " +
+                     "FROM video_quiz_stats WHERE video_id = ?";
+        Map<String, VideoQuizStats> map = new TreeMap<>();
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setString(1, videoId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    VideoQuizStats s = new VideoQuizStats();
+                    s.setVideoId(rs.getString("video_id"));
+                    s.setSource(rs.getString("source"));
+                    s.setAttempts(rs.getInt("attempts"));
+                    s.setTotalQuestions(rs.getLong("total_questions"));
+                    s.setTotalCorrect(rs.getLong("total_correct"));
+                    s.setLearners(rs.getInt("learners"));
+                    map.put(s.getSource(), s);
+                }
+            }
+        }
+        return map;
+    }
+
+    /**
+     * ✅ 統計表是否為空（用於啟動時判斷是否需要初次重建）
+     */
+    public boolean isEmpty() throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT 1 FROM video_quiz_stats LIMIT 1")) {
+            return !rs.next();
+        }
+    }
+
+    /**
+     * ✅ 從 quiz_results 重建合計（*）統計（在單一交易內清空後重新計算）
+     * 每筆成績為一次作答，重建結果與增量更新的意義相同。
+     * 各來源的統計不重建：answer 只保留每位使用者在每部影片最後一次的作答，無法還原各來源的送出次數，
+     * 因此各來源列保持增量累計的數值（初次部署時從 0 開始，只反映之後的作答）。
+     * 重建期間送出的作答可能被重複或漏算，建議在離峰時段執行。
+     * @return 重建後的合計列數
+     */
+    public int rebuild() throws SQLException {
+        String[] statements = {
+            "DELETE FROM video_quiz_learner WHERE source = '" + ALL_SOURCES + "'",
+            "DELETE FROM video_quiz_stats WHERE source = '" + ALL_SOURCES + "'",
+            "INSERT INTO video_quiz_stats (video_id, source, attempts, total_questions, total_correct, learners) " +
+                "SELECT video_id, '" + ALL_SOURCES + "', COUNT(*), COALESCE(SUM(total_questions), 0), " +
+                "COALESCE(SUM(correct_answers), 0), COUNT(DISTINCT user_id) " +
+                "FROM quiz_results GROUP BY video_id",
+            "INSERT INTO video_quiz_learner (video_id, source, user_id) " +
+                "SELECT DISTINCT video_id, '" + ALL_SOURCES + "', user_id FROM quiz_results",
+        };
+
+        boolean manageTx = conn.getAutoCommit();
+        if (manageTx) conn.setAutoCommit(false);
+        try (Statement stmt = conn.createStatement()) {
+            for (String sql : statements) {
+                stmt.executeUpdate(sql);
+            }
+            int rows;
+            try (ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM video_quiz_stats WHERE source = '" + ALL_SOURCES + "'")) {
+                rows = rs.next() ? rs.getInt(1) : 0;
+            }
+            if (manageTx) conn.commit();
+            return rows;
+        } catch (SQLException e) {
+            if (manageTx) conn.rollback();
+            throw e;
+        } finally {
+            if (manageTx) conn.setAutoCommit(true);
+        }
+    }
+
+    // 來源正規化：只接受 gpt 與 local，其他值（含空值與用戶端任意字串）一律視為 local
+    private static String normalizeSource(String source) {
+        return source != null && SOURCE_GPT.equalsIgnoreCase(source.trim()) ? SOURCE_GPT : SOURCE_LOCAL;
+    }
+}
@@ -0,0 +1,82 @@
+package tw.shawn.dao;
+
+import tw.shawn.model.WatchProgress;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * WatchProgressDAO：負責 watch_progress 資料表的寫入與查詢
+ * 寫入一律以 (user_id, video_id) 唯一鍵 upsert，只保留最新的播放位置；updated_at 由資料庫自動更新。
+ */
+public class WatchProgressDAO {
+    private static final String UPSERT_SQL =
+            "INSERT INTO watch_progress (user_id, video_id, current_time_sec) VALUES (?, ?, ?) " +
+            "ON DUPLICATE KEY UPDATE current_time_sec = VALUES(current_time_sec)";
+
+    private final Connection conn;  // 資料庫連線物件
+
+    public WatchProgressDAO(Connection conn) {
+        this.conn = conn;
+    }
+
+    /**
+     * ✅ 批次寫入多筆觀看進度（搭配連線參數 rewriteBatchedStatements 由驅動程式改寫成一句多列 INSERT）
+     * 連線為 autoCommit 時整批在同一個交易內完成，失敗時全部回滾；呼叫端已開啟交易時則交由呼叫端提交。
+     * @param rows 觀看進度（同一組 user_id + video_id 只能出現一次）
+     * @return 寫入的筆數
+     */
+    public int upsertBatch(List<WatchProgress> rows) throws SQLException {
+        if (rows.isEmpty()) return 0;
+        boolean manageTx = conn.getAutoCommit();
+        if (manageTx) conn.setAutoCommit(false);
+        try (PreparedStatement stmt = conn.prepareStatement(UPSERT_SQL)) {
+            for (WatchProgress p : rows) {
+                bind(stmt, p);
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+            if (manageTx) conn.commit();
+            return rows.size();
+        } catch (SQLException e) {
+            if (manageTx) conn.rollback();
+            throw e;
+        } finally {
+            if (manageTx) conn.setAutoCommit(true);
+        }
+    }
+
+    /**
+     * ✅ 寫入單筆觀看進度
+     */
+    public void upsert(WatchProgress p) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(UPSERT_SQL)) {
+            bind(stmt, p);
+            stmt.executeUpdate();
+        }
+    }
+
+    /**
+     * ✅ 查詢某使用者在某部影片的播放位置
+     * @return 秒數，沒有紀錄時回傳 null
+     */
+    public Integer getCurrentTimeSec(int userId, int videoId) throws SQLException {
+        String sql = "SELECT current_time_sec FROM watch_progress WHERE user_id = ? AND video_id = ?";
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setInt(1, userId);
+            stmt.setInt(2, videoId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? rs.getInt(1) : null;
+            }
+        }
+    }
+
+    private static void bind(PreparedStatement stmt, WatchProgress p) throws SQLException {
+        stmt.setInt(1, p.getUserId());          // 使用者 ID
+        stmt.setInt(2, p.getVideoId());         // 影片主鍵 ID
+        stmt.setInt(3, p.getCurrentTimeSec());  // 播放位置（秒）
+    }
+}
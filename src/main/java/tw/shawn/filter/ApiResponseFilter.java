@@ -0,0 +1,283 @@
+package tw.shawn.filter;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.annotation.WebFilter;
+import jakarta.servlet.http.HttpFilter;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+import tw.shawn.util.AppConfig;
+import tw.shawn.util.LatestVideoCache;
+import tw.shawn.util.QuizCache;
+import tw.shawn.util.VideoCatalog;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.SQLException;
+import java.util.HexFormat;
+import java.util.Locale;
+import java.util.Set;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * ApiResponseFilter：/api/* 回應的壓縮與條件式 GET（ETag / 304）
+ * - ETag：有版本號的端點（videoList 用 VideoCatalog 版本、getLatestVideo 用 LatestVideoCache 版本，
+ *   loadQuiz 用 QuizCache 版本）
+ *   在進入 Servlet 前就能算出 ETag，If-None-Match 相符時直接回 304，不會查資料庫也不會產生回應內容；
+ *   其他 GET 端點則以回應內容的 SHA-256 計算 ETag（仍可省下傳輸量）
+ * - 壓縮：客戶端支援 gzip 且內容超過 http.gzip.minBytes（預設 1024）時以 gzip 回傳
+ * - 未自行設定 Cache-Control 的回應一律加上 no-cache（可快取但每次都要以 ETag 確認）
+ * SSE 串流（text/event-stream）與會觸發產題的 /api/autoGenerateQuiz 不經過緩衝，直接交給 Servlet 輸出。
+ */
+@WebFilter("/api/*")
+public class ApiResponseFilter extends HttpFilter {
+
+    // 直接串流輸出、不可緩衝的端點（小寫）
+    private static final Set<String> STREAMING_PATHS = Set.of("/api/autogeneratequizstream");
+
+    // 有副作用的 GET（觸發付費產題並可能等待數十秒），不緩衝也不計算 ETag，回應一律不可快取（小寫）
+    private static final Set<String> NO_CACHE_PATHS = Set.of("/api/autogeneratequiz");
+
+    // 重新啟動後版本號會從頭開始，ETag 加上啟動時間避免與舊版本混淆
+    private static final String BOOT_ID = Long.toString(System.currentTimeMillis(), 36);
+
+    private static final String GZIP_SUFFIX = "-gz"; // gzip 與未壓縮的內容不同，ETag 也需不同
+
+    private final boolean enabled = AppConfig.getBoolean("http.filter.enabled", true);
+    private final int gzipMinBytes = AppConfig.getInt("http.gzip.minBytes", 1024);
+
+    @Override
+    protected void doFilter(HttpServletRequest req, HttpServletResponse resp, FilterChain chain)
+            throws IOException, ServletException {
+        String path = req.getRequestURI().substring(req.getContextPath().length()).toLowerCase(Locale.ROOT);
+        String accept = req.getHeader("Accept");
+        if (!enabled || STREAMING_PATHS.contains(path) || (accept != null && accept.contains("text/event-stream"))) {
+            chain.doFilter(req, resp);
+            return;
+        }
+        if (NO_CACHE_PATHS.contains(path)) {
+            resp.setHeader("Cache-Control", "no-store");
+            chain.doFilter(req, resp);
+            return;
+        }
+
+        boolean get = "GET".equals(req.getMethod());
+        boolean acceptsGzip = acceptsGzip(req.getHeader("Accept-Encoding"));
+
+        // ✅ 有版本號的端點：進入 Servlet 前先比對 ETag
+        String versionTag = null;
+        if (get) {
+            try {
+                String version = versionOf(path);
+                if (version != null) {
+                    String query = req.getQueryString();
+                    versionTag = BOOT_ID + "-" + version + "-" + Integer.toHexString(query == null ? 0 : query.hashCode());
+                }
+            } catch (SQLException e) {
+                System.err.println("⚠️ 無法取得回應版本，改以內容計算 ETag：" + e.getMessage());
+            }
+            if (versionTag != null && matches(req.getHeader("If-None-Match"), versionTag)) {
+                notModified(resp, versionTag);
+                return;
+            }
+        }
+
+        BufferedResponse buffered = new BufferedResponse(resp);
+        chain.doFilter(req, buffered);
+        if (buffered.errorSent || resp.isCommitted()) return; // sendError／sendRedirect 已直接輸出
+
+        byte[] body = buffered.toByteArray();
+        boolean gzip = acceptsGzip && body.length >= gzipMinBytes && compressible(resp.getContentType())
+                && resp.getHeader("Content-Encoding") == null;
+
+        if (get && buffered.getStatus() == HttpServletResponse.SC_OK) {
+            String tag = versionTag != null ? versionTag : sha256(body);
+            if (versionTag == null && matches(req.getHeader("If-None-Match"), tag)) {
+                notModified(resp, tag);
+                return;
+            }
+            resp.setHeader("ETag", "\"" + tag + (gzip ? GZIP_SUFFIX : "") + "\"");
+        }
+        if (resp.getHeader("Cache-Control") == null) resp.setHeader("Cache-Control", "no-cache");
+
+        // ✅ 壓縮回應內容
+        if (gzip) {
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream(body.length / 4 + 64);
+            try (GZIPOutputStream gz = new GZIPOutputStream(compressed)) {
+                gz.write(body);
+            }
+            body = compressed.toByteArray();
+            resp.setHeader("Content-Encoding", "gzip");
+        }
+        resp.addHeader("Vary", "Accept-Encoding");
+        resp.setContentLength(body.length);
+        resp.getOutputStream().write(body);
+    }
+
+    /**
+     * 端點資料的版本號（資料有變動時一定會改變），沒有版本號的端點回傳 null
+     */
+    private static String versionOf(String path) throws SQLException {
+        switch (path) {
+            case "/api/videolist":
+                if (!AppConfig.getBoolean("catalog.video.enabled", true)) return null;
+                return "c" + VideoCatalog.getInstance().getSnapshot().getVersion(); // 快照失效時會先重新載入
+            case "/api/getlatestvideo":
+                if (!AppConfig.getBoolean("cache.latestVideo.enabled", true)) return null;
+                return "l" + LatestVideoCache.getInstance().getVersion(); // 到了探測時間會先確認 MAX(id)
+            case "/api/loadquiz":
+                return "q" + QuizCache.getInstance().getVersion();
+            default:
+                return null;
+        }
+    }
+
+    private static void notModified(HttpServletResponse resp, String tag) {
+        resp.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+        resp.setHeader("ETag", "\"" + tag + "\"");
+        if (resp.getHeader("Cache-Control") == null) resp.setHeader("Cache-Control", "no-cache");
+        resp.addHeader("Vary", "Accept-Encoding");
+    }
+
+    // If-None-Match 是否包含此 ETag（弱比較：忽略 W/ 與 gzip 後綴）
+    private static boolean matches(String ifNoneMatch, String tag) {
+        if (ifNoneMatch == null) return false;
+        for (String candidate : ifNoneMatch.split(",")) {
+            String c = candidate.trim();
+            if (c.equals("*")) return true;
+            if (c.startsWith("W/")) c = c.substring(2);
+            if (c.length() >= 2 && c.startsWith("\"") && c.endsWith("\"")) c = c.substring(1, c.length() - 1);
+            if (c.endsWith(GZIP_SUFFIX)) c = c.substring(0, c.length() - GZIP_SUFFIX.length());
+            if (c.equals(tag)) return true;
+        }
+        return false;
+    }
+
+    private static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) return false;
+        for (String part : acceptEncoding.split(",")) {
+            String[] tokens = part.trim().split(";");
+            if (!tokens[0].trim().equalsIgnoreCase("gzip")) continue;
+            for (int i = 1; i < tokens.length; i++) {
+                String t = tokens[i].trim().replace(" ", "");
+                if (t.equals("q=0") || t.equals("q=0.0") || t.equals("q=0.00") || t.equals("q=0.000")) return false;
+            }
+            return true;
+        }
+        return false;
+    }
+
+    private static boolean compressible(String contentType) {
+        if (contentType == null) return false;
+        String ct = contentType.toLowerCase(Locale.ROOT);
+        return ct.startsWith("application/json") || ct.startsWith("text/");
+    }
+
+    private static String sha256(byte[] body) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(body);
+            return HexFormat.of().formatHex(digest, 0, 16);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * BufferedResponse：把 Servlet 的輸出先寫進記憶體，Filter 處理完 ETag／壓縮後再送出
+     */
+    private static class BufferedResponse extends HttpServletResponseWrapper {
+        private final ByteArrayOutputStream buffer = new ByteArrayOutputStream(4096);
+        private ServletOutputStream outputStream;
+        private PrintWriter writer;
+        boolean errorSent;
+
+        BufferedResponse(HttpServletResponse response) {
+            super(response);
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() {
+            if (writer != null) throw new IllegalStateException("getWriter() 已被呼叫");
+            if (outputStream == null) {
+                outputStream = new ServletOutputStream() {
+                    @Override public void write(int b) { buffer.write(b); }
+                    @Override public void write(byte[] b, int off, int len) { buffer.write(b, off, len); }
+                    @Override public boolean isReady() { return true; }
+                    @Override public void setWriteListener(WriteListener listener) {
+                        throw new UnsupportedOperationException("緩衝回應不支援非同步輸出");
+                    }
+                };
+            }
+            return outputStream;
+        }
+
+        @Override
+        public PrintWriter getWriter() {
+            if (outputStream != null) throw new IllegalStateException("getOutputStream() 已被呼叫");
+            if (writer == null) {
+                String encoding = getCharacterEncoding();
+                writer = new PrintWriter(new OutputStreamWriter(buffer,
+                        encoding != null ? Charset.forName(encoding) : StandardCharsets.ISO_8859_1));
+            }
+            return writer;
+        }
+
+        @Override
+        public void flushBuffer() {
+            if (writer != null) writer.flush(); // 只寫進緩衝，不提交回應
+        }
+
+        @Override
+        public void setContentLength(int len) {
+            // 由 Filter 在輸出時設定實際長度
+        }
+
+        @Override
+        public void setContentLengthLong(long len) {
+            // 由 Filter 在輸出時設定實際長度
+        }
+
+        @Override
+        public void resetBuffer() {
+            buffer.reset();
+        }
+
+        @Override
+        public void reset() {
+            super.reset();
+            buffer.reset();
+        }
+
+        @Override
+        public void sendError(int sc, String msg) throws IOException {
+            errorSent = true;
+            super.sendError(sc, msg);
+        }
+
+        @Override
+        public void sendError(int sc) throws IOException {
+            errorSent = true;
+            super.sendError(sc);
+        }
+
+        @Override
+        public void sendRedirect(String location) throws IOException {
+            errorSent = true;
+            super.sendRedirect(location);
+        }
+
+        byte[] toByteArray() {
+            if (writer != null) writer.flush();
+            return buffer.toByteArray();
+        }
+    }
+}
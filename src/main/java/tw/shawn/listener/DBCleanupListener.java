@@ -4,7 +4,22 @@ package tw.shawn.listener;
 import jakarta.servlet.ServletContextEvent;
 import jakarta.servlet.ServletContextListener;
 import jakarta.servlet.annotation.WebListener;
+import tw.shawn.util.AppConfig;
 import tw.shawn.util.DBUtil;
+import tw.shawn.util.LlmGateway;
+import tw.shawn.util.QuizGenerationService;
+import tw.shawn.util.QuizJobManager;
+import tw.shawn.util.QuizStatsRebuilder;
+import tw.shawn.util.SchemaMigrator;
+import tw.shawn.util.TranscriptIndex;
+import tw.shawn.util.TranscriptStore;
+import tw.shawn.util.WatchProgressTracker;
+import tw.shawn.util.YouTubeBackfillJob;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
 
 /**
  * DBCleanupListener：應用程式層級的 Listener，用來處理 Web 應用的啟動與關閉事件。
@@ -21,7 +36,21 @@ public class DBCleanupListener implements ServletContextListener {
     @Override
     public void contextDestroyed(ServletContextEvent sce) {
         System.out.println("🧹 WebApp 正在關閉，釋放 JDBC 清理執行緒...");
-        
+
+        // 停止 GPT 產題工作執行緒，並關閉 OpenAI 共用 HTTP client 的背景執行緒與連線
+        YouTubeBackfillJob.shutdown();
+        QuizJobManager.getInstance().shutdown();
+        QuizGenerationService.shutdown();
+        LlmGateway.shutdown();
+        TranscriptIndex.shutdown();
+        TranscriptStore.shutdown();
+
+        // 把尚未寫入的觀看進度寫回資料庫（需在連線池關閉前）
+        WatchProgressTracker.shutdown();
+
+        // 先關閉連線池，確保所有實體連線在驅動程式卸載前關閉
+        DBUtil.shutdownPool();
+
         // 呼叫自訂的 JDBC 清理方法
         // 常見用途：避免 JDBC Driver 沒有被正確移除，導致記憶體洩漏（Tomcat 中尤為重要）
         DBUtil.cleanupDriver();
@@ -30,11 +59,52 @@ public class DBCleanupListener implements ServletContextListener {
     /**
      * ✅ 當 Web 應用程式啟動時（ServletContext 初始化），自動呼叫此方法
      * 可在此執行初始化邏輯，例如載入設定、初始化資源等
+     * 目前會先套用資料庫結構遷移（SchemaMigrator），讓每個節點的資料表與索引保持一致，再初始化字幕快取（TranscriptStore）與搜尋索引（TranscriptIndex）
      */
     @Override
     public void contextInitialized(ServletContextEvent sce) {
-        // 此區塊可自訂 WebApp 啟動時的初始化行為
-        // 目前僅列印訊息
+        // ✅ 套用尚未執行的資料庫遷移（可用 db.migrate.enabled=false 關閉）
+        if (AppConfig.getBoolean("db.migrate.enabled", true)) {
+            try (Connection conn = DBUtil.getConnection()) {
+                int applied = new SchemaMigrator(conn).migrate();
+                System.out.println("✅ 資料庫遷移完成，本次套用 " + applied + " 個版本");
+            } catch (Exception e) {
+                // 遷移失敗不阻止啟動，但需印出錯誤方便排查
+                System.err.println("❌ 資料庫遷移失敗：" + e.getMessage());
+                e.printStackTrace();
+            }
+        }
+
+        // ✅ 影片測驗統計表為空時（初次部署）從歷史作答重建一次
+        if (AppConfig.getBoolean("quiz.stats.rebuildIfEmpty", true)) {
+            try {
+                QuizStatsRebuilder.rebuildIfEmpty();
+            } catch (Exception e) {
+                System.err.println("⚠️ 影片測驗統計重建失敗（可手動執行 QuizStatsRebuilder）：" + e.getMessage());
+            }
+        }
+
+        // ✅ 回填舊影片的 YouTube 標準欄位（背景執行，可中斷後續跑）
+        if (AppConfig.getBoolean("video.backfill.onStartup", true)) {
+            YouTubeBackfillJob.startInBackground();
+        }
+
+        // ✅ 字幕快取：監看 /transcripts 目錄，檔案變動時自動失效
+        TranscriptStore.init(transcriptDir(sce));
+
+        // ✅ 字幕搜尋索引：背景建立，之後隨字幕變動增量更新
+        TranscriptIndex.init(TranscriptStore.getInstance());
+
         System.out.println("🚀 WebApp 啟動完成！");
     }
+
+    // 字幕目錄：WAR 未解壓（getRealPath 回傳 null）時改用 transcript.dir，未設定則使用使用者目錄下的預設位置
+    private static Path transcriptDir(ServletContextEvent sce) {
+        String realPath = sce.getServletContext().getRealPath("/transcripts");
+        if (realPath != null) return Paths.get(realPath);
+        Path fallback = Paths.get(AppConfig.get("transcript.dir",
+                System.getProperty("user.home") + File.separator + ".video-learning-platform" + File.separator + "transcripts"));
+        System.err.println("⚠️ 無法取得 /transcripts 的實體路徑（WAR 未解壓），改用字幕目錄：" + fallback);
+        return fallback;
+    }
 }
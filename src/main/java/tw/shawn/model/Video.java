@@ -11,6 +11,9 @@ public class Video {
     private String description;      // 影片描述文字（影片說明欄內容）
     private String thumbnailUrl;     // YouTube 自動產生的縮圖 URL
     private String publishedAt;      // 影片發佈時間（ISO 格式，例如："2024-06-01T08:00:00Z"）
+    private String canonicalVideoId; // 解析後的 11 碼 YouTube ID（yt_video_id，播放清單或無法辨識時為 null）
+    private String playlistId;       // 播放清單 ID（yt_playlist_id）
+    private Integer startSeconds;    // 起始秒數（yt_start_sec）
 
     // ✅ 無參數建構子（框架如 Gson、Jackson 轉換時需要）
     public Video() {}
@@ -51,12 +54,21 @@ public class Video {
     public String getPublishedAt() { return publishedAt; }
     public void setPublishedAt(String publishedAt) { this.publishedAt = publishedAt; }
 
+    public String getCanonicalVideoId() { return canonicalVideoId; }
+    public void setCanonicalVideoId(String canonicalVideoId) { this.canonicalVideoId = canonicalVideoId; }
+
+    public String getPlaylistId() { return playlistId; }
+    public void setPlaylistId(String playlistId) { this.playlistId = playlistId; }
+
+    public Integer getStartSeconds() { return startSeconds; }
+    public void setStartSeconds(Integer startSeconds) { this.startSeconds = startSeconds; }
+
     /**
      * ✅ 回傳可直接嵌入網頁 iframe 的 YouTube 播放網址
-     * 例如：若 videoId = "abc123"，回傳 https://www.youtube.com/embed/abc123
+     * 例如：若 videoId = "abc123"，回傳 https://www.youtube.com/embed/abc123（已解析出 11 碼 ID 時優先使用）
      * @return YouTube 影片播放網址
      */
     public String getVideoUrl() {
-        return "https://www.youtube.com/embed/" + videoId;
+        return "https://www.youtube.com/embed/" + (canonicalVideoId != null ? canonicalVideoId : videoId);
     }
 }
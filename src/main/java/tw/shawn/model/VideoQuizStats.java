@@ -0,0 +1,41 @@
+package tw.shawn.model;
+
+/**
+ * VideoQuizStats 類別：某部影片（某個題目來源）的測驗統計彙總
+ * 對應資料庫中的 video_quiz_stats 資料表，source 為 "*" 時代表所有來源合計
+ */
+public class VideoQuizStats {
+    private String videoId;          // 影片 ID
+    private String source;           // 題目來源（local、gpt，或 * 代表合計）
+    private int attempts;            // 作答次數（送出次數）
+    private long totalQuestions;     // 累計作答題數
+    private long totalCorrect;       // 累計答對題數
+    private int learners;            // 作答過的不同使用者數
+
+    // === Getter / Setter ===
+
+    public String getVideoId() { return videoId; }
+    public void setVideoId(String videoId) { this.videoId = videoId; }
+
+    public String getSource() { return source; }
+    public void setSource(String source) { this.source = source; }
+
+    public int getAttempts() { return attempts; }
+    public void setAttempts(int attempts) { this.attempts = attempts; }
+
+    public long getTotalQuestions() { return totalQuestions; }
+    public void setTotalQuestions(long totalQuestions) { this.totalQuestions = totalQuestions; }
+
+    public long getTotalCorrect() { return totalCorrect; }
+    public void setTotalCorrect(long totalCorrect) { this.totalCorrect = totalCorrect; }
+
+    public int getLearners() { return learners; }
+    public void setLearners(int learners) { this.learners = learners; }
+
+    /**
+     * ✅ 答對率（0~1，尚無作答時為 0）
+     */
+    public double getAccuracy() {
+        return totalQuestions == 0 ? 0 : (double) totalCorrect / totalQuestions;
+    }
+}
@@ -0,0 +1,42 @@
+package tw.shawn.model;
+
+/**
+ * WatchProgress 類別：使用者在某部影片的觀看進度
+ * 對應資料庫中的 watch_progress 資料表（user_id + video_id 唯一）
+ */
+public class WatchProgress {
+    private int userId;            // 使用者 ID（對應 users 表）
+    private int videoId;           // 影片主鍵 ID（對應 video.id）
+    private int currentTimeSec;    // 目前播放到的秒數
+
+    public WatchProgress() {}
+
+    public WatchProgress(int userId, int videoId, int currentTimeSec) {
+        this.userId = userId;
+        this.videoId = videoId;
+        this.currentTimeSec = currentTimeSec;
+    }
+
+    // === Getter / Setter ===
+
+    public int getUserId() {
+        return userId;
+    }
+    public void setUserId(int userId) {
+        this.userId = userId;
+    }
+
+    public int getVideoId() {
+        return videoId;
+    }
+    public void setVideoId(int videoId) {
+        this.videoId = videoId;
+    }
+
+    public int getCurrentTimeSec() {
+        return currentTimeSec;
+    }
+    public void setCurrentTimeSec(int currentTimeSec) {
+        this.currentTimeSec = currentTimeSec;
+    }
+}
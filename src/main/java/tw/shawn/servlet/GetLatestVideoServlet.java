@@ -5,7 +5,9 @@ import jakarta.servlet.http.*;
 import org.json.JSONObject;
 import tw.shawn.dao.VideoDAO;
 import tw.shawn.model.Video;
+import tw.shawn.util.AppConfig;
 import tw.shawn.util.DBUtil;
+import tw.shawn.util.LatestVideoCache;
 
 import java.io.IOException;
 import java.sql.Connection;
@@ -19,12 +21,17 @@ public class GetLatestVideoServlet extends HttpServlet {
     protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
         response.setContentType("application/json;charset=UTF-8"); // 設定回應內容為 JSON 格式
 
-        try (Connection conn = DBUtil.getConnection()) {
-            // 建立 DAO 物件操作 video 資料表
-            VideoDAO dao = new VideoDAO(conn);
-
-            // 從資料庫取得最新一筆影片資料（依 ID DESC 排序取第一筆）
-            Video video = dao.getLatestVideo();
+        try {
+            // 最新一筆影片（依 ID DESC 排序取第一筆）由 LatestVideoCache 保存在記憶體，
+            // 新增影片或定期探測 MAX(id) 發現變動時才重新查詢；cache.latestVideo.enabled=false 時每次直接查資料庫
+            Video video;
+            if (AppConfig.getBoolean("cache.latestVideo.enabled", true)) {
+                video = LatestVideoCache.getInstance().get();
+            } else {
+                try (Connection conn = DBUtil.getConnection()) {
+                    video = new VideoDAO(conn).getLatestVideo();
+                }
+            }
 
             // 若找不到資料（資料表為空），回傳 HTTP 404 錯誤
             if (video == null) {
@@ -32,14 +39,13 @@ public class GetLatestVideoServlet extends HttpServlet {
                 return;
             }
 
-            // 取出並清理影片的 videoId（去除 YouTube 網址格式）
-            String cleanVideoId = extractYouTubeId(video.getVideoId());
-
-            // 建立 JSON 物件包裝影片資訊
+            // 建立 JSON 物件包裝影片資訊（YouTube ID 已在寫入時解析好，直接讀欄位）
             JSONObject json = new JSONObject();
             json.put("id", video.getId());         // 資料庫主鍵 ID
             json.put("title", video.getTitle());   // 影片標題
-            json.put("videoId", cleanVideoId);     // 清理過的 YouTube ID
+            json.put("videoId", video.getCanonicalVideoId() != null ? video.getCanonicalVideoId() : ""); // 11 碼 YouTube ID
+            if (video.getPlaylistId() != null) json.put("playlistId", video.getPlaylistId());         // 播放清單 ID
+            if (video.getStartSeconds() != null) json.put("startSeconds", video.getStartSeconds());   // 起始秒數
 
             // 將 JSON 內容寫入回應輸出，傳送給前端
             response.getWriter().write(json.toString());
@@ -49,42 +55,4 @@ public class GetLatestVideoServlet extends HttpServlet {
             response.sendError(500, "後端錯誤：" + e.getMessage()); // 發生例外時回傳 500
         }
     }
-
-    /**
-     * ✅ extractYouTubeId：從各種 YouTube 網址格式中萃取純粹的 videoId（範例：jYSBsUjXXog）
-     * 支援三種常見格式：watch?v=、youtu.be/、embed/，並排除清單（playlist）型網址。
-     * 若無法判斷格式，則原樣回傳。
-     */
-    private String extractYouTubeId(String url) {
-        if (url == null || url.isEmpty()) return "";
-
-        // ✅ 處理 YouTube 網址格式： https://www.youtube.com/watch?v=XXXX
-        if (url.contains("youtube.com/watch?v=")) {
-            String temp = url.substring(url.indexOf("watch?v=") + 8); // 擷取 v= 之後的 ID
-            int ampIndex = temp.indexOf("&"); // 判斷是否還有附加參數
-            return (ampIndex != -1) ? temp.substring(0, ampIndex) : temp;
-        }
-
-        // ✅ 處理短網址格式： https://youtu.be/XXXX
-        if (url.contains("youtu.be/")) {
-            String temp = url.substring(url.indexOf("youtu.be/") + 9);
-            int paramIndex = temp.indexOf("?");
-            return (paramIndex != -1) ? temp.substring(0, paramIndex) : temp;
-        }
-
-        // ✅ 處理嵌入網址格式： https://www.youtube.com/embed/XXXX
-        if (url.contains("embed/")) {
-            String temp = url.substring(url.indexOf("embed/") + 6);
-            int paramIndex = temp.indexOf("?");
-            return (paramIndex != -1) ? temp.substring(0, paramIndex) : temp;
-        }
-
-        // ✅ 若是播放清單連結，視為無效 ID，避免誤用
-        if (url.contains("list=")) {
-            return "INVALID_PLAYLIST_ID";
-        }
-
-        // 若不屬於任何已知格式，直接回傳原始字串
-        return url;
-    }
 }
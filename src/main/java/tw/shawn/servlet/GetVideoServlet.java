@@ -34,17 +34,13 @@ public class GetVideoServlet extends HttpServlet {
                 return;
             }
 
-            // ✅ 擷取影片的原始 YouTube 連結欄位
-            String rawVideoId = video.getVideoId();
-
-            // ✅ 呼叫工具方法將網址清理成純粹的 YouTube videoId（去除參數等）
-            String cleanVideoId = extractYouTubeId(rawVideoId);
-
-            // ✅ 將影片資訊轉換為 JSON 格式
+            // ✅ 將影片資訊轉換為 JSON 格式（YouTube ID 已在寫入時解析好，直接讀欄位）
             JSONObject json = new JSONObject();
             json.put("id", video.getId());           // 資料庫中主鍵 ID
             json.put("title", video.getTitle());     // 影片標題
-            json.put("videoId", cleanVideoId);       // 清理後的 YouTube ID
+            json.put("videoId", video.getCanonicalVideoId() != null ? video.getCanonicalVideoId() : ""); // 11 碼 YouTube ID
+            if (video.getPlaylistId() != null) json.put("playlistId", video.getPlaylistId());         // 播放清單 ID
+            if (video.getStartSeconds() != null) json.put("startSeconds", video.getStartSeconds());   // 起始秒數
 
             // ✅ 設定回應為 JSON 並將資料傳回前端
             response.setContentType("application/json;charset=UTF-8");
@@ -56,46 +52,4 @@ public class GetVideoServlet extends HttpServlet {
             response.sendError(500, "後端錯誤：" + e.getMessage());
         }
     }
-
-    /**
-     * ✅ extractYouTubeId：擷取純粹的 YouTube 影片 ID（去除網址參數）
-     * 支援多種常見連結格式：
-     * - https://www.youtube.com/watch?v=xxxx
-     * - https://youtu.be/xxxx
-     * - https://www.youtube.com/embed/xxxx
-     * 若遇到播放清單網址（list=），回傳特定識別字串「INVALID_PLAYLIST_ID」
-     * 若為原始 ID（非網址格式），則直接回傳
-     */
-    private String extractYouTubeId(String url) {
-        if (url == null || url.isEmpty()) return "";
-
-        // ✅ 處理 watch?v=xxxx 格式
-        if (url.contains("youtube.com/watch?v=")) {
-            String temp = url.substring(url.indexOf("watch?v=") + 8);
-            int ampIndex = temp.indexOf("&"); // 若有 & 表示後續有參數
-            return (ampIndex != -1) ? temp.substring(0, ampIndex) : temp;
-        }
-
-        // ✅ 處理 youtu.be/xxxx 短網址格式
-        if (url.contains("youtu.be/")) {
-            String temp = url.substring(url.indexOf("youtu.be/") + 9);
-            int paramIndex = temp.indexOf("?");
-            return (paramIndex != -1) ? temp.substring(0, paramIndex) : temp;
-        }
-
-        // ✅ 處理 embed/xxxx 嵌入網址格式
-        if (url.contains("embed/")) {
-            String temp = url.substring(url.indexOf("embed/") + 6);
-            int paramIndex = temp.indexOf("?");
-            return (paramIndex != -1) ? temp.substring(0, paramIndex) : temp;
-        }
-
-        // ✅ 偵測播放清單網址並回傳無效 ID 字串，避免後續誤用
-        if (url.contains("list=")) {
-            return "INVALID_PLAYLIST_ID";
-        }
-
-        // ✅ 若不是網址格式，視為已經是 videoId，直接回傳
-        return url;
-    }
 }
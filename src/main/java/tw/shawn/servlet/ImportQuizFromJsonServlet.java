@@ -1,28 +1,30 @@
 package tw.shawn.servlet;
 
-import com.google.gson.Gson;
-import com.google.gson.reflect.TypeToken;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.annotation.WebServlet;
 import jakarta.servlet.annotation.MultipartConfig;
 import jakarta.servlet.http.*;
 
-import tw.shawn.dao.QuizDAO;
-import tw.shawn.model.Quiz;
 import tw.shawn.util.DBUtil;
+import tw.shawn.util.QuizImporter;
 
 import java.io.*;
-import java.lang.reflect.Type;
 import java.nio.charset.StandardCharsets;
 import java.sql.Connection;
-import java.util.List;
+import java.util.regex.Pattern;
 
 // ✅ 註冊為 Servlet 並啟用 MultipartConfig（支援上傳檔案）
 // 此 Servlet 對應路徑為 /api/importQuiz，可接收 quiz.json 匯入題目
+// 題目以串流方式逐題讀取與驗證，並分批提交（quiz.import.chunkSize），格式錯誤的題目會列在 errors 中
 @WebServlet("/api/importQuiz")
 @MultipartConfig
 public class ImportQuizFromJsonServlet extends HttpServlet {
 
+    // 影片 ID 格式：YouTube ID（如 jYSBsUjXXog）或數字 ID，長度不超過 quiz.video_id 欄位
+    private static final Pattern VIDEO_ID = Pattern.compile("[A-Za-z0-9_-]{1,100}");
+
     // ✅ 處理 POST 請求（上傳 quiz.json 檔案並寫入資料庫）
     @Override
     protected void doPost(HttpServletRequest request, HttpServletResponse response)
@@ -32,16 +34,18 @@ public class ImportQuizFromJsonServlet extends HttpServlet {
         response.setContentType("application/json;charset=UTF-8");
         request.setCharacterEncoding("UTF-8");
 
-        // ✅ 取得影片 videoId 作為參數（用來對應哪部影片的題庫）
-        String videoIdParam = request.getParameter("videoId");
-        if (videoIdParam == null) {
+        // ✅ 取得影片 videoId 作為參數（用來對應哪部影片的題庫，YouTube ID 為字串，原樣寫入 quiz.video_id）
+        String videoId = request.getParameter("videoId");
+        if (videoId == null || videoId.isBlank()) {
             // 若缺少必要參數，回傳 400 錯誤
             response.sendError(HttpServletResponse.SC_BAD_REQUEST, "缺少 videoId");
             return;
         }
-
-        // ✅ 將傳入的字串型別轉為 int 型別（對應影片主鍵 ID）
-        int videoId = Integer.parseInt(videoIdParam);
+        videoId = videoId.trim();
+        if (!VIDEO_ID.matcher(videoId).matches()) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "videoId 格式錯誤");
+            return;
+        }
 
         // ✅ 取得檔案上傳區段（名稱應為 "file"）
         Part filePart = request.getPart("file");
@@ -51,28 +55,79 @@ public class ImportQuizFromJsonServlet extends HttpServlet {
             return;
         }
 
+        // ✅ 要求 text/event-stream 時以 SSE 回報進度（每提交一個 chunk 一個 progress 事件）
+        String accept = request.getHeader("Accept");
+        boolean sse = accept != null && accept.contains("text/event-stream");
+        if (sse) {
+            response.setContentType("text/event-stream;charset=UTF-8");
+            response.setHeader("Cache-Control", "no-cache");
+            response.setHeader("X-Accel-Buffering", "no");
+        }
+
         // ✅ 使用 try-with-resources 同時開啟檔案讀取與資料庫連線（自動關閉資源）
         try (InputStream inputStream = filePart.getInputStream();
              BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8));
              Connection conn = DBUtil.getConnection()) {
 
-            // ✅ 使用 Gson 將上傳的 JSON 字串轉換為 List<Quiz>
-            Gson gson = new Gson();
-            Type quizListType = new TypeToken<List<Quiz>>() {}.getType();
-            List<Quiz> quizList = gson.fromJson(reader, quizListType);
-
-            // ✅ 建立 DAO 實例並將 quiz 清單寫入資料庫（內含避免重複的邏輯）
-            QuizDAO quizDAO = new QuizDAO(conn);
-            int inserted = quizDAO.insertQuizListAvoidDuplicate(String.valueOf(videoId), quizList);
-
-            // ✅ 回傳成功訊息，包含實際成功插入的題數
+            // ✅ 逐題讀取、驗證並分批提交（不會把整份檔案載入記憶體）
             PrintWriter out = response.getWriter();
-            out.write("{\"success\": true, \"inserted\": " + inserted + "}");
+            QuizImporter.ImportResult result = new QuizImporter(conn).importQuizzes(reader, videoId,
+                    sse ? progress -> writeEvent(out, "progress", toJson(progress)) : null);
+            System.out.println("✅ 題目匯入完成：影片 " + videoId + "，讀取 " + result.rows + " 題，新增 "
+                    + result.inserted + " 題，失敗 " + result.failed + " 題");
+
+            // ✅ 回傳結果，包含實際成功插入的題數與各列錯誤；每一題都失敗時（例如 videoId 不存在）回傳錯誤
+            JsonObject body = toJson(result);
+            body.addProperty("success", !result.allFailed());
+            if (result.allFailed()) {
+                body.addProperty("error", "所有題目都匯入失敗");
+                if (sse) {
+                    writeEvent(out, "error", body);
+                } else {
+                    response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+                    out.write(body.toString());
+                }
+            } else if (sse) {
+                writeEvent(out, "done", body);
+            } else {
+                out.write(body.toString());
+            }
 
         } catch (Exception e) {
-            // 若發生例外錯誤，印出錯誤訊息並回傳 500 狀態碼
+            // 若發生例外錯誤，印出錯誤訊息並回傳錯誤（SSE 模式下回應已開始，改送 error 事件）
             e.printStackTrace();
-            response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "匯入失敗：" + e.getMessage());
+            if (sse) {
+                JsonObject error = new JsonObject();
+                error.addProperty("error", "匯入失敗：" + e.getMessage());
+                writeEvent(response.getWriter(), "error", error);
+            } else {
+                response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "匯入失敗：" + e.getMessage());
+            }
         }
     }
+
+    private static JsonObject toJson(QuizImporter.ImportResult result) {
+        JsonObject json = new JsonObject();
+        json.addProperty("rows", result.rows);
+        json.addProperty("inserted", result.inserted);
+        json.addProperty("duplicates", result.duplicates);
+        json.addProperty("failed", result.failed);
+        JsonArray errors = new JsonArray();
+        for (QuizImporter.RowError e : result.errors) {
+            JsonObject err = new JsonObject();
+            err.addProperty("row", e.row);
+            err.addProperty("error", e.error);
+            errors.add(err);
+        }
+        json.add("errors", errors);
+        return json;
+    }
+
+    // 寫出一個 SSE 事件並立即送出（PrintWriter 不丟例外，需以 checkError 偵測斷線）
+    private static void writeEvent(PrintWriter out, String event, JsonObject data) throws IOException {
+        out.write("event: " + event + "\n");
+        out.write("data: " + data + "\n\n");
+        out.flush();
+        if (out.checkError()) throw new IOException("客戶端已中斷連線");
+    }
 }
@@ -5,6 +5,7 @@ import com.google.gson.JsonObject;
 import jakarta.servlet.annotation.WebServlet;
 import jakarta.servlet.http.*;
 import tw.shawn.util.DBUtil;
+import tw.shawn.util.QuizCache;
 import tw.shawn.dao.QuizDAO;
 import tw.shawn.model.Quiz;
 
@@ -37,12 +38,14 @@ public class LoadQuizServlet extends HttpServlet {
         // ✅ 準備存放題目的 JSON 陣列
         JsonArray quizArray = new JsonArray();
 
-        try (Connection conn = DBUtil.getConnection()) {
-            // ✅ 取得 QuizDAO 並查詢符合條件的題目（根據影片與來源）
-            QuizDAO quizDAO = new QuizDAO(conn);
-
+        try {
+            // ✅ 先查題庫快取，未命中時才借用資料庫連線查詢（根據影片與來源）
             // ✅ 每次只載入最多 5 題（可調整為 30 題等）
-            List<Quiz> quizList = quizDAO.getQuizzesByVideoIdAndSource(videoId, source, 5);
+            List<Quiz> quizList = QuizCache.getInstance().getQuizzesByVideoIdAndSource(videoId, source, 5, () -> {
+                try (Connection conn = DBUtil.getConnection()) {
+                    return new QuizDAO(conn).getQuizzesByVideoIdAndSource(videoId, source, 5);
+                }
+            });
 
             // ✅ 將每一題 Quiz 轉為 JSON 格式
             for (Quiz quiz : quizList) {
@@ -0,0 +1,83 @@
+package tw.shawn.servlet;
+
+import jakarta.servlet.annotation.WebServlet;
+import jakarta.servlet.http.*;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import tw.shawn.util.QuizGenerationService;
+import tw.shawn.util.QuizJobManager;
+
+import java.io.IOException;
+
+/**
+ * QuizJobServlet：查詢 GPT 產題工作的狀態與結果
+ * 路徑：GET /api/quizJob?jobId=xxx[&waitMs=10000]
+ * waitMs 可讓請求最多等待指定毫秒數（上限 30 秒），工作完成就立即回應（long polling）
+ */
+@WebServlet("/api/quizJob")
+public class QuizJobServlet extends HttpServlet {
+
+    private static final long MAX_WAIT_MS = 30_000;
+
+    @Override
+    protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        req.setCharacterEncoding("UTF-8");
+        resp.setContentType("application/json;charset=UTF-8");
+
+        String jobId = req.getParameter("jobId");
+        if (jobId == null || jobId.isBlank()) {
+            resp.setStatus(400);
+            resp.getWriter().write("{\"error\":\"缺少 jobId\"}");
+            return;
+        }
+
+        QuizJobManager.Job job = QuizJobManager.getInstance().getJob(jobId);
+        if (job == null) {
+            resp.setStatus(404);
+            resp.getWriter().write("{\"error\":\"找不到產題工作（可能已過期）\"}");
+            return;
+        }
+
+        long waitMs = 0;
+        try {
+            String waitParam = req.getParameter("waitMs");
+            if (waitParam != null) waitMs = Math.min(MAX_WAIT_MS, Math.max(0, Long.parseLong(waitParam)));
+        } catch (NumberFormatException ignored) {
+            // 格式錯誤視為不等待
+        }
+        job.await(waitMs);
+
+        resp.getWriter().write(toJson(job).toString());
+    }
+
+    /**
+     * ✅ 將工作狀態轉為 JSON：完成時附上題目陣列（與被略過題目的錯誤），失敗時附上錯誤訊息
+     */
+    static JSONObject toJson(QuizJobManager.Job job) {
+        JSONObject json = new JSONObject();
+        json.put("jobId", job.getId());
+        json.put("videoId", job.getVideoId());
+        json.put("status", job.getStatus().name());
+        if (job.getStatus() == QuizJobManager.Status.DONE) {
+            json.put("inserted", job.getResult().inserted);
+            json.put("quizzes", new JSONArray(job.getResult().quizJson));
+            if (!job.getResult().errors.isEmpty()) json.put("errors", new JSONArray(job.getResult().errors)); // 被略過的題目
+        } else if (job.getStatus() == QuizJobManager.Status.FAILED) {
+            json.put("error", job.getError().getMessage());
+            json.put("httpStatus", job.getError().getHttpStatus());
+        }
+        return json;
+    }
+
+    /**
+     * ✅ 將產題失敗轉為對應的 HTTP 狀態碼與錯誤 JSON
+     */
+    static void writeError(HttpServletResponse resp, QuizGenerationService.GenerationException e) throws IOException {
+        resp.setStatus(e.getHttpStatus());
+        JSONObject json = new JSONObject();
+        json.put("error", e.getMessage());
+        if (e.getRaw() != null) json.put("raw", e.getRaw());
+        if (e.getCause() != null && e.getCause().getMessage() != null) json.put("message", e.getCause().getMessage());
+        resp.getWriter().write(json.toString());
+    }
+}
@@ -0,0 +1,70 @@
+package tw.shawn.servlet;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import jakarta.servlet.annotation.WebServlet;
+import jakarta.servlet.http.*;
+import tw.shawn.util.TranscriptIndex;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * SearchServlet：搜尋影片字幕，回傳符合的影片（依相關度排序）與命中的句子位置
+ * 路徑：GET /api/search?q=關鍵字[&limit=20]
+ * 查詢中的每個詞都必須出現在同一部影片中；中文以二字詞比對，英文以單字比對（不分大小寫）。
+ */
+@WebServlet("/api/search")
+public class SearchServlet extends HttpServlet {
+
+    private static final int DEFAULT_LIMIT = 20;
+    private static final int MAX_LIMIT = 100;
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        request.setCharacterEncoding("UTF-8");
+        response.setContentType("application/json;charset=UTF-8");
+
+        String q = request.getParameter("q");
+        if (q == null || q.isBlank()) {
+            response.setStatus(400);
+            response.getWriter().write("{\"error\":\"缺少 q\"}");
+            return;
+        }
+
+        int limit = DEFAULT_LIMIT;
+        try {
+            String limitParam = request.getParameter("limit");
+            if (limitParam != null) limit = Math.min(MAX_LIMIT, Math.max(1, Integer.parseInt(limitParam)));
+        } catch (NumberFormatException ignored) {
+            // 格式錯誤時使用預設值
+        }
+
+        long start = System.nanoTime();
+        List<TranscriptIndex.Hit> hits = TranscriptIndex.getInstance().search(q, limit);
+
+        JsonArray results = new JsonArray();
+        for (TranscriptIndex.Hit hit : hits) {
+            JsonObject obj = new JsonObject();
+            obj.addProperty("videoId", hit.videoId);
+            obj.addProperty("score", Math.round(hit.score * 1000) / 1000.0);
+            JsonArray sentences = new JsonArray();
+            for (TranscriptIndex.SentenceHit s : hit.sentences) {
+                JsonObject so = new JsonObject();
+                so.addProperty("index", s.index);   // 第幾句
+                so.addProperty("offset", s.offset); // 在字幕全文中的字元位置
+                so.addProperty("text", s.text);
+                sentences.add(so);
+            }
+            obj.add("sentences", sentences);
+            results.add(obj);
+        }
+
+        JsonObject json = new JsonObject();
+        json.addProperty("query", q);
+        json.addProperty("count", results.size());
+        json.addProperty("tookMs", (System.nanoTime() - start) / 1_000_000.0);
+        json.add("results", results);
+        response.getWriter().write(json.toString());
+    }
+}
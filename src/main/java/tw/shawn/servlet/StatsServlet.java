@@ -0,0 +1,147 @@
+package tw.shawn.servlet;
+
+import com.google.gson.JsonObject;
+import jakarta.servlet.annotation.WebServlet;
+import jakarta.servlet.http.*;
+import tw.shawn.util.ConnectionPool;
+import tw.shawn.util.DBUtil;
+import tw.shawn.util.GeneratedQuizCache;
+import tw.shawn.util.LlmGateway;
+import tw.shawn.util.LruCache;
+import tw.shawn.util.QuizCache;
+import tw.shawn.util.QuizJobManager;
+import tw.shawn.util.TranscriptIndex;
+import tw.shawn.util.TranscriptStore;
+import tw.shawn.util.LatestVideoCache;
+import tw.shawn.util.VideoCatalog;
+import tw.shawn.util.WatchProgressTracker;
+
+import java.io.IOException;
+
+/**
+ * StatsServlet：回傳系統內部元件的運作統計（連線池、題庫快取、字幕快取、OpenAI 閘道、產題工作），供監控與除錯使用
+ * 路徑：GET /api/stats
+ */
+@WebServlet("/api/stats")
+public class StatsServlet extends HttpServlet {
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        response.setContentType("application/json;charset=UTF-8");
+
+        JsonObject json = new JsonObject();
+
+        // ✅ 資料庫連線池
+        ConnectionPool pool = DBUtil.getPool();
+        JsonObject poolJson = new JsonObject();
+        poolJson.addProperty("active", pool.getActiveCount());     // 借出中
+        poolJson.addProperty("idle", pool.getIdleCount());         // 閒置中
+        poolJson.addProperty("waiting", pool.getWaitingCount());   // 等待中
+        poolJson.addProperty("total", pool.getTotalCount());       // 實體連線數
+        poolJson.addProperty("created", pool.getCreatedCount());
+        poolJson.addProperty("destroyed", pool.getDestroyedCount());
+        poolJson.addProperty("timeouts", pool.getTimeoutCount());
+        poolJson.addProperty("leaks", pool.getLeakCount());
+        json.add("connectionPool", poolJson);
+
+        // ✅ 題庫快取
+        QuizCache quizCache = QuizCache.getInstance();
+        JsonObject quizJson = new JsonObject();
+        quizJson.add("byVideo", cacheStats(quizCache.getVideoCache()));
+        quizJson.add("byId", cacheStats(quizCache.getQuizCache()));
+        json.add("quizCache", quizJson);
+
+        // ✅ GPT 產題結果磁碟快取
+        GeneratedQuizCache genCache = GeneratedQuizCache.getInstance();
+        JsonObject genJson = new JsonObject();
+        genJson.addProperty("entries", genCache.size());
+        genJson.addProperty("bytes", genCache.getTotalBytes());
+        genJson.addProperty("maxBytes", genCache.getMaxBytes());
+        genJson.addProperty("hits", genCache.getHits());
+        genJson.addProperty("misses", genCache.getMisses());
+        genJson.addProperty("evictions", genCache.getEvictions());
+        json.add("generatedQuizCache", genJson);
+
+        // ✅ 字幕快取
+        TranscriptStore transcripts = TranscriptStore.getInstance();
+        JsonObject transcriptJson = new JsonObject();
+        transcriptJson.addProperty("entries", transcripts.size());
+        transcriptJson.addProperty("bytes", transcripts.getTotalBytes());
+        transcriptJson.addProperty("maxBytes", transcripts.getMaxBytes());
+        transcriptJson.addProperty("hits", transcripts.getHits());
+        transcriptJson.addProperty("misses", transcripts.getMisses());
+        transcriptJson.addProperty("evictions", transcripts.getEvictions());
+        transcriptJson.addProperty("invalidations", transcripts.getInvalidations());
+        transcriptJson.addProperty("watching", transcripts.isWatching());
+        json.add("transcriptStore", transcriptJson);
+
+        // ✅ 字幕搜尋索引
+        TranscriptIndex index = TranscriptIndex.getInstance();
+        JsonObject indexJson = new JsonObject();
+        indexJson.addProperty("documents", index.getDocumentCount());
+        indexJson.addProperty("terms", index.getTermCount());
+        indexJson.addProperty("postingsBytes", index.getPostingsBytes());
+        json.add("transcriptIndex", indexJson);
+
+        // ✅ 影片清單快照
+        VideoCatalog catalog = VideoCatalog.getInstance();
+        JsonObject catalogJson = new JsonObject();
+        catalogJson.addProperty("videos", catalog.size());
+        catalogJson.addProperty("version", catalog.getVersion());
+        catalogJson.addProperty("reloads", catalog.getReloads());
+        catalogJson.addProperty("stale", catalog.isStale());
+        json.add("videoCatalog", catalogJson);
+
+        // ✅ 最新影片快取
+        LatestVideoCache latest = LatestVideoCache.getInstance();
+        JsonObject latestJson = new JsonObject();
+        latestJson.addProperty("probes", latest.getProbes());
+        latestJson.addProperty("reloads", latest.getReloads());
+        latestJson.addProperty("stale", latest.isStale());
+        json.add("latestVideo", latestJson);
+
+        // ✅ 觀看進度心跳
+        WatchProgressTracker watch = WatchProgressTracker.getInstance();
+        JsonObject watchJson = new JsonObject();
+        watchJson.addProperty("heartbeats", watch.getHeartbeats());
+        watchJson.addProperty("pending", watch.getPendingCount());
+        watchJson.addProperty("flushes", watch.getFlushes());
+        watchJson.addProperty("rowsWritten", watch.getRowsWritten());
+        watchJson.addProperty("rowsDropped", watch.getRowsDropped());
+        json.add("watchProgress", watchJson);
+
+        // ✅ OpenAI 呼叫閘道
+        LlmGateway llm = LlmGateway.getInstance();
+        JsonObject llmJson = new JsonObject();
+        llmJson.addProperty("circuit", llm.getCircuitState());   // CLOSED / OPEN / HALF_OPEN
+        llmJson.addProperty("inFlight", llm.getInFlightCount());
+        llmJson.addProperty("queued", llm.getQueuedCount());
+        llmJson.addProperty("requests", llm.getRequestCount());
+        llmJson.addProperty("retries", llm.getRetryCount());
+        llmJson.addProperty("failures", llm.getFailureCount());
+        llmJson.addProperty("rejected", llm.getRejectedCount());
+        json.add("llmGateway", llmJson);
+
+        // ✅ GPT 產題工作
+        QuizJobManager jobs = QuizJobManager.getInstance();
+        JsonObject jobJson = new JsonObject();
+        jobJson.addProperty("running", jobs.getActiveCount());
+        jobJson.addProperty("queued", jobs.getQueuedCount());
+        jobJson.addProperty("inFlightVideos", jobs.getInFlightCount());
+        json.add("quizJobs", jobJson);
+
+        response.getWriter().write(json.toString());
+    }
+
+    // 將 LruCache 的統計數字轉為 JSON
+    static JsonObject cacheStats(LruCache<?, ?> cache) {
+        JsonObject obj = new JsonObject();
+        obj.addProperty("size", cache.size());
+        obj.addProperty("maxSize", cache.getMaxSize());
+        obj.addProperty("hits", cache.getHits());
+        obj.addProperty("misses", cache.getMisses());
+        obj.addProperty("evictions", cache.getEvictions());
+        obj.addProperty("hitRate", cache.getHitRate());
+        return obj;
+    }
+}
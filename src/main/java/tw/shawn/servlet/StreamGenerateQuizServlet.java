@@ -0,0 +1,79 @@
+package tw.shawn.servlet;
+
+import jakarta.servlet.annotation.WebServlet;
+import jakarta.servlet.http.*;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import tw.shawn.util.QuizGenerationService;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * StreamGenerateQuizServlet：以 Server-Sent Events 串流回傳 GPT 產生的題目
+ * 路徑：GET /api/autoGenerateQuizStream?videoId=xxx
+ * 每題解析並驗證通過後立即寫入資料庫，並送出一個事件，前端不必等整份回應完成：
+ * - event: quiz   → data 為單題 JSON（question、options、answer）
+ * - event: done   → data 為 {"count":n,"inserted":m,"errors":[...]}（errors 為被略過題目的原因）
+ * - event: error  → data 為 {"error":"...","httpStatus":500}
+ * 同一部影片同時只允許一條串流，避免重複寫入題目。
+ */
+@WebServlet("/api/autoGenerateQuizStream")
+public class StreamGenerateQuizServlet extends HttpServlet {
+
+    // 正在串流產題的影片
+    private static final Set<String> STREAMING = ConcurrentHashMap.newKeySet();
+
+    @Override
+    protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        req.setCharacterEncoding("UTF-8");
+
+        String videoId = req.getParameter("videoId");
+        if (videoId == null || videoId.trim().isEmpty()) {
+            resp.setStatus(400);
+            resp.setContentType("application/json;charset=UTF-8");
+            resp.getWriter().write("{\"error\":\"缺少 videoId\"}");
+            return;
+        }
+
+        resp.setContentType("text/event-stream;charset=UTF-8");
+        resp.setHeader("Cache-Control", "no-cache");
+        resp.setHeader("X-Accel-Buffering", "no"); // 避免反向代理緩衝整份回應
+        PrintWriter out = resp.getWriter();
+
+        if (!STREAMING.add(videoId)) {
+            writeEvent(out, "error", new JSONObject().put("error", "該影片正在產生題目，請稍後再試").put("httpStatus", 409));
+            return;
+        }
+
+        try {
+            int[] count = {0};
+            QuizGenerationService.GenerationResult result = QuizGenerationService.generateStream(videoId, quiz -> {
+                count[0]++;
+                writeEvent(out, "quiz", quiz);
+            });
+            writeEvent(out, "done", new JSONObject()
+                    .put("count", count[0])
+                    .put("inserted", result.inserted)
+                    .put("errors", new JSONArray(result.errors)));
+            System.out.println("✅ 串流產題完成：" + videoId + "，共 " + count[0] + " 題");
+        } catch (QuizGenerationService.GenerationException e) {
+            writeEvent(out, "error", new JSONObject().put("error", e.getMessage()).put("httpStatus", e.getHttpStatus()));
+        } catch (IOException e) {
+            // 瀏覽器中途離開：已寫入的題目保留，不必再回應
+            System.err.println("⚠️ 串流產題連線中斷：" + videoId + "，" + e.getMessage());
+        } finally {
+            STREAMING.remove(videoId);
+        }
+    }
+
+    // 寫出一個 SSE 事件並立即送出（PrintWriter 不丟例外，需以 checkError 偵測斷線）
+    private static void writeEvent(PrintWriter out, String event, JSONObject data) throws IOException {
+        out.write("event: " + event + "\n");
+        out.write("data: " + data.toString() + "\n\n");
+        out.flush();
+        if (out.checkError()) throw new IOException("客戶端已中斷連線");
+    }
+}
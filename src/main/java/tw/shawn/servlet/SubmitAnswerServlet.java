@@ -6,12 +6,18 @@ import jakarta.servlet.http.*;
 import tw.shawn.dao.AnswerDAO;
 import tw.shawn.dao.QuizDAO;
 import tw.shawn.dao.QuizResultDAO;
+import tw.shawn.dao.VideoQuizStatsDAO;
 import tw.shawn.model.Answer;
 import tw.shawn.model.Quiz;
 import tw.shawn.util.DBUtil;
+import tw.shawn.util.QuizCache;
 
 import java.io.*;
 import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 
 @WebServlet("/api/submitAnswer")
 public class SubmitAnswerServlet extends HttpServlet {
@@ -39,6 +45,7 @@ public class SubmitAnswerServlet extends HttpServlet {
             AnswerDAO answerDAO = new AnswerDAO(conn);
             QuizDAO quizDAO = new QuizDAO(conn);
             QuizResultDAO resultDAO = new QuizResultDAO(conn);
+            VideoQuizStatsDAO statsDAO = new VideoQuizStatsDAO(conn);
 
             int correctCount = 0;
             String videoId = null;
@@ -51,10 +58,16 @@ public class SubmitAnswerServlet extends HttpServlet {
                 throw new IllegalArgumentException("⚠️ videoId 為 null 或空字串！");
             }
 
-            // ✅ 先刪除舊作答紀錄（避免殘留）
-            answerDAO.deleteAnswersByUser(userId, videoId);
+            // ✅ 先收集所有題目 ID，優先從題庫快取取得，未命中的才以一次 IN 查詢取回
+            List<Integer> quizIds = new ArrayList<>();
+            for (JsonElement elem : answersJson) {
+                Integer id = parseQuizId(elem.getAsJsonObject().get("quizId").getAsString());
+                if (id != null) quizIds.add(id);
+            }
+            Map<Integer, Quiz> quizMap = QuizCache.getInstance().getQuizzesByIds(quizIds, quizDAO::getQuizzesByIds);
 
-            // ✅ 逐題寫入新作答
+            // ✅ 在記憶體中批改並組出所有作答紀錄
+            List<Answer> answers = new ArrayList<>();
             for (JsonElement elem : answersJson) {
                 JsonObject a = elem.getAsJsonObject();
 
@@ -64,9 +77,9 @@ public class SubmitAnswerServlet extends HttpServlet {
                 String correctAnswer = a.has("correctAnswer") ? a.get("correctAnswer").getAsString() : null;
                 String source = a.has("source") ? a.get("source").getAsString() : "local";
 
-                Quiz quiz = null;
+                Integer parsedId = parseQuizId(quizIdRaw);
+                Quiz quiz = parsedId != null ? quizMap.get(parsedId) : null;
                 boolean isCorrect = false;
-                int quizId = -1;
 
                 Answer ans = new Answer();
                 ans.setUserId(userId);
@@ -75,11 +88,6 @@ public class SubmitAnswerServlet extends HttpServlet {
                 ans.setSource(source);
                 ans.setVideoId(videoId);
 
-                try {
-                    quizId = Integer.parseInt(quizIdRaw);
-                    quiz = quizDAO.getQuizById(quizId);
-                } catch (NumberFormatException ignored) {}
-
                 if (quiz != null && !"gpt".equalsIgnoreCase(source)) {
                     isCorrect = (selected == quiz.getCorrectIndex());
 
@@ -95,12 +103,7 @@ public class SubmitAnswerServlet extends HttpServlet {
                     isCorrect = selectedText != null && correctAnswer != null &&
                                 normalize(selectedText).equals(normalize(correctAnswer));
 
-                    try {
-                        quizId = Integer.parseInt(quizIdRaw);
-                    } catch (NumberFormatException e) {
-                        quizId = -1;
-                    }
-                    ans.setQuizId(quizId);
+                    ans.setQuizId(parsedId != null ? parsedId : -1);
 
                     ans.setQuestion(a.has("question") && !a.get("question").isJsonNull()
                             ? a.get("question").getAsString() : "");
@@ -126,11 +129,25 @@ public class SubmitAnswerServlet extends HttpServlet {
                 }
 
                 ans.setCorrect(isCorrect);
-                answerDAO.insertAnswer(ans);
+                answers.add(ans);
                 if (isCorrect) correctCount++;
             }
 
-            resultDAO.insertQuizResult(userId, videoId, correctCount, answersJson.size());
+            // ✅ 刪除舊作答、批次寫入新作答、成績與影片統計放在同一個交易，失敗時整批回滾
+            conn.setAutoCommit(false);
+            try {
+                answerDAO.deleteAnswersByUser(userId, videoId);
+                answerDAO.insertAnswers(answers);
+                resultDAO.insertQuizResult(userId, videoId, correctCount, answersJson.size());
+                statsDAO.recordSubmission(userId, videoId, answers);
+                conn.commit();
+            } catch (SQLException | RuntimeException e) {
+                // 任何例外都要先回滾，否則 finally 恢復 autoCommit 時會把已刪除舊作答的半套結果提交
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
 
             JsonObject result = new JsonObject();
             result.addProperty("correctCount", correctCount);
@@ -143,6 +160,15 @@ public class SubmitAnswerServlet extends HttpServlet {
         }
     }
 
+    // 將前端傳來的 quizId 轉為整數，GPT 題可能不是數字，此時回傳 null
+    private Integer parseQuizId(String raw) {
+        try {
+            return Integer.parseInt(raw);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
     private String normalize(String text) {
         return text == null ? "" : text.replaceAll("[\\s\\p{Punct}（）]+", "").toLowerCase();
     }
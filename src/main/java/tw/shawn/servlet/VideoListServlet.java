@@ -2,20 +2,40 @@ package tw.shawn.servlet;
 
 // ✅ 匯入所需套件與工具
 import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
 import jakarta.servlet.annotation.WebServlet;
 import jakarta.servlet.http.*;
 import tw.shawn.dao.VideoDAO;
 import tw.shawn.model.Video;
+import tw.shawn.util.AppConfig;
 import tw.shawn.util.DBUtil;
+import tw.shawn.util.VideoCatalog;
+import tw.shawn.util.VideoCursor;
 
 import java.io.IOException;
 import java.sql.Connection;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 
 // ✅ Servlet 註冊路徑為 /api/videoList，提供影片清單資料（可選擇排序方式）
+// 影片清單來自 VideoCatalog 的記憶體快照，各種排序在載入快照時已預先排好
+// 可選參數：
+// - fields=videoId,title,...：只回傳指定欄位（id、videoId、title、description、thumbnailUrl、publishedAt）
+// - limit=50 / cursor=...：分頁（keyset），回傳 {"items":[...],"nextCursor":"..."}，最後一頁 nextCursor 為 null
+//   沒有 limit 與 cursor 時與原本相同，回傳完整陣列
+// catalog.video.enabled=false 時改由 VideoDAO.getVideosPage 直接查詢資料庫（只查需要的欄位）
 @WebServlet("/api/videoList")
 public class VideoListServlet extends HttpServlet {
 
+    private static final int DEFAULT_LIMIT = 50;
+    private static final int MAX_LIMIT = 500;
+
+    // nextCursor 為 null 時也要輸出
+    private static final Gson GSON = new GsonBuilder().serializeNulls().create();
+
     // ✅ 處理前端傳來的 GET 請求：回傳影片列表 JSON，可依條件排序
     @Override
     protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
@@ -23,25 +43,78 @@ public class VideoListServlet extends HttpServlet {
         request.setCharacterEncoding("UTF-8"); // 確保讀取參數時避免亂碼
 
         // ✅ 接收前端傳來的排序參數（例如 ?sortBy=title），可為 title、published、videoId 等欄位
-        String sortBy = request.getParameter("sortBy");
+        String sortBy = VideoCursor.normalizeSort(request.getParameter("sortBy"));
+        String limitParam = request.getParameter("limit");
+        String cursorParam = request.getParameter("cursor");
+        boolean paged = limitParam != null || cursorParam != null;
 
-        try (Connection conn = DBUtil.getConnection()) {
-            // ✅ 建立 DAO 物件來操作 video 資料表
-            VideoDAO dao = new VideoDAO(conn);
+        // ✅ 解析欄位投影與分頁參數
+        Set<String> fields = null;
+        String fieldsParam = request.getParameter("fields");
+        if (fieldsParam != null && !fieldsParam.isBlank()) {
+            fields = new LinkedHashSet<>();
+            for (String f : fieldsParam.split(",")) {
+                f = f.trim();
+                if (f.isEmpty()) continue;
+                if (!VideoDAO.FIELD_COLUMNS.containsKey(f)) {
+                    sendError(response, 400, "不支援的欄位：" + f);
+                    return;
+                }
+                fields.add(f);
+            }
+        }
 
-            List<Video> videoList;
+        VideoCursor cursor = null;
+        int limit = DEFAULT_LIMIT;
+        try {
+            if (limitParam != null) limit = Math.max(1, Math.min(MAX_LIMIT, Integer.parseInt(limitParam)));
+            if (cursorParam != null && !cursorParam.isBlank()) cursor = VideoCursor.decode(cursorParam);
+        } catch (IllegalArgumentException e) {
+            sendError(response, 400, "limit 或 cursor 格式錯誤");
+            return;
+        }
+        if (cursor != null && !cursor.sortBy.equals(sortBy)) {
+            sendError(response, 400, "cursor 與 sortBy 不一致");
+            return;
+        }
 
-            if (sortBy != null && !sortBy.isBlank()) {
-                // ✅ 若有提供排序欄位，呼叫支援排序的方法
-                videoList = dao.getAllVideosSorted(sortBy);
+        try {
+            List<Video> videoList;
+            boolean hasMore = false;
+            if (AppConfig.getBoolean("catalog.video.enabled", true)) {
+                // ✅ 從影片清單快照取得已排好序的清單（不必每次查詢資料庫與排序）
+                VideoCatalog.Snapshot snapshot = VideoCatalog.getInstance().getSnapshot();
+                if (paged) {
+                    videoList = snapshot.page(sortBy, cursor, limit + 1);
+                } else {
+                    videoList = snapshot.sorted(sortBy);
+                }
             } else {
-                // ✅ 否則使用預設方法（不排序或預設排序）
-                videoList = dao.getAllVideos();
+                try (Connection conn = DBUtil.getConnection()) {
+                    videoList = new VideoDAO(conn).getVideosPage(sortBy, cursor, paged ? limit + 1 : Integer.MAX_VALUE, fields);
+                }
+            }
+            if (paged && videoList.size() > limit) { // 多取一筆判斷是否還有下一頁
+                hasMore = true;
+                videoList = videoList.subList(0, limit);
             }
 
-            // ✅ 使用 Gson 將 videoList（List<Video>）轉為 JSON 字串
-            Gson gson = new Gson();
-            String json = gson.toJson(videoList);
+            // ✅ 將 videoList 轉為 JSON（未指定 fields 時與 Gson 直接序列化 Video 相同）
+            JsonArray items = new JsonArray();
+            for (Video v : videoList) {
+                items.add(toJson(v, fields));
+            }
+
+            String json;
+            if (paged) {
+                JsonObject page = new JsonObject();
+                page.add("items", items);
+                page.addProperty("nextCursor", hasMore
+                        ? VideoCursor.after(sortBy, videoList.get(videoList.size() - 1)).encode() : null);
+                json = GSON.toJson(page);
+            } else {
+                json = items.toString();
+            }
 
             // ✅ 將 JSON 回傳給前端頁面
             response.getWriter().write(json);
@@ -52,4 +125,31 @@ public class VideoListServlet extends HttpServlet {
             response.sendError(500, "伺服器錯誤：" + e.getMessage());
         }
     }
+
+    // 依欄位投影轉成 JSON（null 值省略，與 Gson 預設行為相同）
+    private static JsonObject toJson(Video v, Set<String> fields) {
+        JsonObject json = new JsonObject();
+        if (include(fields, "id")) addIfPresent(json, "id", v.getId());
+        if (include(fields, "videoId")) addIfPresent(json, "videoId", v.getVideoId());
+        if (include(fields, "title")) addIfPresent(json, "title", v.getTitle());
+        if (include(fields, "description")) addIfPresent(json, "description", v.getDescription());
+        if (include(fields, "thumbnailUrl")) addIfPresent(json, "thumbnailUrl", v.getThumbnailUrl());
+        if (include(fields, "publishedAt")) addIfPresent(json, "publishedAt", v.getPublishedAt());
+        return json;
+    }
+
+    private static boolean include(Set<String> fields, String field) {
+        return fields == null || fields.contains(field);
+    }
+
+    private static void addIfPresent(JsonObject json, String name, String value) {
+        if (value != null) json.addProperty(name, value);
+    }
+
+    private static void sendError(HttpServletResponse response, int status, String message) throws IOException {
+        response.setStatus(status);
+        JsonObject error = new JsonObject();
+        error.addProperty("error", message);
+        response.getWriter().write(error.toString());
+    }
 }
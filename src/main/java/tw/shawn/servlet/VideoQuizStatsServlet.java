@@ -0,0 +1,69 @@
+package tw.shawn.servlet;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import jakarta.servlet.annotation.WebServlet;
+import jakarta.servlet.http.*;
+import tw.shawn.dao.VideoQuizStatsDAO;
+import tw.shawn.model.VideoQuizStats;
+import tw.shawn.util.DBUtil;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.util.Map;
+
+/**
+ * VideoQuizStatsServlet：某部影片所有使用者的測驗統計（供後台／儀表板使用）
+ * GET /api/videoQuizStats?videoId=xxx，回傳：
+ * { "videoId": "xxx", "attempts": 10, "totalQuestions": 50, "totalCorrect": 35, "learners": 4, "accuracy": 0.7,
+ *   "sources": { "local": { ... }, "gpt": { ... } } }
+ * 資料來自 video_quiz_stats 彙總表（作答時增量更新），只讀取該影片的幾列，不掃描作答紀錄。
+ * 合計可由 QuizStatsRebuilder 從歷史成績重建；sources 只統計啟用彙總表之後的作答（來源只有 local 與 gpt）。
+ */
+@WebServlet("/api/videoQuizStats")
+public class VideoQuizStatsServlet extends HttpServlet {
+
+    private final Gson gson = new Gson();
+
+    @Override
+    protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        req.setCharacterEncoding("UTF-8");
+        resp.setContentType("application/json;charset=UTF-8");
+
+        String videoId = req.getParameter("videoId");
+        if (videoId == null || videoId.isBlank()) {
+            resp.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            resp.getWriter().write("{\"error\": \"缺少 videoId\"}");
+            return;
+        }
+
+        try (Connection conn = DBUtil.getConnection()) {
+            Map<String, VideoQuizStats> stats = new VideoQuizStatsDAO(conn).getStats(videoId);
+
+            JsonObject json = toJson(stats.get(VideoQuizStatsDAO.ALL_SOURCES));
+            json.addProperty("videoId", videoId);
+            JsonObject sources = new JsonObject();
+            for (VideoQuizStats s : stats.values()) {
+                if (!VideoQuizStatsDAO.ALL_SOURCES.equals(s.getSource())) sources.add(s.getSource(), toJson(s));
+            }
+            json.add("sources", sources);
+            resp.getWriter().write(gson.toJson(json));
+
+        } catch (Exception e) {
+            e.printStackTrace();
+            resp.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+            resp.getWriter().write("{\"error\": \"伺服器處理錯誤\"}");
+        }
+    }
+
+    // 統計轉為 JSON（尚無作答時全部為 0）
+    private static JsonObject toJson(VideoQuizStats s) {
+        JsonObject json = new JsonObject();
+        json.addProperty("attempts", s != null ? s.getAttempts() : 0);
+        json.addProperty("totalQuestions", s != null ? s.getTotalQuestions() : 0);
+        json.addProperty("totalCorrect", s != null ? s.getTotalCorrect() : 0);
+        json.addProperty("learners", s != null ? s.getLearners() : 0);
+        json.addProperty("accuracy", s != null ? Math.round(s.getAccuracy() * 10000) / 10000.0 : 0);
+        return json;
+    }
+}
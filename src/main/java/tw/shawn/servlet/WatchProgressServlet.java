@@ -0,0 +1,103 @@
+package tw.shawn.servlet;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+
+import jakarta.servlet.annotation.WebServlet;
+import jakarta.servlet.http.*;
+
+import tw.shawn.util.WatchProgressTracker;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+
+/**
+ * WatchProgressServlet：影片觀看進度（續播位置）
+ * - POST：播放器心跳，JSON 主體 { "userId": 1, "videoId": 10, "currentTime": 123.4 }
+ *   只更新記憶體，由 WatchProgressTracker 定期合併後批次寫入 watch_progress，回傳 204
+ *   （Content-Type 不限，可搭配 navigator.sendBeacon 在離開頁面時送出最後位置）
+ * - GET：?userId=1&videoId=10，回傳 { "userId": 1, "videoId": 10, "currentTime": 123 }，沒有紀錄時 currentTime 為 0
+ * videoId 為 video 資料表的主鍵 id（與 /api/getLatestVideo 回傳的 id 相同）。
+ */
+@WebServlet("/api/watchProgress")
+public class WatchProgressServlet extends HttpServlet {
+
+    private final Gson gson = new Gson();
+
+    /**
+     * ✅ 接收心跳
+     */
+    @Override
+    protected void doPost(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        req.setCharacterEncoding("UTF-8");
+        JsonObject json;
+        try (BufferedReader reader = req.getReader()) {
+            json = gson.fromJson(reader, JsonObject.class);
+        } catch (JsonParseException e) {
+            json = null;
+        }
+
+        // ✅ 防呆：檢查欄位是否齊全且合理
+        if (json == null || !json.has("userId") || !json.has("videoId") || !json.has("currentTime")) {
+            sendError(resp, HttpServletResponse.SC_BAD_REQUEST, "缺少 userId、videoId 或 currentTime");
+            return;
+        }
+        int userId;
+        int videoId;
+        double currentTime;
+        try {
+            userId = json.get("userId").getAsInt();
+            videoId = json.get("videoId").getAsInt();
+            currentTime = json.get("currentTime").getAsDouble();
+        } catch (RuntimeException e) {
+            sendError(resp, HttpServletResponse.SC_BAD_REQUEST, "userId、videoId 與 currentTime 必須是數字");
+            return;
+        }
+        if (userId <= 0 || videoId <= 0 || !(currentTime >= 0) || currentTime > Integer.MAX_VALUE) {
+            sendError(resp, HttpServletResponse.SC_BAD_REQUEST, "userId、videoId 或 currentTime 超出範圍");
+            return;
+        }
+
+        WatchProgressTracker.getInstance().heartbeat(userId, videoId, (int) currentTime);
+        resp.setStatus(HttpServletResponse.SC_NO_CONTENT);
+    }
+
+    /**
+     * ✅ 查詢續播位置
+     */
+    @Override
+    protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        int userId;
+        int videoId;
+        try {
+            userId = Integer.parseInt(req.getParameter("userId"));
+            videoId = Integer.parseInt(req.getParameter("videoId"));
+        } catch (NumberFormatException e) {
+            sendError(resp, HttpServletResponse.SC_BAD_REQUEST, "userId 與 videoId 必須是整數");
+            return;
+        }
+
+        try {
+            int position = WatchProgressTracker.getInstance().getPosition(userId, videoId);
+            JsonObject json = new JsonObject();
+            json.addProperty("userId", userId);
+            json.addProperty("videoId", videoId);
+            json.addProperty("currentTime", position);
+            resp.setContentType("application/json;charset=UTF-8");
+            resp.getWriter().write(gson.toJson(json));
+        } catch (Exception e) {
+            e.printStackTrace();
+            sendError(resp, HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "查詢觀看進度失敗：" + e.getMessage());
+        }
+    }
+
+    private void sendError(HttpServletResponse resp, int status, String message) throws IOException {
+        JsonObject json = new JsonObject();
+        json.addProperty("success", false);
+        json.addProperty("error", message);
+        resp.setStatus(status);
+        resp.setContentType("application/json;charset=UTF-8");
+        resp.getWriter().write(gson.toJson(json));
+    }
+}
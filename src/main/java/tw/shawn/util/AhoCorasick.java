@@ -0,0 +1,113 @@
+package tw.shawn.util;
+
+import java.util.*;
+
+/**
+ * AhoCorasick：多字串比對自動機，掃描文字一次即可找出所有詞彙的出現位置
+ * - 英文字母不分大小寫
+ * - 以英數字開頭／結尾的詞彙需落在單字邊界上（避免 Java 比對到 JavaScript）
+ * - findAll 回傳互不重疊的結果：由左到右，同一起點取最長的詞
+ */
+public class AhoCorasick {
+
+    /**
+     * Match：一次比對結果（[start, end) 與比對到的詞彙）
+     */
+    public static class Match {
+        public final int start;
+        public final int end;
+        public final String pattern;
+
+        Match(int start, int end, String pattern) {
+            this.start = start;
+            this.end = end;
+            this.pattern = pattern;
+        }
+    }
+
+    private static class Node {
+        final Map<Character, Node> next = new HashMap<>();
+        Node fail;
+        String output;     // 以此節點結尾的詞彙（原始大小寫）
+        Node outputLink;   // 失敗鏈上最近一個有 output 的節點
+    }
+
+    private final Node root = new Node();
+
+    public AhoCorasick(Collection<String> patterns) {
+        for (String p : patterns) {
+            if (p == null || p.isEmpty()) continue;
+            Node node = root;
+            for (int i = 0; i < p.length(); i++) {
+                node = node.next.computeIfAbsent(fold(p.charAt(i)), k -> new Node());
+            }
+            node.output = p;
+        }
+        buildFailureLinks();
+    }
+
+    // 以 BFS 建立失敗連結
+    private void buildFailureLinks() {
+        Deque<Node> queue = new ArrayDeque<>();
+        for (Node child : root.next.values()) {
+            child.fail = root;
+            queue.add(child);
+        }
+        while (!queue.isEmpty()) {
+            Node node = queue.poll();
+            for (Map.Entry<Character, Node> e : node.next.entrySet()) {
+                char c = e.getKey();
+                Node child = e.getValue();
+                Node f = node.fail;
+                while (f != null && !f.next.containsKey(c)) f = f.fail;
+                child.fail = f == null ? root : f.next.get(c);
+                child.outputLink = child.fail.output != null ? child.fail : child.fail.outputLink;
+                queue.add(child);
+            }
+        }
+    }
+
+    /**
+     * ✅ 找出文字中所有不重疊的詞彙（單次掃描）
+     */
+    public List<Match> findAll(CharSequence text) {
+        List<Match> all = new ArrayList<>();
+        Node node = root;
+        for (int i = 0; i < text.length(); i++) {
+            char c = fold(text.charAt(i));
+            while (node != root && !node.next.containsKey(c)) node = node.fail;
+            node = node.next.getOrDefault(c, root);
+            for (Node o = node.output != null ? node : node.outputLink; o != null; o = o.outputLink) {
+                int start = i + 1 - o.output.length();
+                if (onBoundary(text, start, i + 1, o.output)) all.add(new Match(start, i + 1, o.output));
+            }
+        }
+
+        // 由左到右挑選不重疊的結果，同一起點取最長
+        all.sort((a, b) -> a.start != b.start ? a.start - b.start : b.end - a.end);
+        List<Match> result = new ArrayList<>();
+        int lastEnd = 0;
+        for (Match m : all) {
+            if (m.start >= lastEnd) {
+                result.add(m);
+                lastEnd = m.end;
+            }
+        }
+        return result;
+    }
+
+    private static boolean onBoundary(CharSequence text, int start, int end, String pattern) {
+        if (isWordChar(pattern.charAt(0)) && start > 0 && isWordChar(text.charAt(start - 1))) return false;
+        if (isWordChar(pattern.charAt(pattern.length() - 1)) && end < text.length() && isWordChar(text.charAt(end))) return false;
+        return true;
+    }
+
+    // 英數字與底線（中文字不視為單字字元，中文詞彙不需檢查邊界）
+    private static boolean isWordChar(char c) {
+        return (c < 128 && Character.isLetterOrDigit(c)) || c == '_';
+    }
+
+    private static char fold(char c) {
+        return c < 128 ? Character.toLowerCase(c) : c;
+    }
+}
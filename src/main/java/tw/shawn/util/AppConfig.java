@@ -0,0 +1,76 @@
+package tw.shawn.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
+
+/**
+ * AppConfig：集中讀取 classpath 上的 config.properties（只載入一次）
+ * 供連線池、快取等基礎元件讀取可調整的參數；找不到檔案或欄位時一律使用預設值。
+ */
+public class AppConfig {
+
+    private static final Properties props = new Properties(); // 載入後的設定內容
+
+    // ✅ 類別載入時讀取一次 config.properties
+    static {
+        try (InputStream input = AppConfig.class.getClassLoader().getResourceAsStream("config.properties")) {
+            if (input != null) {
+                props.load(input);
+            } else {
+                System.out.println("⚠️ 找不到 config.properties，使用預設設定");
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private AppConfig() {}
+
+    /**
+     * ✅ 讀取字串設定（System property 優先，方便部署時覆寫）
+     * @param key 設定名稱
+     * @param defaultValue 找不到時的預設值
+     */
+    public static String get(String key, String defaultValue) {
+        String sys = System.getProperty(key);
+        if (sys != null) return sys;
+        return props.getProperty(key, defaultValue);
+    }
+
+    /**
+     * ✅ 讀取整數設定，格式錯誤時回傳預設值
+     */
+    public static int getInt(String key, int defaultValue) {
+        String v = get(key, null);
+        if (v == null) return defaultValue;
+        try {
+            return Integer.parseInt(v.trim());
+        } catch (NumberFormatException e) {
+            System.err.println("⚠️ 設定值格式錯誤：" + key + " = " + v);
+            return defaultValue;
+        }
+    }
+
+    /**
+     * ✅ 讀取長整數設定，格式錯誤時回傳預設值
+     */
+    public static long getLong(String key, long defaultValue) {
+        String v = get(key, null);
+        if (v == null) return defaultValue;
+        try {
+            return Long.parseLong(v.trim());
+        } catch (NumberFormatException e) {
+            System.err.println("⚠️ 設定值格式錯誤：" + key + " = " + v);
+            return defaultValue;
+        }
+    }
+
+    /**
+     * ✅ 讀取布林設定（"true" 不分大小寫為 true）
+     */
+    public static boolean getBoolean(String key, boolean defaultValue) {
+        String v = get(key, null);
+        return v == null ? defaultValue : Boolean.parseBoolean(v.trim());
+    }
+}
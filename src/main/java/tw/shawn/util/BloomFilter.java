@@ -0,0 +1,68 @@
+package tw.shawn.util;
+
+import java.util.HexFormat;
+
+/**
+ * BloomFilter：判斷某個雜湊「一定不存在」或「可能存在」的位元集合（執行緒安全）
+ * 專門用於 SHA-256 十六進位字串：直接取雜湊的前 16 個位元組作為兩個獨立的 64 位元雜湊，
+ * 以 double hashing 產生 k 個位置，不必再計算其他雜湊函數。
+ */
+public class BloomFilter {
+
+    private final long[] bits;
+    private final long bitCount;
+    private final int hashCount;
+    private long insertions;
+
+    /**
+     * @param expectedItems 預估元素數量
+     * @param falsePositiveRate 可接受的誤判率（例如 0.01）
+     */
+    public BloomFilter(long expectedItems, double falsePositiveRate) {
+        long n = Math.max(1, expectedItems);
+        long m = (long) Math.ceil(-n * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        m = Math.max(64, Math.min(m, (long) Integer.MAX_VALUE * 64));
+        this.bits = new long[(int) ((m + 63) / 64)];
+        this.bitCount = (long) bits.length * 64;
+        this.hashCount = Math.max(1, (int) Math.round((double) m / n * Math.log(2)));
+    }
+
+    /**
+     * ✅ 加入一個 SHA-256 十六進位雜湊
+     */
+    public synchronized void add(String sha256Hex) {
+        long[] h = split(sha256Hex);
+        for (int i = 0; i < hashCount; i++) {
+            long idx = Math.floorMod(h[0] + i * h[1], bitCount);
+            bits[(int) (idx >>> 6)] |= 1L << idx;
+        }
+        insertions++;
+    }
+
+    /**
+     * ✅ 是否可能存在（false 代表一定不存在）
+     */
+    public synchronized boolean mightContain(String sha256Hex) {
+        long[] h = split(sha256Hex);
+        for (int i = 0; i < hashCount; i++) {
+            long idx = Math.floorMod(h[0] + i * h[1], bitCount);
+            if ((bits[(int) (idx >>> 6)] & (1L << idx)) == 0) return false;
+        }
+        return true;
+    }
+
+    private static long[] split(String sha256Hex) {
+        byte[] b = HexFormat.of().parseHex(sha256Hex, 0, 32);
+        long h1 = 0;
+        long h2 = 0;
+        for (int i = 0; i < 8; i++) {
+            h1 = (h1 << 8) | (b[i] & 0xFF);
+            h2 = (h2 << 8) | (b[i + 8] & 0xFF);
+        }
+        return new long[]{h1, h2 | 1}; // h2 為奇數，確保各位置不同
+    }
+
+    public synchronized long getInsertions() { return insertions; }
+    public long getBitCount() { return bitCount; }
+    public int getHashCount() { return hashCount; }
+}
@@ -0,0 +1,462 @@
+package tw.shawn.util;
+
+import javax.sql.DataSource;
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * ConnectionPool：有上限的 JDBC 連線池（實作 DataSource）
+ * 借出的 Connection 為代理物件，呼叫 close() 時會歸還池中而非真正關閉實體連線；
+ * 由它建立的 Statement 也會包裝，getConnection() 回傳同一個代理物件，不會拿到實體連線。
+ * 功能：最小/最大連線數、閒置過久才驗證、借用逾時、洩漏偵測與使用量計數。
+ * 洩漏偵測在 leakThresholdMs 大於 0 時啟用；借用者堆疊只有 leakTrace 開啟時才記錄（每次借用都要建立堆疊，預設關閉）。
+ */
+public class ConnectionPool implements DataSource {
+
+    private final String url;
+    private final String user;
+    private final String password;
+
+    private final int minSize;                 // 最少維持的實體連線數
+    private final int maxSize;                 // 最多可同時存在的實體連線數
+    private final long acquireTimeoutMs;       // 借用連線最長等待時間
+    private final long validationIntervalMs;   // 閒置超過此時間才在借出前驗證
+    private final long leakThresholdMs;        // 借出超過此時間視為疑似洩漏（0 表示不偵測）
+    private final boolean leakTrace;           // 借用時是否記錄堆疊（疑似洩漏時印出借用位置）
+    private final long idleTimeoutMs;          // 超過 minSize 的閒置連線存活時間
+
+    private final LinkedBlockingDeque<PooledConnection> idle = new LinkedBlockingDeque<>(); // 閒置連線（後進先出，保持熱連線）
+    private final Set<PooledConnection> borrowed = ConcurrentHashMap.newKeySet();         // 借出中的連線
+    private final Semaphore permits;                                                     // 同時借出數上限
+    private final AtomicInteger total = new AtomicInteger();                             // 實體連線總數
+    private final AtomicInteger waiting = new AtomicInteger();                           // 正在等待借用的執行緒數
+
+    // ✅ 統計用計數器
+    private final AtomicLong createdCount = new AtomicLong();
+    private final AtomicLong destroyedCount = new AtomicLong();
+    private final AtomicLong timeoutCount = new AtomicLong();
+    private final AtomicLong leakCount = new AtomicLong();
+
+    private final ScheduledExecutorService housekeeper;
+    private volatile boolean closed = false;
+
+    /**
+     * 建構子：建立連線池並預先開啟 minSize 條連線（不記錄借用者堆疊）
+     */
+    public ConnectionPool(String url, String user, String password,
+                          int minSize, int maxSize, long acquireTimeoutMs,
+                          long validationIntervalMs, long leakThresholdMs, long idleTimeoutMs) {
+        this(url, user, password, minSize, maxSize, acquireTimeoutMs, validationIntervalMs,
+                leakThresholdMs, idleTimeoutMs, false);
+    }
+
+    /**
+     * 建構子：建立連線池並預先開啟 minSize 條連線
+     * @param leakTrace 借用時是否記錄堆疊（只在洩漏偵測啟用時有效）
+     */
+    public ConnectionPool(String url, String user, String password,
+                          int minSize, int maxSize, long acquireTimeoutMs,
+                          long validationIntervalMs, long leakThresholdMs, long idleTimeoutMs,
+                          boolean leakTrace) {
+        if (maxSize <= 0 || minSize < 0 || minSize > maxSize) {
+            throw new IllegalArgumentException("連線池大小設定錯誤：min=" + minSize + ", max=" + maxSize);
+        }
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.acquireTimeoutMs = acquireTimeoutMs;
+        this.validationIntervalMs = validationIntervalMs;
+        this.leakThresholdMs = leakThresholdMs;
+        this.leakTrace = leakTrace && leakThresholdMs > 0;
+        this.idleTimeoutMs = idleTimeoutMs;
+        this.permits = new Semaphore(maxSize, true);
+
+        this.housekeeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "db-pool-housekeeper");
+            t.setDaemon(true);
+            return t;
+        });
+        long period = leakThresholdMs > 0 ? Math.max(1000, Math.min(leakThresholdMs, 30_000) / 2) : 15_000;
+        housekeeper.scheduleWithFixedDelay(this::housekeep, period, period, TimeUnit.MILLISECONDS);
+
+        fillToMinimum();
+    }
+
+    // ==== DataSource 介面 ====
+
+    /**
+     * ✅ 借用一條連線；池滿時最多等待 acquireTimeoutMs，逾時丟出 SQLTimeoutException
+     */
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (closed) throw new SQLException("連線池已關閉");
+
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(acquireTimeoutMs);
+        waiting.incrementAndGet();
+        boolean acquired;
+        try {
+            acquired = permits.tryAcquire(acquireTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("等待連線時被中斷", e);
+        } finally {
+            waiting.decrementAndGet();
+        }
+        if (!acquired) {
+            timeoutCount.incrementAndGet();
+            throw new SQLTimeoutException("取得資料庫連線逾時（" + acquireTimeoutMs + " ms），" + stats());
+        }
+
+        try {
+            PooledConnection pc = takeOrCreate(deadline);
+            pc.markBorrowed();
+            borrowed.add(pc);
+            return pc.newProxy();
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        throw new SQLFeatureNotSupportedException("連線池不支援以其他帳號借用連線");
+    }
+
+    @Override
+    public PrintWriter getLogWriter() { return null; }
+
+    @Override
+    public void setLogWriter(PrintWriter out) {}
+
+    @Override
+    public void setLoginTimeout(int seconds) { DriverManager.setLoginTimeout(seconds); }
+
+    @Override
+    public int getLoginTimeout() { return DriverManager.getLoginTimeout(); }
+
+    @Override
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        throw new SQLFeatureNotSupportedException();
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        if (iface.isInstance(this)) return iface.cast(this);
+        throw new SQLException("無法轉型為 " + iface.getName());
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) { return iface.isInstance(this); }
+
+    // ==== 統計資訊 ====
+
+    public int getActiveCount() { return borrowed.size(); }   // 借出中
+    public int getIdleCount() { return idle.size(); }         // 閒置中
+    public int getWaitingCount() { return waiting.get(); }    // 等待中
+    public int getTotalCount() { return total.get(); }        // 實體連線總數
+    public long getCreatedCount() { return createdCount.get(); }
+    public long getDestroyedCount() { return destroyedCount.get(); }
+    public long getTimeoutCount() { return timeoutCount.get(); }
+    public long getLeakCount() { return leakCount.get(); }
+
+    /**
+     * ✅ 回傳目前連線池狀態摘要（用於日誌）
+     */
+    public String stats() {
+        return "pool[active=" + getActiveCount() + ", idle=" + getIdleCount() +
+               ", waiting=" + getWaitingCount() + ", total=" + getTotalCount() + "/" + maxSize +
+               ", created=" + getCreatedCount() + ", timeouts=" + getTimeoutCount() +
+               ", leaks=" + getLeakCount() + "]";
+    }
+
+    /**
+     * ✅ 關閉連線池：停止背景執行緒、關閉所有閒置連線；借出中的連線於歸還時關閉
+     */
+    public void shutdown() {
+        if (closed) return;
+        closed = true;
+        housekeeper.shutdownNow();
+
+        PooledConnection pc;
+        while ((pc = idle.pollFirst()) != null) {
+            destroy(pc);
+        }
+        if (!borrowed.isEmpty()) {
+            System.err.println("⚠️ 連線池關閉時仍有 " + borrowed.size() + " 條連線未歸還，將於歸還時關閉");
+        }
+        System.out.println("✅ 連線池已關閉：" + stats());
+    }
+
+    // ==== 內部實作 ====
+
+    /**
+     * 先從閒置佇列取（必要時驗證），沒有閒置連線且未達上限則新建，否則等待其他執行緒歸還
+     */
+    private PooledConnection takeOrCreate(long deadline) throws SQLException {
+        while (true) {
+            PooledConnection pc = idle.pollFirst();
+            if (pc != null) {
+                if (isUsable(pc)) return pc;
+                destroy(pc);
+                continue;
+            }
+
+            if (reserveSlot()) {
+                try {
+                    return createPhysical();
+                } catch (SQLException | RuntimeException e) {
+                    total.decrementAndGet();
+                    throw e;
+                }
+            }
+
+            // 已達上限（背景補充中的連線也算在內），等待閒置連線出現
+            long remainingNs = deadline - System.nanoTime();
+            if (remainingNs <= 0) {
+                timeoutCount.incrementAndGet();
+                throw new SQLTimeoutException("取得資料庫連線逾時（" + acquireTimeoutMs + " ms），" + stats());
+            }
+            try {
+                pc = idle.pollFirst(remainingNs, TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLException("等待連線時被中斷", e);
+            }
+            if (pc != null) {
+                if (isUsable(pc)) return pc;
+                destroy(pc);
+            }
+        }
+    }
+
+    /**
+     * 快速驗證：只有閒置超過 validationIntervalMs 的連線才呼叫 isValid（避免每次借用都多一次往返）
+     */
+    private boolean isUsable(PooledConnection pc) {
+        try {
+            if (pc.physical.isClosed()) return false;
+            if (System.currentTimeMillis() - pc.lastReturnedAt < validationIntervalMs) return true;
+            return pc.physical.isValid(1);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    // 以 CAS 方式預留一個實體連線名額（不超過 maxSize）
+    private boolean reserveSlot() {
+        while (true) {
+            int current = total.get();
+            if (current >= maxSize) return false;
+            if (total.compareAndSet(current, current + 1)) return true;
+        }
+    }
+
+    private PooledConnection createPhysical() throws SQLException {
+        Connection physical = DriverManager.getConnection(url, user, password);
+        createdCount.incrementAndGet();
+        return new PooledConnection(physical);
+    }
+
+    private void destroy(PooledConnection pc) {
+        total.decrementAndGet();
+        destroyedCount.incrementAndGet();
+        try {
+            pc.physical.close();
+        } catch (SQLException ignored) {
+            // 連線可能已失效，關閉失敗不影響連線池
+        }
+    }
+
+    /**
+     * 歸還連線：重設交易狀態後放回閒置佇列；若連線已損壞或連線池已關閉則直接關閉
+     */
+    private void release(PooledConnection pc) {
+        borrowed.remove(pc);
+        try {
+            boolean healthy = !pc.physical.isClosed();
+            if (healthy) {
+                try {
+                    if (!pc.physical.getAutoCommit()) {
+                        // 借用者忘了 commit/rollback 時，回滾避免交易殘留到下一位使用者
+                        pc.physical.rollback();
+                        pc.physical.setAutoCommit(true);
+                    }
+                    if (pc.physical.isReadOnly()) pc.physical.setReadOnly(false);
+                } catch (SQLException e) {
+                    healthy = false;
+                }
+            }
+
+            if (healthy && !closed) {
+                pc.lastReturnedAt = System.currentTimeMillis();
+                idle.offerFirst(pc);
+            } else {
+                destroy(pc);
+            }
+        } catch (SQLException e) {
+            destroy(pc);
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * 背景維護：洩漏偵測、回收過久閒置的連線、補足最少連線數
+     */
+    private void housekeep() {
+        try {
+            long now = System.currentTimeMillis();
+
+            // ✅ 洩漏偵測：借出過久的連線印出借用者堆疊（每條只報一次）
+            if (leakThresholdMs > 0) {
+                for (PooledConnection pc : borrowed) {
+                    if (!pc.leakReported && now - pc.borrowedAt > leakThresholdMs) {
+                        pc.leakReported = true;
+                        leakCount.incrementAndGet();
+                        Throwable trace = pc.borrowTrace;
+                        if (trace != null) {
+                            System.err.println("⚠️ 疑似連線洩漏：已借出 " + (now - pc.borrowedAt) + " ms 未歸還，借用位置如下：");
+                            trace.printStackTrace();
+                        } else {
+                            System.err.println("⚠️ 疑似連線洩漏：已借出 " + (now - pc.borrowedAt)
+                                    + " ms 未歸還（開啟 db.pool.leakTrace 可記錄借用位置）");
+                        }
+                    }
+                }
+            }
+
+            // ✅ 回收超過 minSize 且閒置過久的連線
+            Iterator<PooledConnection> it = idle.descendingIterator();
+            while (it.hasNext() && total.get() > minSize) {
+                PooledConnection pc = it.next();
+                if (now - pc.lastReturnedAt > idleTimeoutMs && idle.remove(pc)) {
+                    destroy(pc);
+                }
+            }
+
+            fillToMinimum();
+        } catch (Throwable t) {
+            System.err.println("❌ 連線池背景維護失敗：" + t.getMessage());
+        }
+    }
+
+    // 補足最少連線數（建立失敗時僅記錄，下一輪再試）
+    private void fillToMinimum() {
+        while (!closed && total.get() < minSize && reserveSlot()) {
+            try {
+                PooledConnection pc = createPhysical();
+                idle.offerLast(pc);
+            } catch (SQLException e) {
+                total.decrementAndGet();
+                System.err.println("❌ 建立資料庫連線失敗：" + e.getMessage());
+                return;
+            }
+        }
+    }
+
+    /**
+     * PooledConnection：包裝實體連線與借用資訊
+     */
+    private class PooledConnection {
+        final Connection physical;
+        volatile long lastReturnedAt = System.currentTimeMillis();
+        volatile long borrowedAt;
+        volatile Throwable borrowTrace;
+        volatile boolean leakReported;
+
+        PooledConnection(Connection physical) {
+            this.physical = physical;
+        }
+
+        void markBorrowed() {
+            borrowedAt = System.currentTimeMillis();
+            borrowTrace = leakTrace ? new Throwable("連線借用位置") : null; // 建立堆疊成本高，只在需要時記錄
+            leakReported = false;
+        }
+
+        // 建立代理物件：close() 代表歸還，歸還後不可再使用
+        Connection newProxy() {
+            AtomicBoolean returned = new AtomicBoolean(false);
+            InvocationHandler handler = (proxy, method, args) -> {
+                String name = method.getName();
+                switch (name) {
+                    case "close":
+                        if (returned.compareAndSet(false, true)) release(this);
+                        return null;
+                    case "isClosed":
+                        return returned.get() || physical.isClosed();
+                    case "equals":
+                        return proxy == args[0];
+                    case "hashCode":
+                        return System.identityHashCode(proxy);
+                    case "toString":
+                        return "PooledConnection@" + Integer.toHexString(System.identityHashCode(proxy));
+                    default:
+                        if (returned.get()) throw new SQLException("連線已歸還連線池，無法再使用");
+                        Object result = invoke(method, args);
+                        // Statement.getConnection() 需回傳代理物件，否則呼叫端可能直接關閉實體連線
+                        return result instanceof Statement ? wrapStatement((Statement) result, (Connection) proxy) : result;
+                }
+            };
+            return (Connection) Proxy.newProxyInstance(
+                    Connection.class.getClassLoader(), new Class<?>[]{Connection.class}, handler);
+        }
+
+        // 包裝 Statement：getConnection() 回傳連線代理物件，其餘直接轉給實體 Statement
+        private Statement wrapStatement(Statement statement, Connection connectionProxy) {
+            Class<?> iface = statement instanceof CallableStatement ? CallableStatement.class
+                    : statement instanceof PreparedStatement ? PreparedStatement.class : Statement.class;
+            InvocationHandler handler = (proxy, method, args) -> {
+                switch (method.getName()) {
+                    case "getConnection":
+                        return connectionProxy;
+                    case "equals":
+                        return proxy == args[0];
+                    case "hashCode":
+                        return System.identityHashCode(proxy);
+                    default:
+                        try {
+                            return method.invoke(statement, args);
+                        } catch (InvocationTargetException e) {
+                            throw e.getCause();
+                        }
+                }
+            };
+            return (Statement) Proxy.newProxyInstance(Statement.class.getClassLoader(), new Class<?>[]{iface}, handler);
+        }
+
+        private Object invoke(Method method, Object[] args) throws Throwable {
+            try {
+                return method.invoke(physical, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
@@ -1,19 +1,21 @@
 package tw.shawn.util;
 
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
 
 /**
  * DBUtil 類別：資料庫工具類，提供 JDBC 的連線建立、關閉連線與釋放背景資源功能。
- * 用於統一管理與 MySQL 資料庫的連接邏輯。
+ * 用於統一管理與 MySQL 資料庫的連接邏輯；連線由 ConnectionPool 連線池提供並重複使用。
  */
 public class DBUtil {
 
-    // ✅ 設定資料庫的連線資訊（URL、帳號、密碼）
-    private static final String URL = "jdbc:mysql://localhost:3306/videolist"; // 資料庫位置與名稱（host:port/db）
-    private static final String USER = "root";       // 資料庫使用者帳號
-    private static final String PASSWORD = "";       // 資料庫密碼（視你的 MySQL 安裝設定而定）
+    // ✅ 設定資料庫的連線資訊（URL、帳號、密碼），可由 config.properties 的 db.* 覆寫
+    private static final String URL = AppConfig.get("db.url", "jdbc:mysql://localhost:3306/videolist?rewriteBatchedStatements=true"); // 資料庫位置與名稱（host:port/db），啟用批次改寫為多列 INSERT
+    private static final String USER = AppConfig.get("db.user", "root");       // 資料庫使用者帳號
+    private static final String PASSWORD = AppConfig.get("db.password", "");   // 資料庫密碼（視你的 MySQL 安裝設定而定）
+
+    // ✅ 連線池（第一次取得連線時才建立）
+    private static volatile ConnectionPool pool;
 
     // ✅ 類別載入時執行一次的區塊：註冊 JDBC 驅動程式
     static {
@@ -30,16 +32,54 @@ public class DBUtil {
 
     /**
      * ✅ 提供資料庫連線給 DAO 或 Servlet 使用
-     * @return Connection 資料庫連線物件（由 DriverManager 提供）
-     * @throws SQLException 若連線建立過程出錯
+     * 呼叫端使用完畢後 close() 即會歸還連線池（try-with-resources 寫法不變）
+     * @return Connection 資料庫連線物件（由連線池提供）
+     * @throws SQLException 若連線建立過程出錯或等待連線逾時
      */
     public static Connection getConnection() throws SQLException {
-        // 傳回一個新的資料庫連線物件
-        return DriverManager.getConnection(URL, USER, PASSWORD);
+        return getPool().getConnection();
+    }
+
+    /**
+     * ✅ 取得連線池實例（延遲建立，參數來自 config.properties 的 db.pool.*）
+     * @return ConnectionPool 連線池
+     */
+    public static ConnectionPool getPool() {
+        ConnectionPool p = pool;
+        if (p == null) {
+            synchronized (DBUtil.class) {
+                p = pool;
+                if (p == null) {
+                    p = new ConnectionPool(URL, USER, PASSWORD,
+                            AppConfig.getInt("db.pool.minSize", 2),
+                            AppConfig.getInt("db.pool.maxSize", 20),
+                            AppConfig.getLong("db.pool.acquireTimeoutMs", 5000),
+                            AppConfig.getLong("db.pool.validationIntervalMs", 30_000),
+                            AppConfig.getLong("db.pool.leakThresholdMs", 60_000),
+                            AppConfig.getLong("db.pool.idleTimeoutMs", 600_000),
+                            AppConfig.getBoolean("db.pool.leakTrace", false));
+                    pool = p;
+                    System.out.println("✅ 資料庫連線池建立完成：" + p.stats());
+                }
+            }
+        }
+        return p;
+    }
+
+    /**
+     * ✅ 關閉連線池並釋放所有實體連線（WebApp 關閉時呼叫）
+     */
+    public static void shutdownPool() {
+        synchronized (DBUtil.class) {
+            if (pool != null) {
+                pool.shutdown();
+                pool = null;
+            }
+        }
     }
 
     /**
-     * ✅ 關閉資料庫連線，避免連線資源外洩（避免 connection pool 泄漏）
+     * ✅ 關閉（歸還）資料庫連線，避免連線資源外洩（避免 connection pool 泄漏）
      * @param conn 要關閉的資料庫連線物件
      */
     public static void close(Connection conn) {
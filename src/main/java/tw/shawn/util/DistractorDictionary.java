@@ -0,0 +1,121 @@
+package tw.shawn.util;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.*;
+
+/**
+ * DistractorDictionary：干擾選項替換字典（詞彙 → 可替換成的錯誤詞彙）
+ * 所有詞彙編譯成一個 Aho-Corasick 自動機，句子只需掃描一次就能找出所有可替換的位置，
+ * 每個位置的每個替換詞都能產生一個干擾選項。
+ * 預設字典為 classpath 上的 quiz/distractors.txt，可用 quiz.distractors.file 指定外部檔案。
+ */
+public class DistractorDictionary {
+
+    private static final String DEFAULT_RESOURCE = "quiz/distractors.txt";
+
+    private static volatile DistractorDictionary defaultInstance;
+
+    private final Map<String, List<String>> replacements; // 小寫詞彙 → 替換詞
+    private final AhoCorasick automaton;
+
+    public DistractorDictionary(Map<String, List<String>> entries) {
+        this.replacements = new HashMap<>();
+        for (Map.Entry<String, List<String>> e : entries.entrySet()) {
+            replacements.put(e.getKey().toLowerCase(Locale.ROOT), List.copyOf(e.getValue()));
+        }
+        this.automaton = new AhoCorasick(entries.keySet());
+    }
+
+    /**
+     * ✅ 取得預設字典（第一次使用時載入）
+     */
+    public static DistractorDictionary getDefault() {
+        DistractorDictionary d = defaultInstance;
+        if (d == null) {
+            synchronized (DistractorDictionary.class) {
+                d = defaultInstance;
+                if (d == null) {
+                    d = loadDefault();
+                    defaultInstance = d;
+                }
+            }
+        }
+        return d;
+    }
+
+    private static DistractorDictionary loadDefault() {
+        String file = AppConfig.get("quiz.distractors.file", null);
+        try {
+            if (file != null) {
+                try (Reader r = Files.newBufferedReader(Paths.get(file), StandardCharsets.UTF_8)) {
+                    return new DistractorDictionary(parse(r));
+                }
+            }
+            try (InputStream in = DistractorDictionary.class.getClassLoader().getResourceAsStream(DEFAULT_RESOURCE)) {
+                if (in == null) throw new IOException("找不到 " + DEFAULT_RESOURCE);
+                return new DistractorDictionary(parse(new InputStreamReader(in, StandardCharsets.UTF_8)));
+            }
+        } catch (IOException e) {
+            System.err.println("⚠️ 干擾選項字典載入失敗，改用內建的基本字典：" + e.getMessage());
+            Map<String, List<String>> fallback = new LinkedHashMap<>();
+            fallback.put("Java", List.of("Python"));
+            fallback.put("JDK", List.of("JRE"));
+            fallback.put("VS Code", List.of("Notepad"));
+            return new DistractorDictionary(fallback);
+        }
+    }
+
+    /**
+     * ✅ 解析字典內容：每行「詞彙=替換1|替換2」，# 開頭為註解
+     */
+    public static Map<String, List<String>> parse(Reader reader) throws IOException {
+        Map<String, List<String>> entries = new LinkedHashMap<>();
+        BufferedReader br = new BufferedReader(reader);
+        String line;
+        while ((line = br.readLine()) != null) {
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) continue;
+            int eq = line.indexOf('=');
+            if (eq <= 0) continue;
+            String term = line.substring(0, eq).trim();
+            List<String> reps = new ArrayList<>();
+            for (String r : line.substring(eq + 1).split("\\|")) {
+                r = r.trim();
+                if (!r.isEmpty() && !r.equalsIgnoreCase(term)) reps.add(r);
+            }
+            if (!term.isEmpty() && !reps.isEmpty()) entries.put(term, reps);
+        }
+        return entries;
+    }
+
+    /**
+     * ✅ 為句子產生所有干擾選項：每個比對位置 × 每個替換詞各產生一句（單次掃描）
+     * @param sentence 正確敘述
+     * @return 干擾選項（不含原句、不重複，依出現位置排序）
+     */
+    public List<String> variants(String sentence) {
+        Set<String> out = new LinkedHashSet<>();
+        for (AhoCorasick.Match m : automaton.findAll(sentence)) {
+            List<String> reps = replacements.get(m.pattern.toLowerCase(Locale.ROOT));
+            if (reps == null) continue;
+            String prefix = sentence.substring(0, m.start);
+            String suffix = sentence.substring(m.end);
+            for (String r : reps) {
+                String v = prefix + r + suffix;
+                if (!v.equals(sentence)) out.add(v);
+            }
+        }
+        return new ArrayList<>(out);
+    }
+
+    public int size() {
+        return replacements.size();
+    }
+}
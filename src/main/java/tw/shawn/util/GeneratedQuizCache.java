@@ -0,0 +1,233 @@
+package tw.shawn.util;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * GeneratedQuizCache：GPT 產題結果的本機磁碟快取（單例，重啟後仍有效）
+ * 以 SHA-256(字幕內容雜湊, prompt 範本, 分段參數與每段 prompt, 模型名稱) 作為鍵，值為解析後的題目 JSON 陣列（gzip 壓縮存檔）。
+ * 字幕與 prompt 都沒變時直接使用上次的結果，不必再呼叫 OpenAI。
+ * 總容量有上限，超過時依最後存取時間（LRU，以檔案修改時間保存）淘汰。
+ * 物件鎖只保護索引與統計數字；gzip 讀寫、搬移與刪除檔案都在鎖外進行，慢速磁碟不會卡住其他請求。
+ */
+public class GeneratedQuizCache {
+
+    private static final String SUFFIX = ".json.gz";
+
+    private static final GeneratedQuizCache INSTANCE = new GeneratedQuizCache(
+            Paths.get(AppConfig.get("quiz.genCache.dir",
+                    System.getProperty("user.home") + File.separator + ".video-learning-platform" + File.separator + "gen-cache")),
+            AppConfig.getLong("quiz.genCache.maxBytes", 64L * 1024 * 1024));
+
+    private final Path dir;
+    private final long maxBytes;
+    private final LinkedHashMap<String, Entry> index = new LinkedHashMap<>(16, 0.75f, true); // 鍵 → 項目（存取順序）
+    private long totalBytes;
+    private boolean available;
+
+    // ✅ 統計
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    // 索引中的一筆快取；以物件身分比對，確認鎖外讀檔期間項目沒有被新結果取代
+    private static final class Entry {
+        final long size;
+
+        Entry(long size) {
+            this.size = size;
+        }
+    }
+
+    // 啟動時掃描到的快取檔
+    private record CachedFile(Path file, long lastAccess, long size) {
+    }
+
+    GeneratedQuizCache(Path dir, long maxBytes) {
+        this.dir = dir;
+        this.maxBytes = maxBytes;
+        loadIndex();
+    }
+
+    public static GeneratedQuizCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * ✅ 計算快取鍵：字幕內容雜湊（TranscriptStore 已算好的 SHA-256）、prompt 範本、分段參數與模型名稱的 SHA-256
+     * 分段上限或每段 prompt 改變時送給模型的內容不同，因此也必須換鍵，不能沿用舊結果。
+     * @param chunkMaxTokens 長字幕分段的每段 token 上限（quiz.chunk.maxTokens）
+     * @param chunkPromptTemplate 實際送出的每段 prompt 範本（只有一段時與 promptTemplate 相同）
+     */
+    public static String keyOf(String transcriptHash, String promptTemplate, int chunkMaxTokens,
+                               String chunkPromptTemplate, String model) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            for (String part : new String[]{transcriptHash, promptTemplate, Integer.toString(chunkMaxTokens),
+                    chunkPromptTemplate, model}) {
+                md.update(part.getBytes(StandardCharsets.UTF_8));
+                md.update((byte) 0);
+            }
+            return HexFormat.of().formatHex(md.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * ✅ 讀取快取結果
+     * @return 題目 JSON 陣列字串，未命中時回傳 null
+     */
+    public String get(String key) {
+        Entry entry;
+        synchronized (this) {
+            entry = available ? index.get(key) : null;
+            if (entry == null) {
+                misses++;
+                return null;
+            }
+        }
+        Path file = fileOf(key);
+        String json;
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(file))) {
+            json = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            // 檔案損毀或被外部刪除：移出索引視為未命中（讀檔期間已被新結果取代時保留新項目）
+            System.err.println("⚠️ 產題快取讀取失敗，已移除：" + e.getMessage());
+            boolean removed;
+            synchronized (this) {
+                removed = index.remove(key, entry);
+                if (removed) totalBytes -= entry.size;
+                misses++;
+            }
+            if (removed) deleteQuietly(file);
+            return null;
+        }
+        try {
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis())); // 記錄最近存取，重啟後仍維持 LRU 順序
+        } catch (IOException ignored) {
+            // 讀完後才被淘汰，內容已取得，不影響本次命中
+        }
+        synchronized (this) {
+            hits++;
+        }
+        return json;
+    }
+
+    /**
+     * ✅ 寫入快取結果（先寫暫存檔再搬移，避免讀到寫一半的檔案），並淘汰超出容量的項目
+     */
+    public void put(String key, String quizJson) {
+        synchronized (this) {
+            if (!available) return;
+        }
+        Path file = fileOf(key);
+        Path tmp = null;
+        long size;
+        try {
+            tmp = Files.createTempFile(dir, key, ".tmp"); // 每次寫入各用一個暫存檔，同鍵並行寫入不會互相覆蓋
+            try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(tmp))) {
+                out.write(quizJson.getBytes(StandardCharsets.UTF_8));
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            size = Files.size(file);
+        } catch (IOException e) {
+            System.err.println("⚠️ 產題快取寫入失敗：" + e.getMessage());
+            if (tmp != null) deleteQuietly(tmp);
+            return;
+        }
+        List<String> victims;
+        synchronized (this) {
+            Entry old = index.put(key, new Entry(size));
+            totalBytes += size - (old != null ? old.size : 0);
+            victims = evictIfNeeded();
+        }
+        deleteFiles(victims);
+    }
+
+    // 超過容量上限時，從最久未使用的項目開始移出索引（呼叫端須持有鎖），回傳待刪除的鍵
+    private List<String> evictIfNeeded() {
+        List<String> victims = new ArrayList<>();
+        Iterator<Map.Entry<String, Entry>> it = index.entrySet().iterator();
+        while (totalBytes > maxBytes && it.hasNext()) {
+            Map.Entry<String, Entry> eldest = it.next();
+            victims.add(eldest.getKey());
+            totalBytes -= eldest.getValue().size;
+            it.remove();
+            evictions++;
+        }
+        return victims;
+    }
+
+    // 在鎖外刪除已移出索引的快取檔
+    private void deleteFiles(List<String> keys) {
+        for (String key : keys) {
+            try {
+                Files.deleteIfExists(fileOf(key));
+            } catch (IOException e) {
+                System.err.println("⚠️ 無法刪除快取檔：" + e.getMessage());
+            }
+        }
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException ignored) {
+            // 已無法使用的檔案，刪除失敗也無妨
+        }
+    }
+
+    // 啟動時掃描快取目錄，依最後存取時間由舊到新重建索引
+    private void loadIndex() {
+        try {
+            Files.createDirectories(dir);
+            List<Path> files;
+            try (Stream<Path> s = Files.list(dir)) {
+                files = s.filter(p -> p.getFileName().toString().endsWith(SUFFIX)).toList();
+            }
+            List<CachedFile> entries = new ArrayList<>();
+            for (Path p : files) {
+                entries.add(new CachedFile(p, Files.getLastModifiedTime(p).toMillis(), Files.size(p)));
+            }
+            entries.sort(Comparator.comparingLong(CachedFile::lastAccess));
+            List<String> victims;
+            synchronized (this) {
+                for (CachedFile e : entries) {
+                    String name = e.file().getFileName().toString();
+                    String key = name.substring(0, name.length() - SUFFIX.length());
+                    index.put(key, new Entry(e.size()));
+                    totalBytes += e.size();
+                }
+                available = true;
+                victims = evictIfNeeded();
+            }
+            deleteFiles(victims);
+            System.out.println("✅ 產題快取載入完成：" + size() + " 筆，" + getTotalBytes() + " bytes（" + dir + "）");
+        } catch (IOException e) {
+            synchronized (this) {
+                available = false;
+            }
+            System.err.println("⚠️ 無法使用產題快取目錄 " + dir + "：" + e.getMessage());
+        }
+    }
+
+    private Path fileOf(String key) {
+        return dir.resolve(key + SUFFIX);
+    }
+
+    public synchronized int size() { return index.size(); }
+    public synchronized long getTotalBytes() { return totalBytes; }
+    public long getMaxBytes() { return maxBytes; }
+    public synchronized long getHits() { return hits; }
+    public synchronized long getMisses() { return misses; }
+    public synchronized long getEvictions() { return evictions; }
+}
@@ -0,0 +1,175 @@
+package tw.shawn.util;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.json.JSONTokener;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * JsonArrayStreamParser：逐段餵入模型輸出，從最外層 JSON 陣列中切出每個完整的物件
+ * 只追蹤括號配對與字串／跳脫狀態，整份文字只走過一次，不建立整份字串的複本，適合串流回應邊收邊解析。
+ * 陣列開頭前的說明文字（或 ```json 標記）與陣列結束後的內容都會略過：
+ * 只有 [ 之後第一個非空白字元是 { 或 ] 時才視為題目陣列，說明文字中的「[JSON]」、「[1]」等括號不會被誤認；
+ * 模型漏掉外層 [ ] 時，直接出現的物件也會被切出。
+ * 每個物件各自解析，格式錯誤的物件只會被略過並記錄，不影響其他題目。
+ */
+public class JsonArrayStreamParser {
+
+    /**
+     * Handler：每切出一個完整物件就呼叫一次
+     */
+    @FunctionalInterface
+    public interface Handler {
+        void onObject(String json) throws IOException;
+    }
+
+    /**
+     * Extraction：一次擷取的結果（成功解析的物件與逐項錯誤訊息）
+     */
+    public static class Extraction {
+        public final List<JSONObject> items = new ArrayList<>();
+        public final List<String> errors = new ArrayList<>();
+    }
+
+    private final Handler handler;
+    private final StringBuilder current = new StringBuilder();
+    private boolean inArray;   // 已進入最外層陣列
+    private boolean afterBracket; // 陣列外讀到 [，等待下一個非空白字元確認是否為題目陣列
+    private boolean finished;  // 最外層陣列已結束
+    private final StringBuilder open = new StringBuilder(); // 目前物件內尚未關閉的括號（空表示在物件之間）
+    private boolean inString;
+    private boolean escape;
+
+    public JsonArrayStreamParser(Handler handler) {
+        this.handler = handler;
+    }
+
+    /**
+     * ✅ 單次走訪整段模型輸出，逐一解析每個物件
+     * @param text 模型輸出的完整文字
+     * @return 成功的物件與每個失敗項目的錯誤訊息（第幾項、原因）
+     */
+    public static Extraction extract(CharSequence text) {
+        return extract(text, item -> null);
+    }
+
+    /**
+     * ✅ 單次走訪整段模型輸出，逐一解析並驗證每個物件
+     * @param text 模型輸出的完整文字
+     * @param validator 檢查解析成功的物件，回傳錯誤原因（null 表示可用）；不可用的物件不會放入 items
+     * @return 可用的物件與每個失敗項目的錯誤訊息（第幾項、原因）
+     */
+    public static Extraction extract(CharSequence text, Function<JSONObject, String> validator) {
+        Extraction result = new Extraction();
+        int[] index = {0};
+        JsonArrayStreamParser parser = new JsonArrayStreamParser(json -> {
+            index[0]++;
+            JSONObject item;
+            try {
+                item = parseObject(json);
+            } catch (JSONException e) {
+                result.errors.add("第 " + index[0] + " 項格式錯誤：" + e.getMessage());
+                return;
+            }
+            String error = validator.apply(item);
+            if (error != null) {
+                result.errors.add("第 " + index[0] + " 項" + error);
+            } else {
+                result.items.add(item);
+            }
+        });
+        try {
+            parser.feed(text);
+        } catch (IOException e) {
+            throw new IllegalStateException(e); // 上方 handler 不會丟出 IOException
+        }
+        if (parser.hasPartialObject()) {
+            result.errors.add("第 " + (index[0] + 1) + " 項不完整（輸出被截斷）");
+        }
+        return result;
+    }
+
+    /**
+     * ✅ 將切出的物件文字解析為 JSONObject（尾端多餘的逗號等小錯誤由 org.json 容忍）
+     * @throws JSONException 物件格式錯誤
+     */
+    public static JSONObject parseObject(String json) {
+        return new JSONObject(new JSONTokener(json));
+    }
+
+    /**
+     * ✅ 餵入下一段文字（可在任意字元處切開）
+     */
+    public void feed(CharSequence text) throws IOException {
+        for (int i = 0; i < text.length() && !finished; i++) {
+            char c = text.charAt(i);
+            if (!inArray && afterBracket) {
+                if (Character.isWhitespace(c)) continue;
+                afterBracket = false;
+                if (c == '{' || c == ']') inArray = true; // 確認是題目陣列（或空陣列），此字元交給下方處理
+            }
+            if (!inArray) {
+                if (c == '[') {
+                    afterBracket = true;
+                    continue;
+                }
+                if (c != '{') continue;
+                inArray = true; // 沒有外層陣列，直接從物件開始
+            }
+            if (open.length() == 0) {
+                // 物件之間只會有逗號、空白或陣列結尾
+                if (c == '{') {
+                    open.append(c);
+                    current.setLength(0);
+                    current.append(c);
+                } else if (c == ']') {
+                    finished = true;
+                }
+                continue;
+            }
+
+            current.append(c);
+            if (inString) {
+                if (escape) {
+                    escape = false;
+                } else if (c == '\\') {
+                    escape = true;
+                } else if (c == '"') {
+                    inString = false;
+                }
+            } else if (c == '"') {
+                inString = true;
+            } else if (c == '{' || c == '[') {
+                open.append(c);
+            } else if (c == '}' || c == ']') {
+                char expected = open.charAt(open.length() - 1) == '{' ? '}' : ']';
+                if (c != expected) {
+                    // 括號不成對：交出目前內容（解析時會回報錯誤），從下一個物件重新同步
+                    open.setLength(0);
+                    handler.onObject(current.toString());
+                    continue;
+                }
+                open.setLength(open.length() - 1);
+                if (open.length() == 0) handler.onObject(current.toString());
+            }
+        }
+    }
+
+    /**
+     * 是否已讀到最外層陣列的結尾
+     */
+    public boolean isFinished() {
+        return finished;
+    }
+
+    /**
+     * 是否還有尚未結束的物件（輸出在物件中途被截斷）
+     */
+    public boolean hasPartialObject() {
+        return open.length() > 0;
+    }
+}
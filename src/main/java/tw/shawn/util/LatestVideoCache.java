@@ -0,0 +1,134 @@
+package tw.shawn.util;
+
+import tw.shawn.dao.VideoDAO;
+import tw.shawn.model.Video;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Objects;
+
+/**
+ * LatestVideoCache：最新影片（/api/getLatestVideo）的記憶體快取（單例）
+ * - 透過 VideoDAO 新增影片後呼叫 invalidate()，下次讀取時重新載入
+ * - 從其他程式直接寫入資料庫的影片：每 cache.latestVideo.probeSeconds（預設 30 秒）最多做一次
+ *   SELECT MAX(id)（只讀主鍵索引），與快取的 id 不同才重新載入整筆資料，因此最多延遲一個探測週期
+ * - 最新一筆被直接修改（id 不變）的情況，超過 cache.latestVideo.maxAgeSeconds（預設 600 秒）會整筆重新載入
+ * 快取內的 Video 物件為共用資料，呼叫端只可讀取不可修改。
+ */
+public class LatestVideoCache {
+
+    private static final LatestVideoCache INSTANCE = new LatestVideoCache(
+            AppConfig.getLong("cache.latestVideo.probeSeconds", 30) * 1000,
+            AppConfig.getLong("cache.latestVideo.maxAgeSeconds", 600) * 1000);
+
+    // 快取內容（整個替換，讀取端不需加鎖）
+    private static class Entry {
+        final Video video;       // 沒有影片時為 null
+        final long loadedAt;
+        final long version;
+
+        Entry(Video video, long loadedAt, long version) {
+            this.video = video;
+            this.loadedAt = loadedAt;
+            this.version = version;
+        }
+    }
+
+    private final long probeIntervalMillis;
+    private final long maxAgeMillis;
+    private volatile Entry entry;
+    private volatile boolean stale = true;
+    private volatile long lastProbeAt;
+    private long nextVersion = 1;
+    private long probes;
+    private long reloads;
+
+    LatestVideoCache(long probeIntervalMillis, long maxAgeMillis) {
+        this.probeIntervalMillis = probeIntervalMillis;
+        this.maxAgeMillis = maxAgeMillis;
+    }
+
+    public static LatestVideoCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * ✅ 取得最新影片（資料表為空時回傳 null）
+     */
+    public Video get() throws SQLException {
+        return current().video;
+    }
+
+    /**
+     * ✅ 目前快取內容的版本號（每次重新載入都會增加，可作為回應的版本標記）
+     */
+    public long getVersion() throws SQLException {
+        return current().version;
+    }
+
+    /**
+     * ✅ 標記快取失效（新增影片並提交後呼叫），下次讀取時重新載入
+     */
+    public void invalidate() {
+        stale = true;
+    }
+
+    private Entry current() throws SQLException {
+        Entry e = entry;
+        long now = System.currentTimeMillis();
+        if (e != null && !stale && now - lastProbeAt < probeIntervalMillis && !expired(e, now)) return e;
+
+        synchronized (this) {
+            e = entry;
+            now = System.currentTimeMillis();
+            if (stale || (e != null && expired(e, now))) e = null;
+            if (e != null && now - lastProbeAt < probeIntervalMillis) return e; // 其他執行緒剛探測過
+
+            stale = false; // 先清除旗標：載入期間的 invalidate() 會讓下次讀取再載入一次
+            try (Connection conn = DBUtil.getConnection()) {
+                if (e != null) {
+                    // 低成本探測：最大 id 沒變就沿用快取
+                    probes++;
+                    lastProbeAt = now;
+                    if (Objects.equals(maxId(conn), e.video == null ? null : e.video.getId())) return e;
+                }
+
+                Video latest = new VideoDAO(conn).getLatestVideo();
+                Entry loaded = new Entry(latest, now, nextVersion++);
+                entry = loaded;
+                lastProbeAt = now;
+                reloads++;
+                return loaded;
+            } catch (SQLException ex) {
+                stale = true;
+                throw ex;
+            }
+        }
+    }
+
+    // 與 getLatestVideo 的 ORDER BY id DESC 一致，只讀主鍵索引
+    private static String maxId(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT MAX(id) FROM video")) {
+            return rs.next() ? rs.getString(1) : null;
+        }
+    }
+
+    private boolean expired(Entry e, long now) {
+        return maxAgeMillis > 0 && now - e.loadedAt > maxAgeMillis;
+    }
+
+    public boolean isStale() {
+        return stale;
+    }
+
+    public synchronized long getProbes() {
+        return probes;
+    }
+
+    public synchronized long getReloads() {
+        return reloads;
+    }
+}
@@ -0,0 +1,405 @@
+package tw.shawn.util;
+
+import okhttp3.*;
+import okio.BufferedSource;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * LlmGateway：呼叫 OpenAI Chat Completion 的共用閘道（單例）
+ * - 共用同一個 OkHttpClient（保留連線池、Dispatcher 與 TLS session）
+ * - 以 Semaphore 限制同時進行的請求數，超過時排隊等待，等太久則快速失敗
+ * - 429 / 5xx / 網路錯誤時以指數退避加隨機抖動重試
+ * - 斷路器：連續失敗達門檻後暫停呼叫一段時間，之後以單一試探請求確認是否恢復
+ * - 支援串流模式（stream=true），逐段回呼模型輸出
+ * API 位址可設定，因此也能指向本機的模擬 HTTP 伺服器進行測試。
+ */
+public class LlmGateway {
+
+    private static volatile LlmGateway instance;
+
+    private static final MediaType JSON = MediaType.get("application/json");
+
+    private final OkHttpClient client;
+    private final String apiUrl;
+    private final String apiKey;
+    private final String model;
+
+    private final Semaphore inFlight;         // 同時進行中的請求上限
+    private final long queueTimeoutMs;        // 排隊等待上限
+    private final int maxRetries;             // 最多重試次數（不含第一次）
+    private final long baseBackoffMs;         // 退避起始時間
+
+    // ✅ 斷路器狀態
+    private enum State { CLOSED, OPEN, HALF_OPEN }
+    private volatile State state = State.CLOSED;
+    private final int failureThreshold;       // 連續失敗幾次後斷路
+    private final long openDurationMs;        // 斷路持續時間
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private volatile long openedAt;
+
+    // ✅ 統計用計數器
+    private final AtomicLong requestCount = new AtomicLong();
+    private final AtomicLong retryCount = new AtomicLong();
+    private final AtomicLong failureCount = new AtomicLong();
+    private final AtomicLong rejectedCount = new AtomicLong();
+
+    /**
+     * LlmException：上游回應錯誤（statusCode 為 HTTP 狀態碼，0 表示未送出）
+     */
+    public static class LlmException extends IOException {
+        private final int statusCode;
+
+        public LlmException(String message, int statusCode) {
+            super(message);
+            this.statusCode = statusCode;
+        }
+
+        public int getStatusCode() { return statusCode; }
+    }
+
+    /**
+     * UnavailableException：斷路器開啟或排隊逾時，呼叫端應回應 503 而非等待
+     */
+    public static class UnavailableException extends IOException {
+        public UnavailableException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * DeltaListener：串流模式下每收到一段模型輸出就呼叫一次
+     */
+    @FunctionalInterface
+    public interface DeltaListener {
+        void onDelta(String text) throws IOException;
+    }
+
+    public LlmGateway(String apiUrl, String apiKey, String model,
+                      int maxInFlight, long queueTimeoutMs, int maxRetries, long baseBackoffMs,
+                      int failureThreshold, long openDurationMs,
+                      long connectTimeoutMs, long readTimeoutMs) {
+        this.apiUrl = apiUrl;
+        this.apiKey = apiKey;
+        this.model = model;
+        this.inFlight = new Semaphore(maxInFlight, true);
+        this.queueTimeoutMs = queueTimeoutMs;
+        this.maxRetries = maxRetries;
+        this.baseBackoffMs = baseBackoffMs;
+        this.failureThreshold = failureThreshold;
+        this.openDurationMs = openDurationMs;
+
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequests(maxInFlight);
+        dispatcher.setMaxRequestsPerHost(maxInFlight);
+        this.client = new OkHttpClient.Builder()
+                .dispatcher(dispatcher)
+                .connectionPool(new okhttp3.ConnectionPool(Math.max(1, maxInFlight), 5, TimeUnit.MINUTES))
+                .connectTimeout(connectTimeoutMs, TimeUnit.MILLISECONDS)
+                .readTimeout(readTimeoutMs, TimeUnit.MILLISECONDS)
+                .writeTimeout(readTimeoutMs, TimeUnit.MILLISECONDS)
+                .build();
+    }
+
+    /**
+     * ✅ 取得共用實例（設定來自 config.properties 的 openai.* 與 llm.*）
+     */
+    public static LlmGateway getInstance() {
+        LlmGateway g = instance;
+        if (g == null) {
+            synchronized (LlmGateway.class) {
+                g = instance;
+                if (g == null) {
+                    g = new LlmGateway(
+                            AppConfig.get("openai.api.url", null),
+                            AppConfig.get("openai.api.key", null),
+                            AppConfig.get("openai.model.chat", "gpt-3.5-turbo"),
+                            AppConfig.getInt("llm.maxInFlight", 4),
+                            AppConfig.getLong("llm.queueTimeoutMs", 10_000),
+                            AppConfig.getInt("llm.maxRetries", 2),
+                            AppConfig.getLong("llm.backoffMs", 500),
+                            AppConfig.getInt("llm.breaker.failureThreshold", 5),
+                            AppConfig.getLong("llm.breaker.openMs", 30_000),
+                            AppConfig.getLong("llm.connectTimeoutMs", 10_000),
+                            AppConfig.getLong("llm.readTimeoutMs", 30_000));
+                    instance = g;
+                }
+            }
+        }
+        return g;
+    }
+
+    /**
+     * ✅ 關閉共用實例的 HTTP 資源（WebApp 關閉時呼叫）
+     */
+    public static void shutdown() {
+        synchronized (LlmGateway.class) {
+            if (instance != null) {
+                instance.client.dispatcher().executorService().shutdown();
+                instance.client.connectionPool().evictAll();
+                instance = null;
+            }
+        }
+    }
+
+    public String getModel() { return model; }
+
+    /**
+     * ✅ 送出單輪對話並回傳模型的文字內容
+     * @param prompt 使用者訊息
+     * @return choices[0].message.content
+     * @throws UnavailableException 斷路中或排隊逾時
+     * @throws IOException 重試後仍失敗
+     */
+    public String chat(String prompt) throws IOException {
+        JSONObject requestJson = buildRequest(prompt);
+        String body = execute(requestJson);
+        JSONObject respJson = new JSONObject(body);
+        return respJson.getJSONArray("choices").getJSONObject(0).getJSONObject("message").getString("content");
+    }
+
+    // 建立 Chat Completion 請求內容
+    private JSONObject buildRequest(String prompt) {
+        JSONObject requestJson = new JSONObject();
+        requestJson.put("model", model);
+        JSONArray messages = new JSONArray();
+        messages.put(new JSONObject().put("role", "user").put("content", prompt));
+        requestJson.put("messages", messages);
+        return requestJson;
+    }
+
+    private Request newRequest(JSONObject requestJson) throws LlmException {
+        if (apiUrl == null || apiKey == null) {
+            throw new LlmException("API 金鑰或 URL 未設定", 0);
+        }
+        return new Request.Builder()
+                .url(apiUrl)
+                .addHeader("Authorization", "Bearer " + apiKey)
+                .post(RequestBody.create(requestJson.toString(), JSON))
+                .build();
+    }
+
+    /**
+     * ✅ 以串流模式送出單輪對話，模型每產生一段文字就交給 listener
+     * 只有在收到第一段輸出之前（連線失敗、429 / 5xx）會重試；開始輸出後中斷就直接丟出錯誤，
+     * 避免重送造成重複內容。listener 丟出的例外（例如瀏覽器已斷線）原樣往外丟，不計入斷路器。
+     * @param prompt 使用者訊息
+     * @param listener 接收 choices[0].delta.content
+     * @throws UnavailableException 斷路中或排隊逾時
+     * @throws IOException 上游失敗或 listener 失敗
+     */
+    public void chatStream(String prompt, DeltaListener listener) throws IOException {
+        Request request = newRequest(buildRequest(prompt).put("stream", true));
+        checkCircuit();
+        acquireSlot();
+        try (Response response = openStream(request)) {
+            BufferedSource source = response.body().source();
+            while (true) {
+                String line;
+                try {
+                    line = source.readUtf8Line();
+                } catch (IOException e) {
+                    onFailure(); // 串流中途斷線或逾時
+                    throw e;
+                }
+                if (line == null) break;
+
+                // SSE 格式：每個事件為 "data: {...}"，結尾為 "data: [DONE]"
+                if (!line.startsWith("data:")) continue;
+                String data = line.substring(5).trim();
+                if (data.equals("[DONE]")) break;
+
+                String content;
+                try {
+                    JSONArray choices = new JSONObject(data).optJSONArray("choices");
+                    if (choices == null || choices.isEmpty()) continue;
+                    JSONObject delta = choices.getJSONObject(0).optJSONObject("delta");
+                    if (delta == null || delta.isNull("content")) continue;
+                    content = delta.optString("content", "");
+                } catch (JSONException e) {
+                    System.err.println("⚠️ 略過無法解析的串流片段：" + data);
+                    continue;
+                }
+                if (content.isEmpty()) continue;
+
+                try {
+                    listener.onDelta(content);
+                } catch (IOException | RuntimeException e) {
+                    onSuccess(); // 上游正常，是接收端出錯
+                    throw e;
+                }
+            }
+            onSuccess();
+        } finally {
+            inFlight.release();
+        }
+    }
+
+    // 送出串流請求直到拿到成功的回應標頭；可重試的錯誤依退避時間重送
+    private Response openStream(Request request) throws IOException {
+        IOException last = null;
+        for (int attempt = 0; attempt <= maxRetries; attempt++) {
+            if (attempt > 0) {
+                retryCount.incrementAndGet();
+                sleepBackoff(attempt);
+            }
+            requestCount.incrementAndGet();
+            Response response;
+            try {
+                response = client.newCall(request).execute();
+            } catch (IOException e) {
+                last = e;
+                continue;
+            }
+            if (response.isSuccessful() && response.body() != null) return response;
+
+            try (response) {
+                String bodyStr = response.body() != null ? response.body().string() : "";
+                LlmException error = new LlmException("OpenAI 錯誤狀態碼：" + response.code() + "，內容：" + bodyStr, response.code());
+                if (!isRetryable(response.code())) {
+                    onSuccess();
+                    throw error;
+                }
+                last = error;
+            }
+        }
+        onFailure();
+        throw last;
+    }
+
+    /**
+     * 在斷路器與並行上限保護下送出請求，可重試的錯誤會依退避時間重送
+     */
+    private String execute(JSONObject requestJson) throws IOException {
+        Request request = newRequest(requestJson);
+        checkCircuit();
+        acquireSlot();
+        try {
+
+            IOException last = null;
+            for (int attempt = 0; attempt <= maxRetries; attempt++) {
+                if (attempt > 0) {
+                    retryCount.incrementAndGet();
+                    sleepBackoff(attempt);
+                }
+                requestCount.incrementAndGet();
+                try (Response response = client.newCall(request).execute()) {
+                    String bodyStr = response.body() != null ? response.body().string() : "";
+                    if (response.isSuccessful()) {
+                        onSuccess();
+                        return bodyStr;
+                    }
+                    LlmException error = new LlmException("OpenAI 錯誤狀態碼：" + response.code() + "，內容：" + bodyStr, response.code());
+                    if (!isRetryable(response.code())) {
+                        // 4xx（除 429）代表請求本身有問題，上游是健康的，不計入斷路器也不重試
+                        onSuccess();
+                        throw error;
+                    }
+                    last = error;
+                } catch (LlmException e) {
+                    throw e;
+                } catch (IOException e) {
+                    last = e; // 連線或逾時錯誤，可重試
+                }
+            }
+            onFailure();
+            throw last;
+        } finally {
+            inFlight.release();
+        }
+    }
+
+    private static boolean isRetryable(int code) {
+        return code == 429 || code >= 500;
+    }
+
+    // 指數退避加隨機抖動（full jitter），避免大量請求同時重試
+    private void sleepBackoff(int attempt) throws IOException {
+        long delay = backoffDelay(baseBackoffMs, attempt, ThreadLocalRandom.current());
+        try {
+            Thread.sleep(delay);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("重試等待時被中斷", e);
+        }
+    }
+
+    /**
+     * 第 attempt 次重試（從 1 開始）的等待時間：在 [0, base × 2^(attempt-1)] 之間均勻取值，上限為 base × 64
+     */
+    static long backoffDelay(long baseMs, int attempt, Random random) {
+        long cap = baseMs * (1L << Math.min(attempt - 1, 6));
+        return random.nextLong(cap + 1);
+    }
+
+    private void acquireSlot() throws IOException {
+        try {
+            if (!inFlight.tryAcquire(queueTimeoutMs, TimeUnit.MILLISECONDS)) {
+                rejectedCount.incrementAndGet();
+                throw new UnavailableException("目前產題請求過多，請稍後再試");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("等待呼叫名額時被中斷", e);
+        }
+    }
+
+    // ==== 斷路器 ====
+
+    private synchronized void checkCircuit() throws UnavailableException {
+        if (state == State.OPEN) {
+            if (System.currentTimeMillis() - openedAt >= openDurationMs) {
+                state = State.HALF_OPEN; // 放行一個試探請求
+                openedAt = System.currentTimeMillis();
+                return;
+            }
+            rejectedCount.incrementAndGet();
+            throw new UnavailableException("OpenAI 服務暫時無法使用（斷路中），請稍後再試");
+        }
+        if (state == State.HALF_OPEN) {
+            // 試探請求太久沒有結果（例如排隊逾時沒有送出），再放行一個試探請求
+            if (System.currentTimeMillis() - openedAt >= openDurationMs) {
+                openedAt = System.currentTimeMillis();
+                return;
+            }
+            // 試探請求尚未完成前，其餘請求直接失敗
+            rejectedCount.incrementAndGet();
+            throw new UnavailableException("OpenAI 服務恢復確認中，請稍後再試");
+        }
+    }
+
+    private synchronized void onSuccess() {
+        consecutiveFailures.set(0);
+        state = State.CLOSED;
+    }
+
+    private synchronized void onFailure() {
+        failureCount.incrementAndGet();
+        if (state == State.HALF_OPEN || consecutiveFailures.incrementAndGet() >= failureThreshold) {
+            state = State.OPEN;
+            openedAt = System.currentTimeMillis();
+            System.err.println("⚠️ LLM 斷路器開啟，" + openDurationMs + " ms 內暫停呼叫 OpenAI");
+        }
+    }
+
+    // ==== 統計資訊 ====
+
+    public String getCircuitState() { return state.name(); }
+    public int getInFlightCount() { return Math.max(0, getMaxInFlight() - inFlight.availablePermits()); }
+    public int getQueuedCount() { return inFlight.getQueueLength(); }
+    public long getRequestCount() { return requestCount.get(); }
+    public long getRetryCount() { return retryCount.get(); }
+    public long getFailureCount() { return failureCount.get(); }
+    public long getRejectedCount() { return rejectedCount.get(); }
+
+    private int getMaxInFlight() { return client.dispatcher().getMaxRequests(); }
+}
@@ -0,0 +1,107 @@
+package tw.shawn.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.BiPredicate;
+
+/**
+ * LruCache：有容量上限的記憶體快取，超過上限時淘汰最久未使用的項目
+ * 以 LinkedHashMap（access-order）實作，所有操作皆同步；並統計命中、未命中與淘汰次數。
+ *
+ * @param <K> 鍵型別
+ * @param <V> 值型別
+ */
+public class LruCache<K, V> {
+
+    private final int maxSize;          // 最多保留的項目數
+    private final LinkedHashMap<K, V> map;
+
+    // ✅ 統計用計數器（皆在同步區塊內更新）
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    public LruCache(int maxSize) {
+        if (maxSize <= 0) throw new IllegalArgumentException("快取大小必須大於 0：" + maxSize);
+        this.maxSize = maxSize;
+        this.map = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                if (size() > LruCache.this.maxSize) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * ✅ 取得快取值（會更新使用順序並計入命中/未命中）
+     * @return 快取值，沒有則回傳 null
+     */
+    public synchronized V get(K key) {
+        V v = map.get(key);
+        if (v != null) hits++; else misses++;
+        return v;
+    }
+
+    /**
+     * ✅ 取得快取值但不影響統計（供快取內部維護使用）
+     */
+    public synchronized V peek(K key) {
+        return map.get(key);
+    }
+
+    public synchronized void put(K key, V value) {
+        map.put(key, value);
+    }
+
+    /**
+     * ✅ 尚無此鍵時才放入
+     * @return 已存在的值，放入成功時回傳 null
+     */
+    public synchronized V putIfAbsent(K key, V value) {
+        return map.putIfAbsent(key, value);
+    }
+
+    public synchronized V remove(K key) {
+        return map.remove(key);
+    }
+
+    /**
+     * ✅ 移除符合條件的所有項目
+     * @return 移除的數量
+     */
+    public synchronized int removeIf(BiPredicate<K, V> predicate) {
+        int before = map.size();
+        map.entrySet().removeIf(e -> predicate.test(e.getKey(), e.getValue()));
+        return before - map.size();
+    }
+
+    public synchronized void clear() {
+        map.clear();
+    }
+
+    public synchronized int size() { return map.size(); }
+    public int getMaxSize() { return maxSize; }
+    public synchronized long getHits() { return hits; }
+    public synchronized long getMisses() { return misses; }
+    public synchronized long getEvictions() { return evictions; }
+
+    /**
+     * ✅ 命中率（0~1，尚無查詢時為 0）
+     */
+    public synchronized double getHitRate() {
+        long total = hits + misses;
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    /**
+     * ✅ 回傳快取狀態摘要（用於日誌與統計 API）
+     */
+    public synchronized String stats() {
+        return "size=" + map.size() + "/" + maxSize + ", hits=" + hits + ", misses=" + misses +
+               ", evictions=" + evictions + ", hitRate=" + String.format("%.2f", getHitRate());
+    }
+}
@@ -0,0 +1,185 @@
+package tw.shawn.util;
+
+import tw.shawn.model.Quiz;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * NearDuplicateIndex：題目近似重複索引（執行緒安全）
+ * - 每題以「題幹 + 選項」的字元 3-gram 集合計算 MinHash 簽章（32 個雜湊函數，選項順序不影響結果）
+ * - 簽章切成 16 段、每段 2 個值作為 LSH 桶，相似度 J 的兩題至少共用一個桶的機率為 1-(1-J²)^16：
+ *   J=0.5 約 0.99、J=0.6 約 0.999，低於門檻的 J=0.3 也有約 0.78 會成為候選（再以估計相似度過濾）；
+ *   查詢時只需比對同桶的簽章，不必掃描整個題庫
+ * - 只去除空白與標點後比對，改寫幾個字、調換選項順序的題目都會被視為近似重複
+ * （題目文字很短，SimHash 的漢明距離對改寫過於敏感，因此採用 MinHash）
+ */
+public class NearDuplicateIndex {
+
+    private static final int SHINGLE = 3;       // 字元 n-gram 長度
+    private static final int NUM_HASHES = 32;   // MinHash 雜湊函數數量
+    private static final int BANDS = 16;        // LSH 分段數（每段 2 個值，門檻 0.6 附近的召回率約 0.999）
+    private static final int ROWS = NUM_HASHES / BANDS;
+
+    /**
+     * Match：近似重複的既有題目
+     */
+    public static class Match {
+        public final int quizId;          // 既有題目 ID（執行期間新增、尚未取得 ID 的題目為 -1）
+        public final String videoId;      // 既有題目所屬影片
+        public final double similarity;   // 估計的 Jaccard 相似度
+
+        Match(int quizId, String videoId, double similarity) {
+            this.quizId = quizId;
+            this.videoId = videoId;
+            this.similarity = similarity;
+        }
+    }
+
+    private static class Entry {
+        final int[] signature;
+        final int quizId;
+        final String videoId;
+
+        Entry(int[] signature, int quizId, String videoId) {
+            this.signature = signature;
+            this.quizId = quizId;
+            this.videoId = videoId;
+        }
+    }
+
+    private final double threshold;
+    private final Map<Long, List<Entry>> buckets = new HashMap<>(); // (段號, 段內簽章) → 題目
+    private int size;
+
+    /**
+     * @param threshold 視為近似重複的最低相似度（0～1）
+     */
+    public NearDuplicateIndex(double threshold) {
+        this.threshold = threshold;
+    }
+
+    /**
+     * ✅ 加入一題的簽章
+     */
+    public synchronized void add(int[] signature, int quizId, String videoId) {
+        Entry entry = new Entry(signature, quizId, videoId);
+        for (int b = 0; b < BANDS; b++) {
+            buckets.computeIfAbsent(bucketKey(signature, b), k -> new ArrayList<>(1)).add(entry);
+        }
+        size++;
+    }
+
+    /**
+     * ✅ 找出最相似的近似重複題目
+     * @return 相似度達門檻的最相似題目，沒有則回傳 null
+     */
+    public synchronized Match findNear(int[] signature) {
+        Entry best = null;
+        int bestSame = -1;
+        for (int b = 0; b < BANDS; b++) {
+            List<Entry> bucket = buckets.get(bucketKey(signature, b));
+            if (bucket == null) continue;
+            for (Entry e : bucket) {
+                int same = 0;
+                for (int i = 0; i < NUM_HASHES; i++) {
+                    if (e.signature[i] == signature[i]) same++;
+                }
+                if (same > bestSame) {
+                    best = e;
+                    bestSame = same;
+                }
+            }
+        }
+        if (best == null) return null;
+        double similarity = (double) bestSame / NUM_HASHES;
+        return similarity >= threshold ? new Match(best.quizId, best.videoId, similarity) : null;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public double getThreshold() {
+        return threshold;
+    }
+
+    private static long bucketKey(int[] signature, int band) {
+        long h = band;
+        for (int i = band * ROWS; i < (band + 1) * ROWS; i++) {
+            h = h * 0x9E3779B97F4A7C15L + signature[i];
+        }
+        return h;
+    }
+
+    /**
+     * ✅ 計算題目的 MinHash 簽章（題幹 + 四個選項）
+     */
+    public static int[] signature(Quiz q) {
+        return signature(q.getQuestion(), q.getOption1(), q.getOption2(), q.getOption3(), q.getOption4());
+    }
+
+    /**
+     * ✅ 計算多段文字的 MinHash 簽章：各段分別取 3-gram（不跨段），每個雜湊函數取所有 3-gram 的最小值
+     */
+    public static int[] signature(String... parts) {
+        Set<Long> shingles = new HashSet<>();
+        StringBuilder sb = new StringBuilder();
+        for (String part : parts) {
+            normalize(part, sb);
+            if (sb.length() == 0) continue;
+            if (sb.length() < SHINGLE) {
+                shingles.add(hash(sb, 0, sb.length()));
+                continue;
+            }
+            for (int i = 0; i + SHINGLE <= sb.length(); i++) {
+                shingles.add(hash(sb, i, i + SHINGLE));
+            }
+        }
+
+        int[] sig = new int[NUM_HASHES];
+        Arrays.fill(sig, Integer.MAX_VALUE);
+        for (long s : shingles) {
+            for (int i = 0; i < NUM_HASHES; i++) {
+                int h = (int) (mix(s + i * 0x9E3779B97F4A7C15L) >>> 33); // 第 i 個雜湊函數（非負）
+                if (h < sig[i]) sig[i] = h;
+            }
+        }
+        return sig;
+    }
+
+    // 只保留文字與數字（英文轉小寫），結果寫入 sb
+    private static void normalize(String s, StringBuilder sb) {
+        sb.setLength(0);
+        if (s == null) return;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (Character.isLetterOrDigit(c)) sb.append(c < 128 ? Character.toLowerCase(c) : c);
+        }
+    }
+
+    // FNV-1a 64 位元雜湊
+    private static long hash(CharSequence s, int start, int end) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = start; i < end; i++) {
+            h ^= s.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        return mix(h);
+    }
+
+    // murmur3 finalizer：打散位元
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb93e2f4e3b05L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
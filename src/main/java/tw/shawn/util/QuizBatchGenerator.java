@@ -0,0 +1,156 @@
+package tw.shawn.util;
+
+import tw.shawn.dao.QuizDAO;
+import tw.shawn.model.Quiz;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+
+/**
+ * QuizBatchGenerator：以本機產題器（QuizGenerator）一次為大量影片產生題目
+ * - 產題在 ForkJoinPool 上平行進行，每部影片以 QuizGenerator.seedOf(videoId) 為種子，結果可重現
+ * - 字幕由 TranscriptStore 提供（已斷好句），不重複讀檔斷句
+ * - 寫入時共用一條連線，透過 QuizDAO.insertQuizList 批次新增，每 commitSize 部影片提交一次；任一影片寫入失敗時回滾尚未提交的批次
+ * 可在命令列執行：java tw.shawn.util.QuizBatchGenerator <字幕目錄> [每部題數]
+ */
+public class QuizBatchGenerator {
+
+    /**
+     * BatchResult：批次產題統計
+     */
+    public static class BatchResult {
+        public int videos;        // 處理的影片數
+        public int generated;     // 寫入的題目數（與題庫重複而略過的不計）
+        public int emptyVideos;   // 沒有可用句子的影片數
+        public long generateMs;   // 產題耗時
+        public long writeMs;      // 寫入耗時
+
+        @Override
+        public String toString() {
+            return "影片 " + videos + " 部，寫入 " + generated + " 題（" + emptyVideos + " 部無可用句子），"
+                    + "產題 " + generateMs + " ms，寫入 " + writeMs + " ms";
+        }
+    }
+
+    private final TranscriptStore store;
+    private final int parallelism;
+    private final int commitSize;
+
+    public QuizBatchGenerator(TranscriptStore store) {
+        this(store,
+                AppConfig.getInt("quiz.batch.parallelism", Runtime.getRuntime().availableProcessors()),
+                AppConfig.getInt("quiz.batch.commitSize", 200));
+    }
+
+    public QuizBatchGenerator(TranscriptStore store, int parallelism, int commitSize) {
+        this.store = store;
+        this.parallelism = Math.max(1, parallelism);
+        this.commitSize = Math.max(1, commitSize);
+    }
+
+    /**
+     * ✅ 平行產生所有影片的題目（不寫入資料庫）
+     * @param videoIds 影片 ID
+     * @param num 每部影片的題數
+     * @return videoId → 題目清單（依輸入順序）
+     */
+    public Map<String, List<Quiz>> generate(Collection<String> videoIds, int num) {
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            return pool.submit(() -> videoIds.parallelStream()
+                    .collect(Collectors.toMap(id -> id, id -> generateOne(id, num), (a, b) -> a, LinkedHashMap::new)))
+                    .get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("批次產題被中斷", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("批次產題失敗", e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private List<Quiz> generateOne(String videoId, int num) {
+        try {
+            TranscriptStore.Transcript t = store.get(videoId);
+            if (t == null) return Collections.emptyList();
+            return QuizGenerator.generate(t.getSentences(), videoId, num, new Random(QuizGenerator.seedOf(videoId)));
+        } catch (IOException e) {
+            System.err.println("⚠️ 字幕讀取失敗，略過：" + videoId + "，" + e.getMessage());
+            return Collections.emptyList();
+        }
+    }
+
+    /**
+     * ✅ 產生並寫入所有影片的題目
+     * @param videoIds 影片 ID
+     * @param num 每部影片的題數
+     * @return 統計結果
+     * @throws SQLException 資料庫錯誤（已提交的批次會保留）
+     */
+    public BatchResult run(Collection<String> videoIds, int num) throws SQLException {
+        BatchResult result = new BatchResult();
+        long start = System.currentTimeMillis();
+        Map<String, List<Quiz>> quizzes = generate(videoIds, num);
+        result.generateMs = System.currentTimeMillis() - start;
+        result.videos = quizzes.size();
+
+        start = System.currentTimeMillis();
+        try (Connection conn = DBUtil.getConnection()) {
+            conn.setAutoCommit(false);
+            QuizDAO quizDAO = new QuizDAO(conn);
+            try {
+                int pending = 0;
+                for (Map.Entry<String, List<Quiz>> e : quizzes.entrySet()) {
+                    if (e.getValue().isEmpty()) {
+                        result.emptyVideos++;
+                        continue;
+                    }
+                    result.generated += quizDAO.insertQuizList(e.getKey(), e.getValue()); // 只計實際寫入的題數
+                    if (++pending >= commitSize) {
+                        conn.commit();
+                        quizDAO.afterCommit(); // 提交後才清除快取，避免快取到提交前的舊題庫
+                        pending = 0;
+                    }
+                }
+                conn.commit();
+                quizDAO.afterCommit();
+            } catch (SQLException e) {
+                conn.rollback();
+                quizDAO.afterRollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+        result.writeMs = System.currentTimeMillis() - start;
+        return result;
+    }
+
+    /**
+     * ✅ 命令列入口：為字幕目錄中的所有影片產生題目並寫入資料庫
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.err.println("用法：QuizBatchGenerator <字幕目錄> [每部題數]");
+            System.exit(1);
+        }
+        int num = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        TranscriptStore store = new TranscriptStore(Paths.get(args[0]),
+                AppConfig.getLong("transcript.cache.maxBytes", 32L * 1024 * 1024));
+        try {
+            List<String> videoIds = store.listVideoIds();
+            System.out.println("📚 開始批次產題：" + videoIds.size() + " 部影片，每部 " + num + " 題");
+            BatchResult result = new QuizBatchGenerator(store).run(videoIds, num);
+            System.out.println("✅ 批次產題完成：" + result);
+        } finally {
+            DBUtil.shutdownPool();
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package tw.shawn.util;
+
+import tw.shawn.model.Quiz;
+
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * QuizCache：題庫的記憶體快取（單例）
+ * - 依影片：videoId → (source + 題數) → 題目清單，供 LoadQuizServlet 使用
+ * - 依題號：quizId → Quiz，供 SubmitAnswerServlet 批改使用
+ * 題庫只有在新增題目時才會改變，因此寫入題目後呼叫 invalidateVideo() 清除該影片的快取即可。
+ * 快取內的 Quiz 物件為共用資料，呼叫端只可讀取不可修改。
+ */
+public class QuizCache {
+
+    private static final QuizCache INSTANCE = new QuizCache(
+            AppConfig.getInt("cache.quiz.maxVideos", 1000),
+            AppConfig.getInt("cache.quiz.maxQuizzes", 20000));
+
+    /**
+     * Loader：快取未命中時向資料庫載入資料的函式
+     */
+    @FunctionalInterface
+    public interface Loader<T> {
+        T load() throws SQLException;
+    }
+
+    /**
+     * BatchLoader：一次載入多個 quizId 的函式
+     */
+    @FunctionalInterface
+    public interface BatchLoader {
+        Map<Integer, Quiz> load(Collection<Integer> quizIds) throws SQLException;
+    }
+
+    private final LruCache<String, Map<String, List<Quiz>>> byVideo; // videoId → (source|limit → 題目清單)
+    private final LruCache<Integer, Quiz> byId;                      // quizId → 題目
+    private final AtomicLong version = new AtomicLong();             // 每次失效加一，避免載入期間失效後寫回舊資料
+
+    QuizCache(int maxVideos, int maxQuizzes) {
+        this.byVideo = new LruCache<>(maxVideos);
+        this.byId = new LruCache<>(maxQuizzes);
+    }
+
+    public static QuizCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * ✅ 依影片與來源取得題目清單，未命中時呼叫 loader 載入並放入快取
+     * @param videoId 影片 ID
+     * @param source 題目來源（local / gpt）
+     * @param limit 題數上限
+     * @param loader 未命中時的資料庫查詢
+     * @return 不可修改的題目清單
+     */
+    public List<Quiz> getQuizzesByVideoIdAndSource(String videoId, String source, int limit,
+                                                   Loader<List<Quiz>> loader) throws SQLException {
+        String subKey = source + "|" + limit;
+        Map<String, List<Quiz>> perVideo = byVideo.get(videoId);
+        if (perVideo != null) {
+            List<Quiz> cached = perVideo.get(subKey);
+            if (cached != null) return cached;
+        }
+
+        long versionBeforeLoad = version.get();
+        List<Quiz> loaded = Collections.unmodifiableList(new ArrayList<>(loader.load()));
+        synchronized (this) {
+            if (version.get() != versionBeforeLoad) return loaded; // 載入期間題庫已變動，不寫入快取
+            Map<String, List<Quiz>> current = byVideo.peek(videoId);
+            if (current == null) {
+                current = new ConcurrentHashMap<>();
+                byVideo.put(videoId, current);
+            }
+            current.put(subKey, loaded);
+            for (Quiz q : loaded) {
+                byId.put(q.getId(), q);
+            }
+        }
+        return loaded;
+    }
+
+    /**
+     * ✅ 依題號批次取得題目：先查快取，只把未命中的 ID 交給 loader 一次載入
+     * @param quizIds 題目 ID 集合
+     * @param loader 未命中時的批次查詢
+     * @return quizId → Quiz 對照表
+     */
+    public Map<Integer, Quiz> getQuizzesByIds(Collection<Integer> quizIds, BatchLoader loader) throws SQLException {
+        Map<Integer, Quiz> result = new HashMap<>();
+        Set<Integer> missing = new LinkedHashSet<>();
+        for (Integer id : quizIds) {
+            if (result.containsKey(id) || missing.contains(id)) continue;
+            Quiz q = byId.get(id);
+            if (q != null) result.put(id, q); else missing.add(id);
+        }
+
+        if (!missing.isEmpty()) {
+            long versionBeforeLoad = version.get();
+            Map<Integer, Quiz> loaded = loader.load(missing);
+            result.putAll(loaded);
+            synchronized (this) {
+                if (version.get() == versionBeforeLoad) {
+                    for (Map.Entry<Integer, Quiz> e : loaded.entrySet()) {
+                        byId.put(e.getKey(), e.getValue());
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * ✅ 清除某部影片的所有快取（新增題目後呼叫）
+     * @param videoId 影片 ID
+     */
+    public void invalidateVideo(String videoId) {
+        if (videoId == null) return;
+        synchronized (this) {
+            version.incrementAndGet();
+            byVideo.remove(videoId);
+            byId.removeIf((id, quiz) -> videoId.equals(quiz.getVideoId()));
+        }
+    }
+
+    /**
+     * ✅ 清除全部快取
+     */
+    public void invalidateAll() {
+        synchronized (this) {
+            version.incrementAndGet();
+            byVideo.clear();
+            byId.clear();
+        }
+    }
+
+    /**
+     * ✅ 目前的快取版本號（題庫每次變動都會增加，可作為回應的版本標記）
+     */
+    public long getVersion() {
+        return version.get();
+    }
+
+    public LruCache<String, Map<String, List<Quiz>>> getVideoCache() { return byVideo; }
+    public LruCache<Integer, Quiz> getQuizCache() { return byId; }
+
+    /**
+     * ✅ 回傳快取統計摘要
+     */
+    public String stats() {
+        return "quizCache[byVideo: " + byVideo.stats() + "; byId: " + byId.stats() + "]";
+    }
+}
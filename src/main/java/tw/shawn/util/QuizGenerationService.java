@@ -0,0 +1,455 @@
+package tw.shawn.util;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import tw.shawn.dao.QuizDAO;
+import tw.shawn.model.Quiz;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * QuizGenerationService：以 GPT 從影片字幕產生選擇題並寫入 quiz 題庫
+ * 流程：從 TranscriptStore 取得字幕 → 查產題快取 → 組 prompt → 呼叫 LlmGateway → 逐題擷取 JSON 物件 → 驗證後批次寫入資料庫。
+ * 單題格式錯誤只會略過該題並記錄錯誤，不會讓整次（已付費的）產題失敗。
+ * 字幕超過 token 預算時會依句子切段、各段平行產題後再合併去重。
+ * 另提供串流模式（generateStream），邊接收模型輸出邊逐題寫入並通知呼叫端。
+ * 由 QuizJobManager 的背景工作執行緒呼叫，不直接依賴 Servlet API。
+ */
+public class QuizGenerationService {
+
+    /**
+     * GenerationException：產題失敗，httpStatus 為建議回應給前端的狀態碼
+     */
+    public static class GenerationException extends Exception {
+        private final int httpStatus;
+        private final String raw; // GPT 原始內容（解析失敗時提供除錯用，可為 null）
+
+        public GenerationException(int httpStatus, String message) {
+            this(httpStatus, message, null, null);
+        }
+
+        public GenerationException(int httpStatus, String message, String raw, Throwable cause) {
+            super(message, cause);
+            this.httpStatus = httpStatus;
+            this.raw = raw;
+        }
+
+        public int getHttpStatus() { return httpStatus; }
+        public String getRaw() { return raw; }
+    }
+
+    /**
+     * GenerationResult：產題結果（回傳給前端的 JSON 陣列字串、實際寫入題數與被略過題目的錯誤訊息）
+     */
+    public static class GenerationResult {
+        public final String quizJson;
+        public final int inserted;
+        public final List<String> errors;
+
+        public GenerationResult(String quizJson, int inserted) {
+            this(quizJson, inserted, Collections.emptyList());
+        }
+
+        public GenerationResult(String quizJson, int inserted, List<String> errors) {
+            this.quizJson = quizJson;
+            this.inserted = inserted;
+            this.errors = errors;
+        }
+    }
+
+    // 每次產題的題數
+    static final int QUESTION_COUNT = 5;
+
+    // 送給 GPT 的 prompt 範本（字幕內容接在後面）；修改範本會讓產題快取自動失效
+    static final String PROMPT_TEMPLATE = promptTemplate(QUESTION_COUNT);
+
+    // 長字幕分段：每段 token 上限與平行產題的執行緒池
+    private static final int CHUNK_MAX_TOKENS = AppConfig.getInt("quiz.chunk.maxTokens", 3000);
+    private static final ExecutorService CHUNK_EXECUTOR = Executors.newFixedThreadPool(
+            AppConfig.getInt("quiz.chunk.parallelism", 4), new ThreadFactory() {
+                private final AtomicInteger seq = new AtomicInteger();
+
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "quiz-chunk-" + seq.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+
+    // 產生指定題數的 prompt 範本
+    static String promptTemplate(int count) {
+        return "請僅回傳 JSON 陣列，不要加上任何註解或文字。" +
+                "請產生 " + count + " 題繁體中文選擇題，語意要清楚、適合 Java 初學者的測驗題目，每題包含 question、options（陣列）與 answer（正確答案文字）\n\n";
+    }
+
+    /**
+     * ✅ 停止分段產題的執行緒池（WebApp 關閉時呼叫）
+     */
+    public static void shutdown() {
+        CHUNK_EXECUTOR.shutdownNow();
+    }
+
+    private QuizGenerationService() {}
+
+    /**
+     * ✅ 產生指定影片的題目並寫入資料庫
+     * @param videoId 影片 ID
+     * @return 產題結果
+     * @throws GenerationException 任一步驟失敗
+     */
+    public static GenerationResult generate(String videoId) throws GenerationException {
+        TranscriptStore.Transcript transcript = loadTranscript(videoId);
+
+        // ✅ 長字幕先切段：只有一段時整份送出，多段時各段平行產題後合併（map-reduce）
+        List<String> chunks = transcript.getChunks(CHUNK_MAX_TOKENS);
+
+        // ✅ 字幕、prompt、分段方式與模型都沒變時，直接使用磁碟快取中的上次結果
+        LlmGateway llm = LlmGateway.getInstance();
+        String cacheKey = cacheKey(transcript, chunkTemplate(chunks), llm);
+        String cachedJson = GeneratedQuizCache.getInstance().get(cacheKey);
+        if (cachedJson != null) {
+            System.out.println("⚡ 產題快取命中，略過 OpenAI 呼叫：" + cacheKey);
+            JSONArray cachedArr = new JSONArray(cachedJson);
+            // 同一份結果可能已寫入過題庫，只補上題庫中還沒有的題目
+            int inserted = insertQuizzes(videoId, cachedArr);
+            return new GenerationResult(cachedJson, inserted);
+        }
+
+        List<String> errors = Collections.synchronizedList(new ArrayList<>());
+        JSONArray quizArr = chunks.size() <= 1
+                ? requestQuizzes(llm, PROMPT_TEMPLATE, transcript.getText(), errors)
+                : generateChunked(llm, chunks, errors);
+        String quizJsonText = quizArr.toString();
+
+        int inserted = insertQuizzes(videoId, quizArr);
+        GeneratedQuizCache.getInstance().put(cacheKey, quizJsonText); // 寫入成功才快取
+        return new GenerationResult(quizJsonText, inserted, errors);
+    }
+
+    /**
+     * QuizListener：串流產題時每驗證通過一題就呼叫一次
+     */
+    @FunctionalInterface
+    public interface QuizListener {
+        void onQuiz(JSONObject quiz) throws IOException;
+    }
+
+    /**
+     * ✅ 串流產題：邊接收 GPT 輸出邊解析，每題驗證通過就立即寫入資料庫並交給 listener
+     * 快取命中時直接依序送出快取中的題目；長字幕依段落依序串流，湊滿 QUESTION_COUNT 題即停止。
+     * @param videoId 影片 ID
+     * @param listener 接收每一題（通常是寫出 SSE 事件）
+     * @return 產題結果
+     * @throws GenerationException 產題失敗
+     * @throws IOException listener 失敗（例如瀏覽器已斷線），此時已寫入的題目會保留
+     */
+    public static GenerationResult generateStream(String videoId, QuizListener listener)
+            throws GenerationException, IOException {
+        TranscriptStore.Transcript transcript = loadTranscript(videoId);
+
+        List<String> chunks = transcript.getChunks(CHUNK_MAX_TOKENS);
+        String template = chunkTemplate(chunks);
+
+        LlmGateway llm = LlmGateway.getInstance();
+        String cacheKey = cacheKey(transcript, template, llm);
+        String cachedJson = GeneratedQuizCache.getInstance().get(cacheKey);
+        if (cachedJson != null) {
+            System.out.println("⚡ 產題快取命中，略過 OpenAI 呼叫：" + cacheKey);
+            JSONArray cachedArr = new JSONArray(cachedJson);
+            int inserted = insertQuizzes(videoId, cachedArr);
+            for (int i = 0; i < cachedArr.length(); i++) {
+                listener.onQuiz(cachedArr.getJSONObject(i));
+            }
+            return new GenerationResult(cachedJson, inserted);
+        }
+
+        JSONArray quizArr = new JSONArray();
+        Set<String> seen = new HashSet<>();
+        List<String> errors = new ArrayList<>();
+        IOException[] listenerError = new IOException[1];
+        int[] inserted = new int[1]; // 實際寫入題數（與題庫重複而被略過的不計）
+
+        int[] items = new int[1];    // 已切出的物件數（錯誤訊息的項次）
+
+        // 每切出一個完整物件：解析 → 驗證 → 去重 → 寫入 → 通知 listener
+        JsonArrayStreamParser.Handler handler = json -> {
+            if (quizArr.length() >= QUESTION_COUNT) return;
+            items[0]++;
+            JSONObject q;
+            try {
+                q = JsonArrayStreamParser.parseObject(json);
+            } catch (JSONException e) {
+                System.err.println("⚠️ 題目 JSON 無法解析，跳過：" + json);
+                errors.add("第 " + items[0] + " 項格式錯誤：" + e.getMessage());
+                return;
+            }
+            String error = quizError(q);
+            if (error != null) {
+                System.err.println("⚠️ 略過無法使用的題目：" + q);
+                errors.add("第 " + items[0] + " 項" + error);
+                return;
+            }
+            if (!seen.add(normalizeQuestion(q.optString("question")))) return;
+            try {
+                inserted[0] += insertQuizzes(videoId, new JSONArray().put(q));
+            } catch (GenerationException e) {
+                throw new IOException(e.getMessage(), e);
+            }
+            quizArr.put(q);
+            try {
+                listener.onQuiz(q);
+            } catch (IOException e) {
+                listenerError[0] = e;
+                throw e;
+            }
+        };
+
+        for (String chunk : chunks.size() <= 1 ? List.of(transcript.getText()) : chunks) {
+            if (quizArr.length() >= QUESTION_COUNT) break;
+            JsonArrayStreamParser parser = new JsonArrayStreamParser(handler);
+            try {
+                llm.chatStream(template + chunk, parser::feed);
+            } catch (LlmGateway.UnavailableException ex) {
+                System.err.println("⚠️ " + ex.getMessage());
+                throw new GenerationException(503, ex.getMessage());
+            } catch (IOException ex) {
+                if (listenerError[0] != null) throw listenerError[0];
+                if (ex.getCause() instanceof GenerationException ge) throw ge;
+                ex.printStackTrace();
+                throw new GenerationException(500, "OpenAI API 請求失敗", null, ex);
+            }
+            if (parser.hasPartialObject()) errors.add("最後一題不完整（輸出被截斷）");
+        }
+
+        if (quizArr.isEmpty()) {
+            throw new GenerationException(500, "GPT 回傳內容中沒有可用的題目", String.join("\n", errors), null);
+        }
+        String quizJsonText = quizArr.toString();
+        GeneratedQuizCache.getInstance().put(cacheKey, quizJsonText);
+        return new GenerationResult(quizJsonText, inserted[0], errors);
+    }
+
+    // 每段要求的題數：平均分攤 QUESTION_COUNT，多要一題作為去重備援
+    private static int perChunkCount(int chunkCount) {
+        return Math.max(1, (int) Math.ceil((double) QUESTION_COUNT / chunkCount)) + 1;
+    }
+
+    // 實際送出的每段 prompt 範本：只有一段時整份送出，多段時依段數調整題數
+    private static String chunkTemplate(List<String> chunks) {
+        return chunks.size() <= 1 ? PROMPT_TEMPLATE : promptTemplate(perChunkCount(chunks.size()));
+    }
+
+    // 產題快取鍵：分段上限與每段 prompt 也納入，調整 quiz.chunk.maxTokens 後不會沿用舊的分段結果
+    private static String cacheKey(TranscriptStore.Transcript transcript, String chunkTemplate, LlmGateway llm) {
+        return GeneratedQuizCache.keyOf(transcript.getContentHash(), PROMPT_TEMPLATE, CHUNK_MAX_TOKENS,
+                chunkTemplate, llm.getModel());
+    }
+
+    // 從 TranscriptStore 取得字幕（通常不需讀檔）
+    private static TranscriptStore.Transcript loadTranscript(String videoId) throws GenerationException {
+        TranscriptStore.Transcript transcript;
+        try {
+            transcript = TranscriptStore.getInstance().get(videoId);
+        } catch (Exception e) {
+            e.printStackTrace();
+            throw new GenerationException(500, "找不到 transcript 檔案");
+        }
+        if (transcript == null) {
+            System.err.println("❌ 找不到 transcript 檔案：" + videoId);
+            throw new GenerationException(500, "找不到 transcript 檔案");
+        }
+        return transcript;
+    }
+
+    /**
+     * 送出單一 prompt 並逐題解析回傳的 JSON 陣列
+     * 格式錯誤或欄位不符（缺少答案、選項不足、答案不在選項中）的題目會略過並加入 errors，
+     * 不會進入回傳結果與產題快取；沒有任何可用題目時才視為失敗
+     * @param template prompt 範本
+     * @param text 接在範本後面的字幕內容
+     * @param errors 收集逐題錯誤訊息
+     */
+    private static JSONArray requestQuizzes(LlmGateway llm, String template, String text, List<String> errors) throws GenerationException {
+        System.out.println("🧠 呼叫 OpenAI API 前準備完成");
+
+        String quizJsonText;
+        try {
+            quizJsonText = llm.chat(template + text);
+        } catch (LlmGateway.UnavailableException ex) {
+            // 斷路中或排隊逾時：快速失敗，請前端稍後再試
+            System.err.println("⚠️ " + ex.getMessage());
+            throw new GenerationException(503, ex.getMessage());
+        } catch (Exception ex) {
+            ex.printStackTrace();
+            throw new GenerationException(500, "OpenAI API 請求失敗", null, ex);
+        }
+
+        System.out.println("🧠 GPT 原始回傳內容：\n" + quizJsonText);
+
+        // 單次走訪 GPT 回傳內容，逐一擷取並驗證題目物件
+        JsonArrayStreamParser.Extraction extraction = JsonArrayStreamParser.extract(quizJsonText, QuizGenerationService::quizError);
+        for (String error : extraction.errors) {
+            System.err.println("⚠️ 略過無法使用的題目：" + error);
+        }
+        errors.addAll(extraction.errors);
+
+        if (extraction.items.isEmpty()) {
+            String message = extraction.errors.isEmpty() ? "GPT 回傳格式無法解析為 JSON 陣列" : "GPT 回傳內容中沒有可用的題目";
+            throw new GenerationException(500, message, quizJsonText, null);
+        }
+        return new JSONArray(extraction.items);
+    }
+
+    /**
+     * 各段落平行產題，再依段落輪流挑選、去除重複題目，合併成 QUESTION_COUNT 題
+     * 部分段落失敗時使用其餘段落的結果；全部失敗才丟出第一個錯誤
+     */
+    private static JSONArray generateChunked(LlmGateway llm, List<String> chunks, List<String> errors) throws GenerationException {
+        int perChunk = perChunkCount(chunks.size());
+        String template = promptTemplate(perChunk);
+        System.out.println("🧩 字幕分為 " + chunks.size() + " 段平行產題，每段 " + perChunk + " 題");
+
+        List<Future<JSONArray>> futures = new ArrayList<>();
+        for (int i = 0; i < chunks.size(); i++) {
+            String chunk = chunks.get(i);
+            String part = "第 " + (i + 1) + " 段"; // 各段的項次各自從 1 開始，錯誤訊息加上段落編號
+            futures.add(CHUNK_EXECUTOR.submit(() -> {
+                List<String> chunkErrors = new ArrayList<>();
+                try {
+                    return requestQuizzes(llm, template, chunk, chunkErrors);
+                } finally {
+                    chunkErrors.forEach(e -> errors.add(part + e));
+                }
+            }));
+        }
+
+        List<JSONArray> results = new ArrayList<>();
+        GenerationException firstError = null;
+        for (Future<JSONArray> f : futures) {
+            try {
+                results.add(f.get());
+            } catch (ExecutionException e) {
+                GenerationException ge = e.getCause() instanceof GenerationException
+                        ? (GenerationException) e.getCause()
+                        : new GenerationException(500, "OpenAI API 請求失敗", null, e.getCause());
+                if (firstError == null) firstError = ge;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                futures.forEach(x -> x.cancel(true));
+                throw new GenerationException(500, "產題工作被中斷");
+            }
+        }
+        if (results.isEmpty()) throw firstError;
+
+        // reduce：依段落輪流取題，讓題目平均涵蓋整部影片，並以正規化題幹去重
+        JSONArray merged = new JSONArray();
+        Set<String> seen = new HashSet<>();
+        for (int i = 0; merged.length() < QUESTION_COUNT; i++) {
+            boolean any = false;
+            for (JSONArray arr : results) {
+                if (i >= arr.length()) continue;
+                any = true;
+                Object item = arr.opt(i);
+                if (!(item instanceof JSONObject q)) continue; // requestQuizzes 已排除欄位不符的題目
+                String key = normalizeQuestion(q.optString("question"));
+                if (seen.add(key)) {
+                    merged.put(q);
+                    if (merged.length() >= QUESTION_COUNT) break;
+                }
+            }
+            if (!any) break;
+        }
+        return merged;
+    }
+
+    /**
+     * 驗證每題欄位後批次寫入 quiz 題庫，回傳寫入題數
+     * 內容與題庫既有題目相同的題目由 QuizDAO 以 content_hash 略過（重播快取結果時也不會重複寫入）
+     */
+    private static int insertQuizzes(String videoId, JSONArray quizArr) throws GenerationException {
+        List<Quiz> quizzes = new ArrayList<>();
+        for (int i = 0; i < quizArr.length(); i++) {
+            Quiz quiz = toQuiz(videoId, quizArr.optJSONObject(i));
+            if (quiz != null) quizzes.add(quiz);
+        }
+        if (quizzes.isEmpty()) return 0;
+
+        try (Connection conn = DBUtil.getConnection()) {
+            return new QuizDAO(conn).insertQuizListAvoidDuplicate(videoId, quizzes);
+        } catch (Exception ex) {
+            ex.printStackTrace();
+            throw new GenerationException(500, "資料庫寫入錯誤", null, ex);
+        }
+    }
+
+    /**
+     * 檢查 GPT 產生的單題欄位：需有 question、至少兩個選項，且 answer 為前四個選項之一
+     * @return 錯誤原因（接在「第 N 項」之後），可用時回傳 null
+     */
+    static String quizError(JSONObject q) {
+        if (q == null) return "不是物件";
+
+        // 基本欄位檢查
+        if (!q.has("question") || !q.has("options") || !q.has("answer")) {
+            return "缺少必要欄位（question、options、answer）";
+        }
+
+        JSONArray opts = q.optJSONArray("options");
+        if (opts == null || opts.length() < 2) {
+            return "選項數不足（至少 2 個）";
+        }
+
+        int correctIndex = correctIndexOf(q, opts);
+        if (correctIndex == -1 || correctIndex > 3) {
+            return "的正確答案不在前四個選項中";
+        }
+        return null;
+    }
+
+    /**
+     * 檢查 GPT 產生的單題欄位並轉成 Quiz（最多取四個選項，不足補空字串）
+     * @return 題目物件，欄位不完整或找不到正確答案時回傳 null
+     */
+    static Quiz toQuiz(String videoId, JSONObject q) {
+        String error = quizError(q);
+        if (error != null) {
+            System.err.println("⚠️ 題目" + error + "，跳過：" + q);
+            return null;
+        }
+
+        JSONArray opts = q.getJSONArray("options");
+        return new Quiz(videoId, q.optString("question"),
+                opts.optString(0), opts.optString(1),
+                opts.length() > 2 ? opts.optString(2) : "",
+                opts.length() > 3 ? opts.optString(3) : "",
+                correctIndexOf(q, opts), "根據影片內容產生的題目");
+    }
+
+    // 尋找正確答案的索引位置（找不到時為 -1）
+    private static int correctIndexOf(JSONObject q, JSONArray opts) {
+        String correctAnswer = q.optString("answer").trim();
+        for (int j = 0; j < opts.length(); j++) {
+            if (opts.optString(j).trim().equals(correctAnswer)) return j;
+        }
+        return -1;
+    }
+
+    // 題幹正規化（去除空白與標點、轉小寫），用於合併時去重
+    private static String normalizeQuestion(String question) {
+        return question.replaceAll("[\\s\\p{Punct}，。？！、]+", "").toLowerCase();
+    }
+}
@@ -3,13 +3,19 @@ package tw.shawn.util;
 import tw.shawn.model.Quiz;
 
 import java.util.*;
-import java.util.regex.Pattern;
 
 /**
  * QuizGenerator：從字幕內容產生選擇題（非 GPT），使用關鍵字取代方式製造干擾選項。
+ * 可替換的關鍵字來自 DistractorDictionary（Aho-Corasick 自動機，每句只掃描一次），
+ * 句子中只要有一個可替換的詞、能湊出三個不同的干擾選項就能出題。
+ * 斷句與中文判斷都以單次字元掃描完成（不使用正規表示式），
+ * 隨機來源可由呼叫端指定，批次產題時以影片 ID 為種子，相同字幕每次都產生相同題目。
  */
 public class QuizGenerator {
 
+    // 候選句子的最短長度
+    private static final int MIN_SENTENCE_LENGTH = 20;
+
     /**
      * ✅ 根據字幕文字自動產生多題選擇題
      * @param transcript 字幕內容（純文字、已斷句）
@@ -18,50 +24,64 @@ public class QuizGenerator {
      * @return List<Quiz> 回傳選擇題列表
      */
     public static List<Quiz> generateMultipleChoice(String transcript, int videoId, int num) {
-        List<Quiz> result = new ArrayList<>();             // 最終回傳的題目清單
-        Set<String> usedSentences = new HashSet<>();       // 記錄已出過的正確句子，避免重複出題
-
         // ✅ 用中文標點符號（。！？）切割成句子
-        String[] sentences = transcript.split("[。！？]");
+        return generateMultipleChoice(TranscriptChunker.splitSentences(transcript), videoId, num);
+    }
+
+    /**
+     * ✅ 根據已斷好的句子產生多題選擇題（可直接使用 TranscriptStore 快取的句子，不必重新斷句）
+     * @param sentences 句子清單
+     * @param videoId 影片 ID
+     * @param num 要產生的題目數量
+     * @return List<Quiz> 回傳選擇題列表
+     */
+    public static List<Quiz> generateMultipleChoice(List<String> sentences, int videoId, int num) {
+        return generate(sentences, String.valueOf(videoId), num, new Random());
+    }
+
+    /**
+     * ✅ 以指定的隨機來源產生選擇題
+     * 候選句子先依隨機來源洗牌後依序嘗試，每句最多嘗試一次，不會無限重試。
+     * @param sentences 句子清單（句尾標點可有可無）
+     * @param videoId 影片 ID
+     * @param num 要產生的題目數量
+     * @param random 隨機來源（批次產題時使用 seedOf(videoId) 建立，結果可重現）
+     * @return List<Quiz> 回傳選擇題列表
+     */
+    public static List<Quiz> generate(List<String> sentences, String videoId, int num, Random random) {
+        List<Quiz> result = new ArrayList<>();             // 最終回傳的題目清單
+        if (num <= 0) return result;
 
+        // ✅ 篩選候選句子：去除句尾標點與前後空白，長度需 > 20 且含有中文，重複的句子只留一次
+        Set<String> seen = new HashSet<>();
         List<String> candidates = new ArrayList<>();
-        for (String s : sentences) {
-            s = s.trim(); // 去除前後空白
-            // 條件：句子長度需 > 20 且含有中文
-            if (s.length() > 20 && Pattern.compile("[\u4e00-\u9fa5]").matcher(s).find()) {
+        for (String raw : sentences) {
+            String s = stripSentence(raw);
+            if (s.length() > MIN_SENTENCE_LENGTH && containsChinese(s) && seen.add(s)) {
                 candidates.add(s); // 加入候選句子列表
             }
         }
 
-        Random random = new Random();
-        int attempts = 0; // 控制最多重試次數（避免無限迴圈）
+        // ✅ 打亂候選句順序後依序出題（取代原本隨機抽句、最多重試 100 次的做法）
+        Collections.shuffle(candidates, random);
+        for (String correct : candidates) {
+            if (result.size() >= num) break;
 
-        // ✅ 重複嘗試最多 100 次，直到產生指定題數
-        while (result.size() < num && attempts++ < 100) {
-            if (candidates.isEmpty()) break; // 若沒候選句可用則停止
+            // ✅ 製造干擾選項：字典中所有可替換的詞各自產生變體，再隨機挑三個
+            List<String> variants = DistractorDictionary.getDefault().variants(correct);
+            if (variants.size() < 3) continue; // 若無法組成 4 個不同選項則跳過
+            Collections.shuffle(variants, random);
 
-            // 隨機選一句當作正確答案
-            String correct = candidates.get(random.nextInt(candidates.size()));
-            if (usedSentences.contains(correct)) continue; // 若已出題過則略過
-
-            // ✅ 製造干擾選項：替換特定關鍵詞（根據 Java 主題常見混淆概念）
-            String fake1 = correct.replaceFirst("Java", "Python");
-            String fake2 = correct.replaceFirst("JDK", "JRE");
-            String fake3 = correct.replaceFirst("VS ?Code", "Notepad");
-
-            // ✅ 建立選項集合，避免重複選項
-            Set<String> optionsSet = new LinkedHashSet<>(Arrays.asList(correct, fake1, fake2, fake3));
-            if (optionsSet.size() < 4) continue; // 若無法組成 4 個不同選項則跳過
-
-            List<String> options = new ArrayList<>(optionsSet);
-            Collections.shuffle(options); // 將選項順序打亂
+            List<String> options = new ArrayList<>(variants.subList(0, 3));
+            options.add(correct);
+            Collections.shuffle(options, random); // 將選項順序打亂
 
             int correctIndex = options.indexOf(correct); // 找出正確答案在選項中的位置
             if (correctIndex == -1) continue; // 若找不到則跳過該題
 
             // ✅ 建立 Quiz 物件並填入題目資料
             Quiz quiz = new Quiz();
-            quiz.setVideoId(String.valueOf(videoId)); // videoId 要轉為字串
+            quiz.setVideoId(videoId);
             quiz.setQuestion("下列哪一項敘述正確？"); // 固定題幹
 
             // 設定四個選項
@@ -70,16 +90,48 @@ public class QuizGenerator {
             quiz.setOption3(options.get(2));
             quiz.setOption4(options.get(3));
 
-            quiz.setCorrectIndex(correctIndex + 1); // 正解索引（1-based）
+            quiz.setCorrectIndex(correctIndex); // 正解索引（0-based，與 quiz.correct_index 一致）
             quiz.setExplanation("根據影片內容，正確敘述為：「" + correct + "」"); // 題目解釋
 
             result.add(quiz); // 將此題加入結果列表
-            usedSentences.add(correct); // 標記此句已使用
         }
 
         return result; // 回傳產生好的題目清單
     }
 
+    /**
+     * ✅ 以影片 ID 計算固定的隨機種子（同一部影片每次產生相同題目）
+     */
+    public static long seedOf(String videoId) {
+        long h = 1125899906842597L;
+        for (int i = 0; i < videoId.length(); i++) {
+            h = 31 * h + videoId.charAt(i);
+        }
+        return h;
+    }
+
+    // 去除前後空白與句尾的 。！？
+    private static String stripSentence(String s) {
+        int end = s.length();
+        while (end > 0) {
+            char c = s.charAt(end - 1);
+            if (c != '。' && c != '！' && c != '？' && !Character.isWhitespace(c)) break;
+            end--;
+        }
+        int start = 0;
+        while (start < end && Character.isWhitespace(s.charAt(start))) start++;
+        return s.substring(start, end);
+    }
+
+    // 是否含有中文字（CJK 統一表意文字 一-龥）
+    private static boolean containsChinese(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c >= '一' && c <= '龥') return true;
+        }
+        return false;
+    }
+
     /**
      * ✅ 快速方法：預設產生 5 題題目
      * @param transcript 字幕內容
@@ -0,0 +1,251 @@
+package tw.shawn.util;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import tw.shawn.dao.QuizDAO;
+import tw.shawn.model.Quiz;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * QuizImporter：以串流方式匯入 quiz.json（題目陣列）
+ * - 以 Gson JsonReader 逐題讀取，記憶體中最多只保留一個 chunk 的題目，與檔案大小無關
+ * - 每題各自驗證，格式錯誤的題目記錄為該列錯誤後繼續處理，不影響其他題目
+ * - 每 chunkSize 題以 QuizDAO.insertQuizListAvoidDuplicate 寫入並提交一次；
+ *   違反完整性限制（SQLState 23xxx，例如外鍵）時改為在同一個交易內逐題重試，只有真正失敗的題目記為該列錯誤；
+ *   其他錯誤只會回滾該 chunk
+ */
+public class QuizImporter {
+
+    /**
+     * ProgressListener：每提交一個 chunk 通知一次進度
+     */
+    public interface ProgressListener {
+        void onProgress(ImportResult progress) throws IOException;
+    }
+
+    /**
+     * RowError：單列錯誤（row 從 1 開始）
+     */
+    public static class RowError {
+        public final int row;
+        public final String error;
+
+        RowError(int row, String error) {
+            this.row = row;
+            this.error = error;
+        }
+    }
+
+    /**
+     * ImportResult：匯入統計（errors 最多保留 maxErrors 筆，failed 為實際錯誤列數）
+     */
+    public static class ImportResult {
+        public int rows;          // 已讀取的題數
+        public int inserted;      // 新增的題數
+        public int duplicates;    // 重複而略過的題數
+        public int failed;        // 驗證或寫入失敗的題數
+        public final List<RowError> errors = new ArrayList<>();
+
+        /**
+         * ✅ 是否整批失敗（有讀到題目，但每一題都驗證或寫入失敗）
+         */
+        public boolean allFailed() {
+            return rows > 0 && inserted == 0 && failed == rows;
+        }
+    }
+
+    private final Connection conn;
+    private final int chunkSize;
+    private final int maxErrors;
+    private final Gson gson = new Gson();
+
+    public QuizImporter(Connection conn) {
+        this(conn, AppConfig.getInt("quiz.import.chunkSize", 500), AppConfig.getInt("quiz.import.maxErrors", 100));
+    }
+
+    public QuizImporter(Connection conn, int chunkSize, int maxErrors) {
+        this.conn = conn;
+        this.chunkSize = Math.max(1, chunkSize);
+        this.maxErrors = Math.max(0, maxErrors);
+    }
+
+    /**
+     * ✅ 匯入題目陣列
+     * @param reader JSON 內容（最外層為陣列）
+     * @param videoId 題目所屬影片
+     * @param listener 進度通知（可為 null）
+     * @return 匯入統計
+     * @throws IOException JSON 結構錯誤（無法繼續讀取）或 listener 丟出的錯誤；已提交的 chunk 會保留
+     * @throws SQLException 無法切換交易模式
+     */
+    public ImportResult importQuizzes(Reader reader, String videoId, ProgressListener listener)
+            throws IOException, SQLException {
+        ImportResult result = new ImportResult();
+        JsonReader json = new JsonReader(reader);
+        if (json.peek() != JsonToken.BEGIN_ARRAY) {
+            throw new IOException("quiz.json 最外層必須是陣列");
+        }
+        json.beginArray();
+
+        boolean autoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+        try {
+            QuizDAO quizDAO = new QuizDAO(conn);
+            List<Quiz> chunk = new ArrayList<>(chunkSize);
+            List<Integer> chunkRows = new ArrayList<>(chunkSize); // chunk 內每題的列號
+            while (json.hasNext()) {
+                int row = ++result.rows;
+                JsonElement element;
+                try {
+                    element = JsonParser.parseReader(json); // 只讀取一個元素
+                } catch (JsonParseException e) {
+                    throw new IOException("第 " + row + " 題 JSON 結構錯誤：" + e.getMessage(), e);
+                }
+
+                try {
+                    Quiz quiz = gson.fromJson(element, Quiz.class);
+                    String error = validate(quiz);
+                    if (error != null) {
+                        addError(result, row, error);
+                    } else {
+                        chunk.add(quiz);
+                        chunkRows.add(row);
+                    }
+                } catch (JsonParseException e) {
+                    addError(result, row, "欄位型別錯誤：" + e.getMessage());
+                }
+
+                if (chunk.size() >= chunkSize) {
+                    writeChunk(quizDAO, videoId, chunk, chunkRows, result);
+                    if (listener != null) listener.onProgress(result);
+                }
+            }
+            json.endArray();
+            if (!chunk.isEmpty()) {
+                writeChunk(quizDAO, videoId, chunk, chunkRows, result);
+            }
+            if (listener != null) listener.onProgress(result);
+        } finally {
+            conn.setAutoCommit(autoCommit);
+        }
+        return result;
+    }
+
+    // 寫入並提交一個 chunk：違反完整性限制時逐題重試，其他錯誤只回滾該 chunk
+    private void writeChunk(QuizDAO quizDAO, String videoId, List<Quiz> chunk, List<Integer> rows,
+                            ImportResult result) {
+        int fromRow = rows.get(0);
+        int toRow = rows.get(rows.size() - 1);
+        try {
+            int inserted = quizDAO.insertQuizListAvoidDuplicate(videoId, chunk);
+            conn.commit();
+            quizDAO.afterCommit();
+            result.inserted += inserted;
+            result.duplicates += chunk.size() - inserted;
+        } catch (SQLException e) {
+            rollback(quizDAO);
+            if (isDataError(e)) {
+                writeRowByRow(quizDAO, videoId, chunk, rows, result);
+            } else {
+                failChunk(result, chunk.size(), fromRow, toRow, e);
+            }
+        } catch (RuntimeException e) {
+            rollback(quizDAO); // 不可讓外層恢復 autoCommit 時提交半個 chunk
+            failChunk(result, chunk.size(), fromRow, toRow, e);
+        }
+        chunk.clear();
+        rows.clear();
+    }
+
+    // 逐題寫入（同一個交易）：失敗的陳述式只回滾該題，其餘題目照常提交
+    private void writeRowByRow(QuizDAO quizDAO, String videoId, List<Quiz> chunk, List<Integer> rows,
+                               ImportResult result) {
+        int inserted = 0;
+        int duplicates = 0;
+        List<RowError> rowErrors = new ArrayList<>();
+        try {
+            for (int i = 0; i < chunk.size(); i++) {
+                try {
+                    int n = quizDAO.insertQuizListAvoidDuplicate(videoId, List.of(chunk.get(i)));
+                    inserted += n;
+                    duplicates += 1 - n;
+                } catch (SQLException e) {
+                    if (!isDataError(e)) throw e;
+                    rowErrors.add(new RowError(rows.get(i), "寫入失敗：" + e.getMessage()));
+                }
+            }
+            conn.commit();
+            quizDAO.afterCommit();
+            result.inserted += inserted;
+            result.duplicates += duplicates;
+            for (RowError error : rowErrors) {
+                addError(result, error.row, error.error);
+            }
+        } catch (SQLException | RuntimeException e) {
+            rollback(quizDAO);
+            failChunk(result, chunk.size(), rows.get(0), rows.get(rows.size() - 1), e);
+        }
+    }
+
+    private void rollback(QuizDAO quizDAO) {
+        try {
+            conn.rollback();
+        } catch (SQLException ignored) {
+        }
+        quizDAO.afterRollback();
+    }
+
+    // 整個 chunk 寫入失敗（已回滾）
+    private void failChunk(ImportResult result, int size, int fromRow, int toRow, Exception e) {
+        System.err.println("⚠️ 匯入第 " + fromRow + "～" + toRow + " 題寫入失敗：" + e.getMessage());
+        result.failed += size;
+        if (result.errors.size() < maxErrors) {
+            result.errors.add(new RowError(fromRow, "第 " + fromRow + "～" + toRow + " 題寫入失敗：" + e.getMessage()));
+        }
+    }
+
+    // SQLState 23xxx：違反外鍵／唯一鍵等完整性限制，只與該題資料有關，逐題重試可找出失敗的題目
+    private static boolean isDataError(SQLException e) {
+        String state = e.getSQLState();
+        return state != null && state.startsWith("23");
+    }
+
+    private void addError(ImportResult result, int row, String error) {
+        result.failed++;
+        if (result.errors.size() < maxErrors) {
+            result.errors.add(new RowError(row, error));
+        }
+    }
+
+    /**
+     * 驗證單題欄位，選項不足四個時補空字串
+     * @return 錯誤訊息，通過時回傳 null
+     */
+    private static String validate(Quiz quiz) {
+        if (quiz == null) return "題目不是物件";
+        if (quiz.getQuestion() == null || quiz.getQuestion().trim().isEmpty()) return "缺少 question";
+        List<String> options = quiz.getOptions();
+        if (options == null || options.size() < 2) return "options 至少需要兩個選項";
+        if (options.size() > 4) return "options 最多四個選項";
+        for (String o : options) {
+            if (o == null || o.trim().isEmpty()) return "options 不可有空白選項";
+        }
+        if (quiz.getCorrectIndex() < 0 || quiz.getCorrectIndex() >= options.size()) {
+            return "correctIndex 超出選項範圍（0～" + (options.size() - 1) + "）";
+        }
+        List<String> padded = new ArrayList<>(options);
+        while (padded.size() < 4) padded.add("");
+        quiz.setOptions(padded);
+        return null;
+    }
+}
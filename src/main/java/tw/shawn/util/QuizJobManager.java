@@ -0,0 +1,170 @@
+package tw.shawn.util;
+
+import java.util.UUID;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * QuizJobManager：GPT 產題的背景工作管理（單例）
+ * - 每部影片同時只會有一個進行中的產題工作，重複的請求會加入同一個工作（single-flight）
+ * - 工作交給固定大小的工作執行緒池處理，佇列有上限，滿了就直接回報 503
+ * - 前端取得 jobId 後可輪詢或等待 /api/quizJob 取得結果
+ */
+public class QuizJobManager {
+
+    private static final QuizJobManager INSTANCE = new QuizJobManager(
+            AppConfig.getInt("quiz.job.workers", 4),
+            AppConfig.getInt("quiz.job.queueSize", 50),
+            AppConfig.getInt("quiz.job.history", 1000));
+
+    /**
+     * 工作狀態
+     */
+    public enum Status { QUEUED, RUNNING, DONE, FAILED }
+
+    /**
+     * Task：實際執行的產題邏輯
+     */
+    @FunctionalInterface
+    public interface Task {
+        QuizGenerationService.GenerationResult run() throws QuizGenerationService.GenerationException;
+    }
+
+    /**
+     * Job：一次產題工作，狀態欄位皆為 volatile，可由其他執行緒讀取
+     */
+    public static class Job {
+        private final String id = UUID.randomUUID().toString();
+        private final String videoId;
+        private final long createdAt = System.currentTimeMillis();
+        private final CompletableFuture<Void> done = new CompletableFuture<>();
+        private volatile Status status = Status.QUEUED;
+        private volatile long finishedAt;
+        private volatile QuizGenerationService.GenerationResult result;
+        private volatile QuizGenerationService.GenerationException error;
+
+        Job(String videoId) {
+            this.videoId = videoId;
+        }
+
+        public String getId() { return id; }
+        public String getVideoId() { return videoId; }
+        public Status getStatus() { return status; }
+        public long getCreatedAt() { return createdAt; }
+        public long getFinishedAt() { return finishedAt; }
+        public QuizGenerationService.GenerationResult getResult() { return result; }
+        public QuizGenerationService.GenerationException getError() { return error; }
+        public boolean isFinished() { return status == Status.DONE || status == Status.FAILED; }
+
+        /**
+         * ✅ 等待工作完成（最多 timeoutMs 毫秒）
+         * @return 是否已完成
+         */
+        public boolean await(long timeoutMs) {
+            if (timeoutMs <= 0) return isFinished();
+            try {
+                done.get(timeoutMs, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                return false;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return isFinished();
+            } catch (ExecutionException ignored) {
+                // done 只會正常完成
+            }
+            return true;
+        }
+
+        void succeed(QuizGenerationService.GenerationResult r) {
+            result = r;
+            finishedAt = System.currentTimeMillis();
+            status = Status.DONE;
+            done.complete(null);
+        }
+
+        void fail(QuizGenerationService.GenerationException e) {
+            error = e;
+            finishedAt = System.currentTimeMillis();
+            status = Status.FAILED;
+            done.complete(null);
+        }
+    }
+
+    private final ConcurrentHashMap<String, Job> inFlight = new ConcurrentHashMap<>(); // videoId → 進行中的工作
+    private final LruCache<String, Job> jobsById;                                         // jobId → 工作（含已完成）
+    private final ThreadPoolExecutor executor;
+
+    QuizJobManager(int workers, int queueSize, int historySize) {
+        this.jobsById = new LruCache<>(historySize);
+        AtomicInteger seq = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(workers, workers, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(queueSize), r -> {
+                    Thread t = new Thread(r, "quiz-job-" + seq.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+    }
+
+    public static QuizJobManager getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * ✅ 提交或加入某部影片的產題工作
+     * 若該影片已有進行中的工作則直接回傳該工作，不會重複呼叫 GPT
+     * @param videoId 影片 ID
+     * @param task 產題邏輯
+     * @return 工作物件（可能是既有的）
+     */
+    public Job submit(String videoId, Task task) {
+        Job existing = inFlight.get(videoId);
+        if (existing != null) return existing;
+
+        Job job = new Job(videoId);
+        existing = inFlight.putIfAbsent(videoId, job);
+        if (existing != null) return existing;
+
+        jobsById.put(job.getId(), job);
+        try {
+            executor.execute(() -> run(job, task));
+        } catch (RejectedExecutionException e) {
+            inFlight.remove(videoId, job);
+            job.fail(new QuizGenerationService.GenerationException(503, "產題工作佇列已滿，請稍後再試"));
+        }
+        return job;
+    }
+
+    /**
+     * ✅ 依 jobId 查詢工作
+     * @return 工作物件，查無（或已過期淘汰）時回傳 null
+     */
+    public Job getJob(String jobId) {
+        return jobsById.get(jobId);
+    }
+
+    private void run(Job job, Task task) {
+        job.status = Status.RUNNING;
+        try {
+            job.succeed(task.run());
+        } catch (QuizGenerationService.GenerationException e) {
+            job.fail(e);
+        } catch (Throwable t) {
+            t.printStackTrace();
+            job.fail(new QuizGenerationService.GenerationException(500, "產題過程發生未預期錯誤", null, t));
+        } finally {
+            // 工作結束後移出 in-flight，之後的請求會建立新的工作
+            inFlight.remove(job.getVideoId(), job);
+        }
+    }
+
+    public int getActiveCount() { return executor.getActiveCount(); }
+    public int getQueuedCount() { return executor.getQueue().size(); }
+    public int getInFlightCount() { return inFlight.size(); }
+
+    /**
+     * ✅ 停止工作執行緒（WebApp 關閉時呼叫）
+     */
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
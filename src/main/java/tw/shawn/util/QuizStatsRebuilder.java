@@ -0,0 +1,54 @@
+package tw.shawn.util;
+
+import tw.shawn.dao.VideoQuizStatsDAO;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * QuizStatsRebuilder：從 quiz_results 重建 video_quiz_stats 的合計列（每部影片所有來源的測驗統計彙總）
+ * 各來源（local／gpt）的統計無法從歷史資料還原，只由作答增量累計，重建時保持不變。
+ * 平時統計由 SubmitAnswerServlet 增量更新，只有在初次部署（統計表為空）或懷疑統計漂移時才需要重建。
+ * WebApp 啟動時若統計表為空會自動重建一次（quiz.stats.rebuildIfEmpty），也可在命令列執行：
+ * java tw.shawn.util.QuizStatsRebuilder
+ */
+public class QuizStatsRebuilder {
+
+    private QuizStatsRebuilder() {}
+
+    /**
+     * ✅ 重建合計統計
+     * @return 重建後的合計列數
+     */
+    public static int rebuild() throws SQLException {
+        long start = System.currentTimeMillis();
+        try (Connection conn = DBUtil.getConnection()) {
+            int rows = new VideoQuizStatsDAO(conn).rebuild();
+            System.out.println("✅ 影片測驗統計重建完成：" + rows + " 列，耗時 " + (System.currentTimeMillis() - start) + " ms");
+            return rows;
+        }
+    }
+
+    /**
+     * ✅ 統計表為空時才重建（WebApp 啟動時呼叫）
+     * @return 是否執行了重建
+     */
+    public static boolean rebuildIfEmpty() throws SQLException {
+        try (Connection conn = DBUtil.getConnection()) {
+            if (!new VideoQuizStatsDAO(conn).isEmpty()) return false;
+        }
+        rebuild();
+        return true;
+    }
+
+    /**
+     * ✅ 命令列入口：重建合計統計
+     */
+    public static void main(String[] args) throws Exception {
+        try {
+            rebuild();
+        } finally {
+            DBUtil.shutdownPool();
+        }
+    }
+}
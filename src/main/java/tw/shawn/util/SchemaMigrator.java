@@ -0,0 +1,209 @@
+package tw.shawn.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * SchemaMigrator：版本化的資料庫結構遷移工具
+ * 依序套用 classpath 上 db/migration/ 內的 SQL 檔（V001__xxx.sql、V002__xxx.sql ...），
+ * 每個版本只執行一次，並在 schema_migrations 表記錄 SHA-256 檢查碼；
+ * 已套用的檔案若內容被修改，會中止遷移避免各節點結構不一致。
+ */
+public class SchemaMigrator {
+
+    // ✅ 遷移檔清單（依版本號排序，新增遷移時在最後面加上一行）
+    private static final String[] MIGRATIONS = {
+        "V001__hot_path_indexes.sql",
+        "V002__quiz_content_hash.sql",
+        "V003__video_keyset_indexes.sql",
+        "V004__video_youtube_columns.sql",
+        "V005__video_quiz_stats.sql",
+    };
+
+    private static final String LOCATION = "db/migration/";       // classpath 路徑
+    private static final String LOCK_NAME = "videolist_schema_migration"; // 多節點同時啟動時使用的 MySQL 命名鎖
+    private static final int LOCK_TIMEOUT_SEC = 60;
+
+    // 可安全略過的錯誤碼：索引/欄位已存在（例如先前手動建立過），讓遷移可重複執行
+    private static final int ER_DUP_KEYNAME = 1061;
+    private static final int ER_DUP_FIELDNAME = 1060;
+
+    private final Connection conn;
+
+    public SchemaMigrator(Connection conn) {
+        this.conn = conn;
+    }
+
+    /**
+     * ✅ 套用所有尚未執行的遷移
+     * @return 本次實際套用的遷移數量
+     * @throws SQLException 資料庫錯誤或檢查碼不符
+     */
+    public int migrate() throws SQLException {
+        createHistoryTable();
+
+        if (!acquireLock()) {
+            throw new SQLException("無法取得 schema 遷移鎖（其他節點可能正在遷移）");
+        }
+        try {
+            Map<Integer, String> applied = loadApplied();
+            int count = 0;
+
+            for (String fileName : MIGRATIONS) {
+                int version = parseVersion(fileName);
+                String sql = readResource(LOCATION + fileName);
+                String checksum = sha256(sql);
+
+                String appliedChecksum = applied.get(version);
+                if (appliedChecksum != null) {
+                    if (!appliedChecksum.equals(checksum)) {
+                        throw new SQLException("遷移檔 " + fileName + " 已套用但內容被修改（checksum 不符），請新增新版本而非修改舊檔");
+                    }
+                    continue; // 已套用過，略過
+                }
+
+                long start = System.currentTimeMillis();
+                for (String statement : splitStatements(sql)) {
+                    execute(statement);
+                }
+                recordApplied(version, fileName, checksum, System.currentTimeMillis() - start);
+                System.out.println("✅ 已套用資料庫遷移：" + fileName);
+                count++;
+            }
+            return count;
+        } finally {
+            releaseLock();
+        }
+    }
+
+    // 建立遷移紀錄表（若不存在）
+    private void createHistoryTable() throws SQLException {
+        String sql = "CREATE TABLE IF NOT EXISTS schema_migrations (" +
+                     "version INT NOT NULL PRIMARY KEY, " +
+                     "description VARCHAR(200) NOT NULL, " +
+                     "checksum CHAR(64) NOT NULL, " +
+                     "execution_ms INT NOT NULL, " +
+                     "applied_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP" +
+                     ") ENGINE=InnoDB DEFAULT CHARSET=utf8mb4";
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute(sql);
+        }
+    }
+
+    private Map<Integer, String> loadApplied() throws SQLException {
+        Map<Integer, String> map = new HashMap<>();
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT version, checksum FROM schema_migrations")) {
+            while (rs.next()) {
+                map.put(rs.getInt("version"), rs.getString("checksum"));
+            }
+        }
+        return map;
+    }
+
+    private void recordApplied(int version, String fileName, String checksum, long elapsedMs) throws SQLException {
+        String sql = "INSERT INTO schema_migrations (version, description, checksum, execution_ms) VALUES (?, ?, ?, ?)";
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setInt(1, version);
+            ps.setString(2, fileName);
+            ps.setString(3, checksum);
+            ps.setInt(4, (int) elapsedMs);
+            ps.executeUpdate();
+        }
+    }
+
+    // 執行單一敘述；索引或欄位已存在時只印警告
+    private void execute(String statement) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute(statement);
+        } catch (SQLException e) {
+            if (e.getErrorCode() == ER_DUP_KEYNAME || e.getErrorCode() == ER_DUP_FIELDNAME) {
+                System.out.println("⚠️ 略過已存在的結構：" + e.getMessage());
+            } else {
+                throw e;
+            }
+        }
+    }
+
+    private boolean acquireLock() throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement("SELECT GET_LOCK(?, ?)")) {
+            ps.setString(1, LOCK_NAME);
+            ps.setInt(2, LOCK_TIMEOUT_SEC);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() && rs.getInt(1) == 1;
+            }
+        }
+    }
+
+    private void releaseLock() {
+        try (PreparedStatement ps = conn.prepareStatement("SELECT RELEASE_LOCK(?)")) {
+            ps.setString(1, LOCK_NAME);
+            ps.executeQuery().close();
+        } catch (SQLException e) {
+            System.err.println("⚠️ 釋放 schema 遷移鎖失敗：" + e.getMessage());
+        }
+    }
+
+    /**
+     * 從檔名解析版本號，例如 V001__hot_path_indexes.sql → 1
+     */
+    static int parseVersion(String fileName) {
+        int end = fileName.indexOf("__");
+        if (!fileName.startsWith("V") || end < 2) {
+            throw new IllegalArgumentException("遷移檔名格式錯誤：" + fileName);
+        }
+        return Integer.parseInt(fileName.substring(1, end));
+    }
+
+    /**
+     * 將 SQL 檔切成單一敘述：略過 -- 註解行，以行尾分號作為敘述結尾
+     */
+    static List<String> splitStatements(String sql) {
+        List<String> list = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        for (String line : sql.split("\\R")) {
+            String trimmed = line.trim();
+            if (trimmed.isEmpty() || trimmed.startsWith("--")) continue;
+            current.append(line).append('\n');
+            if (trimmed.endsWith(";")) {
+                String stmt = current.toString().trim();
+                list.add(stmt.substring(0, stmt.length() - 1));
+                current.setLength(0);
+            }
+        }
+        if (current.toString().trim().length() > 0) {
+            list.add(current.toString().trim());
+        }
+        return list;
+    }
+
+    private static String readResource(String path) throws SQLException {
+        try (InputStream in = SchemaMigrator.class.getClassLoader().getResourceAsStream(path)) {
+            if (in == null) throw new SQLException("找不到遷移檔：" + path);
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            in.transferTo(out);
+            return out.toString(StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new SQLException("讀取遷移檔失敗：" + path, e);
+        }
+    }
+
+    private static String sha256(String text) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(md.digest(text.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package tw.shawn.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * TranscriptChunker：將字幕切成不超過 token 預算的段落，供長影片分段產題
+ * 斷句規則與 QuizGenerator 相同（以 。！？ 為句尾），段落只會在句子之間切開。
+ */
+public class TranscriptChunker {
+
+    private TranscriptChunker() {}
+
+    /**
+     * ✅ 依中文句尾標點（。！？）斷句，保留標點並去除前後空白，略過空句
+     * @param text 字幕全文
+     * @return 句子清單
+     */
+    public static List<String> splitSentences(String text) {
+        List<String> sentences = new ArrayList<>();
+        int start = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '。' || c == '！' || c == '？') {
+                addTrimmed(sentences, text, start, i + 1);
+                start = i + 1;
+            }
+        }
+        addTrimmed(sentences, text, start, text.length());
+        return sentences;
+    }
+
+    /**
+     * ✅ 將句子依序裝進 token 預算內的段落
+     * 自動字幕常常沒有標點，單句超過預算時會再依字數硬切（盡量切在空白處）
+     * @param sentences 句子清單
+     * @param maxTokens 每段的 token 上限（估計值）
+     * @return 段落文字清單
+     */
+    public static List<String> chunk(List<String> sentences, int maxTokens) {
+        List<String> chunks = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        int currentTokens = 0;
+        for (String sentence : sentences) {
+            for (String s : splitOversized(sentence, maxTokens)) {
+                int tokens = estimateTokens(s);
+                if (currentTokens > 0 && currentTokens + tokens > maxTokens) {
+                    chunks.add(current.toString());
+                    current.setLength(0);
+                    currentTokens = 0;
+                }
+                current.append(s);
+                currentTokens += tokens;
+            }
+        }
+        if (currentTokens > 0) chunks.add(current.toString());
+        return chunks;
+    }
+
+    // 將超過預算的單句切成多片；未超過時原樣回傳
+    private static List<String> splitOversized(String sentence, int maxTokens) {
+        if (estimateTokens(sentence) <= maxTokens) return List.of(sentence);
+        List<String> pieces = new ArrayList<>();
+        int start = 0;
+        int tokens = 0;
+        int lastSpace = -1;
+        int otherRun = 0; // 連續的英數字元數（每 4 個算 1 token）
+        for (int i = 0; i < sentence.length(); i++) {
+            char c = sentence.charAt(i);
+            if (Character.isWhitespace(c)) {
+                lastSpace = i;
+            } else if (isCjk(c)) {
+                tokens++;
+            } else if (++otherRun % 4 == 1) {
+                tokens++;
+            }
+            if (tokens >= maxTokens) {
+                int cut = lastSpace > start ? lastSpace + 1 : i + 1;
+                addTrimmed(pieces, sentence, start, cut);
+                start = cut;
+                tokens = estimateTokens(sentence.substring(start, i + 1));
+                lastSpace = -1;
+            }
+        }
+        addTrimmed(pieces, sentence, start, sentence.length());
+        return pieces;
+    }
+
+    /**
+     * ✅ 粗估 token 數：中日韓文字約一字一 token，英數字約四個字元一 token
+     */
+    public static int estimateTokens(String text) {
+        int cjk = 0;
+        int other = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (isCjk(c)) {
+                cjk++;
+            } else if (!Character.isWhitespace(c)) {
+                other++;
+            }
+        }
+        return cjk + (other + 3) / 4;
+    }
+
+    // 中日韓文字與全形符號
+    private static boolean isCjk(char c) {
+        return Character.isIdeographic(c) || (c >= '　' && c <= 'ヿ') || (c >= '＀' && c <= '￯');
+    }
+
+    private static void addTrimmed(List<String> out, String text, int start, int end) {
+        String s = text.substring(start, end).trim();
+        if (!s.isEmpty()) out.add(s);
+    }
+}
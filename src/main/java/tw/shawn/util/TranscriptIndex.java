@@ -0,0 +1,452 @@
+package tw.shawn.util;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/**
+ * TranscriptIndex：所有影片字幕的記憶體倒排索引（單例，由 DBCleanupListener 啟動）
+ * - 詞彙：連續中日韓文字切成相鄰二字（bigram），另索引單字以支援一個字的查詢；英數字以整個單字（轉小寫）為詞
+ * - posting list 以 varint 差值編碼壓縮：[文件差值, 句數, 句子索引差值...]，每個詞只佔一個 byte[]
+ * - 字幕變動時（TranscriptStore 通知）只重新索引該影片：舊文件標為刪除，新內容以新的文件編號附加在尾端，
+ *   讓 posting list 永遠保持遞增、可以直接附加；刪除的文件累積過多時再壓縮（移除舊文件並重新編號）
+ * - 查詢時所有詞都必須出現（AND），依 TF-IDF 排序，並回傳命中的句子位置
+ */
+public class TranscriptIndex {
+
+    private static volatile TranscriptIndex instance;
+
+    // 每部影片最多回傳的命中句數
+    private static final int MAX_SENTENCES_PER_VIDEO = 3;
+
+    /**
+     * SentenceHit：影片中命中的一句（句子索引、在全文中的字元位置與內容）
+     */
+    public static class SentenceHit {
+        public final int index;
+        public final int offset;
+        public final String text;
+
+        SentenceHit(int index, int offset, String text) {
+            this.index = index;
+            this.offset = offset;
+            this.text = text;
+        }
+    }
+
+    /**
+     * Hit：一部符合查詢的影片
+     */
+    public static class Hit {
+        public final String videoId;
+        public final double score;
+        public final List<SentenceHit> sentences = new ArrayList<>();
+
+        Hit(String videoId, double score) {
+            this.videoId = videoId;
+            this.score = score;
+        }
+    }
+
+    // 單一詞彙的壓縮 posting list（只能依文件編號遞增附加）
+    private static class Postings {
+        byte[] data = new byte[16];
+        int size;
+        int lastDoc = -1;
+        int docCount;
+
+        void add(int doc, int[] sentences, int count) {
+            writeVarint(doc - lastDoc);
+            writeVarint(count);
+            int prev = 0;
+            for (int i = 0; i < count; i++) {
+                writeVarint(sentences[i] - prev);
+                prev = sentences[i];
+            }
+            lastDoc = doc;
+            docCount++;
+        }
+
+        void writeVarint(int v) {
+            if (size + 5 > data.length) data = Arrays.copyOf(data, Math.max(data.length * 2, size + 5));
+            while ((v & ~0x7F) != 0) {
+                data[size++] = (byte) ((v & 0x7F) | 0x80);
+                v >>>= 7;
+            }
+            data[size++] = (byte) v;
+        }
+
+        void trim() {
+            if (data.length > size) data = Arrays.copyOf(data, size);
+        }
+    }
+
+    // 依序讀取 posting list 的游標
+    private static class PostingsReader {
+        private final byte[] data;
+        private final int size;
+        private int pos;
+        int doc = -1;
+        int[] sentences = new int[8];
+        int count;
+
+        PostingsReader(Postings p) {
+            this.data = p.data;
+            this.size = p.size;
+        }
+
+        boolean next() {
+            if (pos >= size) return false;
+            doc += readVarint();
+            count = readVarint();
+            if (sentences.length < count) sentences = new int[count];
+            int prev = 0;
+            for (int i = 0; i < count; i++) {
+                prev += readVarint();
+                sentences[i] = prev;
+            }
+            return true;
+        }
+
+        private int readVarint() {
+            int v = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = data[pos++];
+                v |= (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            return v;
+        }
+    }
+
+    // 文件資訊（文件編號即 docs 的索引）
+    private static class Doc {
+        final String videoId;
+        final int[] sentenceOffsets; // 每句在全文中的起始字元位置
+        boolean live = true;
+
+        Doc(String videoId, int[] sentenceOffsets) {
+            this.videoId = videoId;
+            this.sentenceOffsets = sentenceOffsets;
+        }
+    }
+
+    private final TranscriptStore store;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final HashMap<String, Postings> terms = new HashMap<>();
+    private final ArrayList<Doc> docs = new ArrayList<>();
+    private final HashMap<String, Integer> docByVideo = new HashMap<>();
+    private int deadDocs;
+    private final ExecutorService indexer = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "transcript-indexer");
+        t.setDaemon(true);
+        return t;
+    });
+
+    TranscriptIndex(TranscriptStore store) {
+        this.store = store;
+    }
+
+    /**
+     * ✅ 建立共用實例：背景索引目前所有字幕，之後依 TranscriptStore 的變動通知增量更新
+     */
+    public static synchronized void init(TranscriptStore store) {
+        if (instance != null) return;
+        TranscriptIndex index = new TranscriptIndex(store);
+        store.addListener(videoId -> index.indexer.execute(() -> index.reindex(videoId)));
+        index.indexer.execute(index::indexAll);
+        instance = index;
+    }
+
+    public static TranscriptIndex getInstance() {
+        TranscriptIndex index = instance;
+        if (index == null) throw new IllegalStateException("TranscriptIndex 尚未初始化");
+        return index;
+    }
+
+    /**
+     * ✅ 停止索引執行緒（WebApp 關閉時呼叫）
+     */
+    public static synchronized void shutdown() {
+        if (instance == null) return;
+        instance.indexer.shutdownNow();
+        instance = null;
+    }
+
+    private void indexAll() {
+        long start = System.currentTimeMillis();
+        try {
+            List<String> ids = store.listVideoIds();
+            for (String videoId : ids) {
+                reindex(videoId);
+            }
+            System.out.println("✅ 字幕索引建立完成：" + ids.size() + " 部影片，" + getTermCount() + " 個詞，耗時 "
+                    + (System.currentTimeMillis() - start) + " ms");
+        } catch (IOException e) {
+            System.err.println("⚠️ 無法列出字幕檔，索引未建立：" + e.getMessage());
+        }
+    }
+
+    /**
+     * ✅ 重新索引一部影片（字幕已刪除時只移除舊索引）
+     */
+    public void reindex(String videoId) {
+        TranscriptStore.Transcript transcript;
+        try {
+            transcript = store.get(videoId);
+        } catch (IOException e) {
+            System.err.println("⚠️ 字幕讀取失敗，略過索引：" + videoId + "，" + e.getMessage());
+            return;
+        }
+
+        // 先在鎖外完成斷詞：詞 → 出現的句子索引
+        Map<String, int[]> termSentences = new HashMap<>();
+        int[] offsets = null;
+        if (transcript != null) {
+            List<String> sentences = transcript.getSentences();
+            offsets = sentenceOffsets(transcript.getText(), sentences);
+            Map<String, IntList> collected = new HashMap<>();
+            for (int i = 0; i < sentences.size(); i++) {
+                int sentence = i;
+                forEachTerm(sentences.get(i), true, term -> collected.computeIfAbsent(term, k -> new IntList()).addUnique(sentence));
+            }
+            collected.forEach((term, list) -> termSentences.put(term, list.toArray()));
+        }
+
+        lock.writeLock().lock();
+        try {
+            Integer old = docByVideo.remove(videoId);
+            if (old != null) {
+                docs.get(old).live = false;
+                deadDocs++;
+            }
+            if (transcript != null) {
+                int doc = docs.size();
+                docs.add(new Doc(videoId, offsets));
+                docByVideo.put(videoId, doc);
+                for (Map.Entry<String, int[]> e : termSentences.entrySet()) {
+                    int[] s = e.getValue();
+                    terms.computeIfAbsent(e.getKey(), k -> new Postings()).add(doc, s, s.length);
+                }
+            }
+            if (deadDocs > 100 && deadDocs > docByVideo.size()) compact();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // 移除已刪除的文件與其 posting，存活文件依原順序重新編號（posting list 維持遞增），並釋放多餘空間（需持有寫入鎖）
+    private void compact() {
+        int[] remap = new int[docs.size()]; // 舊文件編號 → 新編號（已刪除為 -1）
+        ArrayList<Doc> liveDocs = new ArrayList<>(docByVideo.size());
+        for (int i = 0; i < docs.size(); i++) {
+            Doc d = docs.get(i);
+            if (d.live) {
+                remap[i] = liveDocs.size();
+                liveDocs.add(d);
+            } else {
+                remap[i] = -1;
+            }
+        }
+
+        Iterator<Map.Entry<String, Postings>> it = terms.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<String, Postings> e = it.next();
+            PostingsReader r = new PostingsReader(e.getValue());
+            Postings kept = new Postings();
+            while (r.next()) {
+                if (remap[r.doc] >= 0) kept.add(remap[r.doc], r.sentences, r.count);
+            }
+            if (kept.docCount == 0) {
+                it.remove();
+            } else {
+                kept.trim();
+                e.setValue(kept);
+            }
+        }
+
+        docs.clear();
+        docs.addAll(liveDocs);
+        docs.trimToSize();
+        docByVideo.replaceAll((videoId, doc) -> remap[doc]);
+        deadDocs = 0;
+    }
+
+    /**
+     * ✅ 搜尋字幕
+     * @param query 查詢字串（中文以二字詞、英數以單字比對）
+     * @param limit 最多回傳幾部影片
+     * @return 依分數由高到低排序的影片與命中句子
+     */
+    public List<Hit> search(String query, int limit) {
+        List<String> queryTerms = new ArrayList<>(new LinkedHashSet<>(tokenize(query)));
+        if (queryTerms.isEmpty() || limit <= 0) return Collections.emptyList();
+
+        Map<Integer, double[]> scores = new HashMap<>();     // 文件 → 分數
+        Map<Integer, int[]> sentenceMatches = new HashMap<>(); // 文件 → 各句命中的詞數
+        List<Hit> hits = new ArrayList<>();
+
+        lock.readLock().lock();
+        try {
+            List<Postings> lists = new ArrayList<>();
+            for (String term : queryTerms) {
+                Postings p = terms.get(term);
+                if (p == null) return Collections.emptyList(); // 任一詞不存在就不可能全部符合
+                lists.add(p);
+            }
+            lists.sort(Comparator.comparingInt(p -> p.docCount)); // 從最稀有的詞開始篩選
+
+            int liveDocs = Math.max(1, docByVideo.size());
+            Set<Integer> candidates = null;
+            for (Postings p : lists) {
+                double idf = Math.log(1 + (double) liveDocs / p.docCount);
+                Set<Integer> matched = new HashSet<>();
+                PostingsReader r = new PostingsReader(p);
+                while (r.next()) {
+                    int doc = r.doc;
+                    if (!docs.get(doc).live || (candidates != null && !candidates.contains(doc))) continue;
+                    matched.add(doc);
+                    double tf = r.count;
+                    scores.computeIfAbsent(doc, k -> new double[1])[0] += idf * tf / (tf + 1.2); // TF 飽和，避免長字幕佔優勢
+                    int[] perSentence = sentenceMatches.computeIfAbsent(doc, k -> new int[docs.get(k).sentenceOffsets.length]);
+                    for (int i = 0; i < r.count; i++) perSentence[r.sentences[i]]++;
+                }
+                candidates = matched;
+                if (candidates.isEmpty()) return Collections.emptyList();
+            }
+
+            List<Integer> ranked = new ArrayList<>(candidates);
+            ranked.sort((a, b) -> Double.compare(scores.get(b)[0], scores.get(a)[0]));
+            for (int doc : ranked.subList(0, Math.min(limit, ranked.size()))) {
+                Doc d = docs.get(doc);
+                Hit hit = new Hit(d.videoId, scores.get(doc)[0]);
+                int[] perSentence = sentenceMatches.get(doc);
+                List<Integer> order = new ArrayList<>();
+                for (int i = 0; i < perSentence.length; i++) if (perSentence[i] > 0) order.add(i);
+                order.sort((a, b) -> perSentence[b] != perSentence[a] ? perSentence[b] - perSentence[a] : a - b); // 命中詞數多的句子優先
+                for (int i : order.subList(0, Math.min(MAX_SENTENCES_PER_VIDEO, order.size()))) {
+                    hit.sentences.add(new SentenceHit(i, d.sentenceOffsets[i], null));
+                }
+                hits.add(hit);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        // 句子內容從 TranscriptStore 取（通常已在記憶體中），不在鎖內讀檔
+        for (int h = 0; h < hits.size(); h++) {
+            Hit hit = hits.get(h);
+            try {
+                TranscriptStore.Transcript t = store.get(hit.videoId);
+                if (t == null) continue;
+                for (int i = 0; i < hit.sentences.size(); i++) {
+                    SentenceHit s = hit.sentences.get(i);
+                    if (s.index < t.getSentences().size()) {
+                        hit.sentences.set(i, new SentenceHit(s.index, s.offset, t.getSentences().get(s.index)));
+                    }
+                }
+            } catch (IOException e) {
+                System.err.println("⚠️ 無法讀取命中句子：" + hit.videoId + "，" + e.getMessage());
+            }
+        }
+        return hits;
+    }
+
+    // ==== 斷詞 ====
+
+    /**
+     * ✅ 將查詢切成詞彙：中日韓文字取相鄰二字（只有一個字時取單字），英數字取整個單字（小寫）
+     */
+    public static List<String> tokenize(String text) {
+        List<String> out = new ArrayList<>();
+        forEachTerm(text, false, out::add);
+        return out;
+    }
+
+    // withUnigrams 為 true 時（建立索引）每個中日韓文字也各自成詞
+    private static void forEachTerm(String text, boolean withUnigrams, Consumer<String> sink) {
+        int n = text.length();
+        int i = 0;
+        while (i < n) {
+            char c = text.charAt(i);
+            if (Character.isIdeographic(c)) {
+                int start = i;
+                while (i < n && Character.isIdeographic(text.charAt(i))) i++;
+                if (withUnigrams || i - start == 1) {
+                    for (int j = start; j < i; j++) sink.accept(String.valueOf(text.charAt(j)));
+                }
+                for (int j = start; j + 1 < i; j++) sink.accept(text.substring(j, j + 2));
+            } else if (Character.isLetterOrDigit(c)) {
+                int start = i;
+                while (i < n && Character.isLetterOrDigit(text.charAt(i)) && !Character.isIdeographic(text.charAt(i))) i++;
+                sink.accept(text.substring(start, i).toLowerCase(Locale.ROOT));
+            } else {
+                i++;
+            }
+        }
+    }
+
+    // 找出每句在全文中的起始位置（句子依序出現，從上一句之後開始找）
+    private static int[] sentenceOffsets(String text, List<String> sentences) {
+        int[] offsets = new int[sentences.size()];
+        int from = 0;
+        for (int i = 0; i < sentences.size(); i++) {
+            int pos = text.indexOf(sentences.get(i), from);
+            offsets[i] = pos >= 0 ? pos : from;
+            if (pos >= 0) from = pos + sentences.get(i).length();
+        }
+        return offsets;
+    }
+
+    // 簡單的遞增 int 清單（同一句中重複出現的詞只記一次）
+    private static class IntList {
+        int[] values = new int[4];
+        int size;
+
+        void addUnique(int v) {
+            if (size > 0 && values[size - 1] == v) return;
+            if (size == values.length) values = Arrays.copyOf(values, size * 2);
+            values[size++] = v;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+
+    // ==== 統計資訊 ====
+
+    public int getDocumentCount() {
+        lock.readLock().lock();
+        try {
+            return docByVideo.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int getTermCount() {
+        lock.readLock().lock();
+        try {
+            return terms.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public long getPostingsBytes() {
+        lock.readLock().lock();
+        try {
+            long total = 0;
+            for (Postings p : terms.values()) total += p.size;
+            return total;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+}
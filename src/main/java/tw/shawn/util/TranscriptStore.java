@@ -0,0 +1,313 @@
+package tw.shawn.util;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+
+/**
+ * TranscriptStore：字幕檔的記憶體快取（單例，由 DBCleanupListener 在啟動時指定字幕目錄）
+ * - 快取解碼後的全文、斷好的句子與內容雜湊，重複產題、切段時不必再讀檔或重新斷句
+ * - 總容量以位元組為上限，超過時依 LRU 淘汰
+ * - 以 WatchService 監看字幕目錄，檔案新增、修改或刪除時立即讓該影片的快取失效並通知監聽者
+ *   （監看無法啟動時改為每次比對檔案修改時間）
+ */
+public class TranscriptStore {
+
+    private static final String SUFFIX = ".txt";
+    private static final Pattern VIDEO_ID = Pattern.compile("[A-Za-z0-9_-]{1,64}"); // 避免以 ../ 讀取目錄外的檔案
+
+    private static volatile TranscriptStore instance;
+
+    /**
+     * Transcript：一部影片的字幕內容（不可變）
+     */
+    public static class Transcript {
+        private final String videoId;
+        private final String text;
+        private final List<String> sentences;
+        private final String contentHash;   // 原始位元組的 SHA-256
+        private final long lastModified;
+        private final long byteSize;        // 估計佔用的記憶體大小
+        private volatile Object[] chunkCache; // {maxTokens, 段落清單}
+
+        Transcript(String videoId, byte[] bytes, long lastModified) {
+            this.videoId = videoId;
+            this.text = new String(bytes, StandardCharsets.UTF_8);
+            this.sentences = Collections.unmodifiableList(TranscriptChunker.splitSentences(text));
+            this.contentHash = sha256(bytes);
+            this.lastModified = lastModified;
+            this.byteSize = 2L * text.length() * 2 + 64L * sentences.size(); // 全文與句子各一份 UTF-16
+        }
+
+        public String getVideoId() { return videoId; }
+        public String getText() { return text; }
+        public List<String> getSentences() { return sentences; }
+        public String getContentHash() { return contentHash; }
+        public long getLastModified() { return lastModified; }
+
+        /**
+         * ✅ 依 token 上限切段（記住上一次的結果，同樣的上限不會重新切段）
+         */
+        public List<String> getChunks(int maxTokens) {
+            Object[] cached = chunkCache;
+            if (cached != null && (Integer) cached[0] == maxTokens) {
+                @SuppressWarnings("unchecked")
+                List<String> chunks = (List<String>) cached[1];
+                return chunks;
+            }
+            List<String> chunks = Collections.unmodifiableList(TranscriptChunker.chunk(sentences, maxTokens));
+            chunkCache = new Object[]{maxTokens, chunks};
+            return chunks;
+        }
+    }
+
+    private final Path dir;
+    private final long maxBytes;
+    private final LinkedHashMap<String, Transcript> cache = new LinkedHashMap<>(16, 0.75f, true);
+    private final List<Consumer<String>> listeners = new CopyOnWriteArrayList<>();
+    private long totalBytes;
+    private long version; // 每次失效就遞增，避免讀檔期間檔案變動後把舊內容放回快取
+    private WatchService watchService;
+    private Thread watcher;
+
+    // ✅ 統計
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long invalidations;
+
+    TranscriptStore(Path dir, long maxBytes) {
+        this.dir = dir;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * ✅ 建立共用實例並開始監看字幕目錄（WebApp 啟動時呼叫）
+     * @param dir 字幕目錄；config 的 transcript.dir 可覆寫
+     */
+    public static synchronized void init(Path dir) {
+        if (instance != null) return;
+        String configured = AppConfig.get("transcript.dir", null);
+        TranscriptStore store = new TranscriptStore(configured != null ? Paths.get(configured) : dir,
+                AppConfig.getLong("transcript.cache.maxBytes", 32L * 1024 * 1024));
+        store.startWatcher();
+        instance = store;
+    }
+
+    public static TranscriptStore getInstance() {
+        TranscriptStore store = instance;
+        if (store == null) throw new IllegalStateException("TranscriptStore 尚未初始化");
+        return store;
+    }
+
+    /**
+     * ✅ 停止監看執行緒並清空快取（WebApp 關閉時呼叫）
+     */
+    public static synchronized void shutdown() {
+        if (instance == null) return;
+        instance.stopWatcher();
+        synchronized (instance) {
+            instance.cache.clear();
+            instance.totalBytes = 0;
+        }
+        instance = null;
+    }
+
+    /**
+     * ✅ 註冊字幕變動通知（參數為 videoId），例如讓搜尋索引跟著更新
+     */
+    public void addListener(Consumer<String> listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * ✅ 取得影片字幕（命中快取時不讀檔）
+     * @param videoId 影片 ID
+     * @return 字幕內容，檔案不存在或 ID 不合法時回傳 null
+     * @throws IOException 讀檔失敗
+     */
+    public Transcript get(String videoId) throws IOException {
+        if (videoId == null || !VIDEO_ID.matcher(videoId).matches()) return null;
+        Path file = dir.resolve(videoId + SUFFIX);
+
+        long versionAtRead;
+        synchronized (this) {
+            Transcript cached = cache.get(videoId);
+            if (cached != null && (watcher != null || isCurrent(cached, file))) {
+                hits++;
+                return cached;
+            }
+            misses++;
+            versionAtRead = version;
+        }
+
+        if (!Files.isRegularFile(file)) return null;
+        long lastModified = Files.getLastModifiedTime(file).toMillis();
+        Transcript loaded = new Transcript(videoId, Files.readAllBytes(file), lastModified);
+
+        synchronized (this) {
+            if (version != versionAtRead || loaded.byteSize > maxBytes) return loaded; // 讀檔期間有變動或單檔超過上限時不快取
+            Transcript old = cache.put(videoId, loaded);
+            if (old != null) totalBytes -= old.byteSize;
+            totalBytes += loaded.byteSize;
+            evictIfNeeded();
+        }
+        return loaded;
+    }
+
+    /**
+     * ✅ 列出字幕目錄中所有影片 ID（供建立索引等批次作業使用）
+     */
+    public List<String> listVideoIds() throws IOException {
+        List<String> ids = new ArrayList<>();
+        if (!Files.isDirectory(dir)) return ids;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, "*" + SUFFIX)) {
+            for (Path p : stream) {
+                String videoId = videoIdOf(p);
+                if (videoId != null) ids.add(videoId);
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * ✅ 讓某部影片的快取失效並通知監聽者
+     */
+    public void invalidate(String videoId) {
+        synchronized (this) {
+            Transcript old = cache.remove(videoId);
+            if (old != null) totalBytes -= old.byteSize;
+            version++;
+            invalidations++;
+        }
+        for (Consumer<String> l : listeners) {
+            try {
+                l.accept(videoId);
+            } catch (RuntimeException e) {
+                System.err.println("⚠️ 字幕變動通知失敗：" + e.getMessage());
+            }
+        }
+    }
+
+    // 超過容量上限時，從最久未使用的項目開始淘汰
+    private void evictIfNeeded() {
+        Iterator<Map.Entry<String, Transcript>> it = cache.entrySet().iterator();
+        while (totalBytes > maxBytes && it.hasNext()) {
+            totalBytes -= it.next().getValue().byteSize;
+            it.remove();
+            evictions++;
+        }
+    }
+
+    // 沒有監看執行緒時，以檔案修改時間判斷快取是否仍有效
+    private static boolean isCurrent(Transcript cached, Path file) {
+        try {
+            return Files.getLastModifiedTime(file).toMillis() == cached.lastModified;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    // ==== 目錄監看 ====
+
+    private void startWatcher() {
+        try {
+            if (!Files.isDirectory(dir)) {
+                System.err.println("⚠️ 字幕目錄不存在，改為比對檔案修改時間：" + dir);
+                return;
+            }
+            watchService = dir.getFileSystem().newWatchService();
+            dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+        } catch (IOException e) {
+            System.err.println("⚠️ 無法監看字幕目錄，改為比對檔案修改時間：" + e.getMessage());
+            watchService = null;
+            return;
+        }
+
+        Thread t = new Thread(this::watchLoop, "transcript-watcher");
+        t.setDaemon(true);
+        synchronized (this) {
+            watcher = t;
+        }
+        t.start();
+        System.out.println("✅ 開始監看字幕目錄：" + dir);
+    }
+
+    private void watchLoop() {
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        // 事件太多被丟棄：無法得知哪些檔案變動，全部重新載入
+                        List<String> all;
+                        synchronized (this) {
+                            all = new ArrayList<>(cache.keySet());
+                        }
+                        all.forEach(this::invalidate);
+                        continue;
+                    }
+                    String videoId = videoIdOf((Path) event.context());
+                    if (videoId != null) invalidate(videoId);
+                }
+                if (!key.reset()) {
+                    System.err.println("⚠️ 字幕目錄已無法監看，改為比對檔案修改時間");
+                    break;
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // 關閉中
+        }
+        synchronized (this) {
+            watcher = null;
+        }
+    }
+
+    private void stopWatcher() {
+        Thread t;
+        synchronized (this) {
+            t = watcher;
+            watcher = null;
+        }
+        if (t != null) t.interrupt();
+        if (watchService != null) {
+            try {
+                watchService.close();
+            } catch (IOException ignored) {
+                // 關閉失敗不影響停止
+            }
+        }
+    }
+
+    private static String videoIdOf(Path file) {
+        String name = file.getFileName().toString();
+        if (!name.endsWith(SUFFIX)) return null;
+        String videoId = name.substring(0, name.length() - SUFFIX.length());
+        return VIDEO_ID.matcher(videoId).matches() ? videoId : null;
+    }
+
+    private static String sha256(byte[] bytes) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(bytes));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public Path getDirectory() { return dir; }
+    public synchronized int size() { return cache.size(); }
+    public synchronized long getTotalBytes() { return totalBytes; }
+    public long getMaxBytes() { return maxBytes; }
+    public synchronized long getHits() { return hits; }
+    public synchronized long getMisses() { return misses; }
+    public synchronized long getEvictions() { return evictions; }
+    public synchronized long getInvalidations() { return invalidations; }
+    public synchronized boolean isWatching() { return watcher != null; }
+}
@@ -0,0 +1,251 @@
+package tw.shawn.util;
+
+import tw.shawn.dao.VideoDAO;
+import tw.shawn.model.Video;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * VideoCatalog：影片清單的記憶體快照（單例）
+ * - 快照載入時一次排好所有排序方式（標題長度、標題、發布時間新到舊、videoId），之後不可修改
+ * - 各排序最後都以 videoId 比較，順序固定，可用 VideoCursor 以二分搜尋直接定位下一頁
+ * - 讀取只需取得目前快照的參考；重新載入時建立新快照後整個替換，讀取端不會看到一半的資料，
+ *   重新載入期間其他讀取不會被擋住，繼續使用目前的快照
+ * - 新增影片後呼叫 invalidate()，下次讀取時重新載入；另外超過 catalog.video.maxAgeSeconds 也會重新載入，
+ *   以反映直接修改資料庫的情況
+ * 快照內的 Video 物件為共用資料，呼叫端只可讀取不可修改。
+ */
+public class VideoCatalog {
+
+    private static final VideoCatalog INSTANCE = new VideoCatalog(
+            AppConfig.getLong("catalog.video.maxAgeSeconds", 300) * 1000);
+
+    /**
+     * Snapshot：某一時間點的完整影片清單（不可修改）
+     */
+    public static class Snapshot {
+        private final long version;
+        private final long loadedAt;
+        private final List<Video> byTitleLength;   // LENGTH(title), title（原本 getAllVideos 的順序）
+        private final List<Video> byTitle;
+        private final List<Video> byPublishedDesc;
+        private final List<Video> byVideoId;
+        private final Map<String, Video> byYoutubeId;
+
+        Snapshot(long version, List<Video> videos) {
+            this.version = version;
+            this.loadedAt = System.currentTimeMillis();
+            this.byTitleLength = sortedCopy(videos, comparator(VideoCursor.SORT_DEFAULT));
+            this.byTitle = sortedCopy(videos, comparator(VideoCursor.SORT_TITLE));
+            this.byPublishedDesc = sortedCopy(videos, comparator(VideoCursor.SORT_PUBLISHED));
+            this.byVideoId = sortedCopy(videos, comparator(VideoCursor.SORT_VIDEO_ID));
+            Map<String, Video> ids = new HashMap<>();
+            for (Video v : videos) {
+                if (v.getVideoId() != null) ids.putIfAbsent(v.getVideoId(), v);
+            }
+            this.byYoutubeId = Collections.unmodifiableMap(ids);
+        }
+
+        /**
+         * ✅ 依排序參數取得清單（與 VideoDAO.getAllVideosSorted 相同：title、published、videoId，其他值視為 title）
+         * @param sortBy 排序欄位，null 或空白時為預設的標題長度排序
+         */
+        public List<Video> sorted(String sortBy) {
+            switch (VideoCursor.normalizeSort(sortBy)) {
+                case VideoCursor.SORT_DEFAULT: return byTitleLength;
+                case VideoCursor.SORT_PUBLISHED: return byPublishedDesc;
+                case VideoCursor.SORT_VIDEO_ID: return byVideoId;
+                default: return byTitle;
+            }
+        }
+
+        /**
+         * ✅ 取得一頁影片：以二分搜尋找到游標之後的位置，成本與頁數無關
+         * @param sortBy 排序欄位
+         * @param after 上一頁的游標（null 表示第一頁；排序需與 sortBy 相同）
+         * @param limit 每頁筆數
+         * @return 該頁影片（不可修改）
+         */
+        public List<Video> page(String sortBy, VideoCursor after, int limit) {
+            List<Video> list = sorted(sortBy);
+            int from = 0;
+            if (after != null) {
+                Comparator<Video> order = comparator(VideoCursor.normalizeSort(sortBy));
+                Video probe = after.toProbe();
+                int lo = 0, hi = list.size();
+                while (lo < hi) { // 第一個排在游標之後的位置
+                    int mid = (lo + hi) >>> 1;
+                    if (order.compare(list.get(mid), probe) <= 0) lo = mid + 1; else hi = mid;
+                }
+                from = lo;
+            }
+            return list.subList(from, Math.min(list.size(), from + Math.max(0, limit)));
+        }
+
+        /**
+         * ✅ 依 YouTube videoId 取得影片
+         */
+        public Video get(String videoId) {
+            return videoId == null ? null : byYoutubeId.get(videoId);
+        }
+
+        public int size() { return byTitleLength.size(); }
+        public long getVersion() { return version; }
+        public long getLoadedAt() { return loadedAt; }
+    }
+
+    // 與 MySQL 預設定序相近：不分大小寫，相同時再比原字串；NULL 排最前面
+    private static final Comparator<String> NULLS_FIRST =
+            Comparator.nullsFirst(String.CASE_INSENSITIVE_ORDER.thenComparing(Comparator.naturalOrder()));
+
+    private static final Comparator<Video> BY_VIDEO_ID = Comparator.comparing(Video::getVideoId, NULLS_FIRST);
+
+    /**
+     * ✅ 各排序方式的比較器（與 VideoDAO.getVideosPage 的 ORDER BY 相同，最後都以 videoId 比較）
+     * - 預設：標題的 UTF-8 位元組長度（同 MySQL LENGTH）、標題、videoId
+     * - title：標題、videoId
+     * - published：發布時間新到舊（NULL 排最後）、videoId 大到小
+     * - videoId：videoId
+     */
+    static Comparator<Video> comparator(String sortBy) {
+        switch (sortBy) {
+            case VideoCursor.SORT_DEFAULT:
+                return Comparator.comparingInt((Video v) -> titleBytes(v.getTitle()))
+                        .thenComparing(Video::getTitle, NULLS_FIRST)
+                        .thenComparing(BY_VIDEO_ID);
+            case VideoCursor.SORT_PUBLISHED:
+                return Comparator.comparing(Video::getPublishedAt, Comparator.nullsLast(Comparator.<String>reverseOrder()))
+                        .thenComparing(BY_VIDEO_ID.reversed());
+            case VideoCursor.SORT_VIDEO_ID:
+                return BY_VIDEO_ID;
+            default:
+                return Comparator.comparing(Video::getTitle, NULLS_FIRST).thenComparing(BY_VIDEO_ID);
+        }
+    }
+
+    // 標題的 UTF-8 位元組數（NULL 為 -1，排最前面）
+    private static int titleBytes(String title) {
+        if (title == null) return -1;
+        int bytes = 0;
+        for (int i = 0; i < title.length(); i++) {
+            char c = title.charAt(i);
+            if (c < 0x80) bytes += 1;
+            else if (c < 0x800) bytes += 2;
+            else if (Character.isHighSurrogate(c)) { bytes += 4; i++; }
+            else bytes += 3;
+        }
+        return bytes;
+    }
+
+    private static List<Video> sortedCopy(List<Video> videos, Comparator<Video> order) {
+        List<Video> copy = new ArrayList<>(videos);
+        copy.sort(order);
+        return Collections.unmodifiableList(copy);
+    }
+
+    private final long maxAgeMillis;
+    private volatile Snapshot snapshot;
+    private volatile boolean stale = true;
+    private final AtomicBoolean reloading = new AtomicBoolean(); // 是否已有執行緒在重新載入（其他讀取改用舊快照）
+    private long nextVersion = 1;
+    private long reloads;
+
+    VideoCatalog(long maxAgeMillis) {
+        this.maxAgeMillis = maxAgeMillis;
+    }
+
+    public static VideoCatalog getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * ✅ 取得目前的快照（已失效或過期時重新載入）
+     * 已有快照時只由一個執行緒重新載入，其他執行緒不等待、繼續使用目前的快照；
+     * 只有第一次載入（還沒有任何快照）時才會等待。重新載入失敗時沿用舊快照，下次讀取再試。
+     */
+    public Snapshot getSnapshot() throws SQLException {
+        Snapshot s = snapshot;
+        if (s != null && !stale && !expired(s)) return s;
+        if (s == null) {
+            synchronized (this) {
+                s = snapshot;
+                if (s != null) return s; // 其他執行緒已完成第一次載入
+                return reload();
+            }
+        }
+        if (!reloading.compareAndSet(false, true)) return s; // 其他執行緒正在重新載入
+        try {
+            synchronized (this) {
+                Snapshot current = snapshot;
+                if (!stale && !expired(current)) return current; // 其他執行緒（refresh）已重新載入
+                return reload();
+            }
+        } catch (SQLException e) {
+            System.err.println("⚠️ 影片清單重新載入失敗，沿用版本 " + s.getVersion() + " 的快照：" + e.getMessage());
+            return s;
+        } finally {
+            reloading.set(false);
+        }
+    }
+
+    /**
+     * ✅ 立即從資料庫重新載入並替換快照
+     */
+    public synchronized Snapshot refresh() throws SQLException {
+        return reload();
+    }
+
+    /**
+     * ✅ 標記快照失效（新增／更新影片後呼叫），下次讀取時重新載入
+     */
+    public void invalidate() {
+        stale = true;
+    }
+
+    // 呼叫端需持有鎖
+    private Snapshot reload() throws SQLException {
+        stale = false; // 先清除旗標：載入期間的 invalidate() 會讓下次讀取再載入一次
+        long start = System.currentTimeMillis();
+        List<Video> videos;
+        try (Connection conn = DBUtil.getConnection()) {
+            videos = new VideoDAO(conn).getAllVideos();
+        } catch (SQLException e) {
+            stale = true;
+            throw e;
+        }
+        Snapshot s = new Snapshot(nextVersion++, videos);
+        snapshot = s;
+        reloads++;
+        System.out.println("✅ 影片清單快照已更新：" + s.size() + " 部，版本 " + s.getVersion()
+                + "，耗時 " + (System.currentTimeMillis() - start) + " ms");
+        return s;
+    }
+
+    private boolean expired(Snapshot s) {
+        return maxAgeMillis > 0 && System.currentTimeMillis() - s.getLoadedAt() > maxAgeMillis;
+    }
+
+    /**
+     * ✅ 目前快照的版本號（尚未載入時為 0），每次替換快照都會增加
+     */
+    public long getVersion() {
+        Snapshot s = snapshot;
+        return s == null ? 0 : s.getVersion();
+    }
+
+    public int size() {
+        Snapshot s = snapshot;
+        return s == null ? 0 : s.size();
+    }
+
+    public synchronized long getReloads() {
+        return reloads;
+    }
+
+    public boolean isStale() {
+        return stale;
+    }
+}
@@ -0,0 +1,98 @@
+package tw.shawn.util;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import tw.shawn.model.Video;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * VideoCursor：影片清單分頁（keyset pagination）的游標
+ * 記錄上一頁最後一部影片在排序上的鍵值（標題、發布時間、videoId），下一頁從「排在它之後」的影片開始，
+ * 不使用 OFFSET，翻到第幾頁的成本都相同。videoId 唯一，作為所有排序的最後一個比較鍵。
+ * 對外以 base64url 字串傳遞，客戶端不需要解讀內容。
+ */
+public class VideoCursor {
+
+    // 支援的排序（與 VideoDAO.getAllVideosSorted 相同，空字串為預設的標題長度排序）
+    public static final String SORT_DEFAULT = "";
+    public static final String SORT_TITLE = "title";
+    public static final String SORT_PUBLISHED = "published";
+    public static final String SORT_VIDEO_ID = "videoId";
+
+    public final String sortBy;
+    public final String title;
+    public final String publishedAt;
+    public final String videoId;
+
+    public VideoCursor(String sortBy, String title, String publishedAt, String videoId) {
+        this.sortBy = normalizeSort(sortBy);
+        this.title = title;
+        this.publishedAt = publishedAt;
+        this.videoId = videoId;
+    }
+
+    /**
+     * ✅ 以某部影片（上一頁的最後一筆）建立游標
+     */
+    public static VideoCursor after(String sortBy, Video last) {
+        return new VideoCursor(sortBy, last.getTitle(), last.getPublishedAt(), last.getVideoId());
+    }
+
+    /**
+     * ✅ 排序參數正規化：null／空白為預設排序，未知值與原本一樣視為 title
+     */
+    public static String normalizeSort(String sortBy) {
+        if (sortBy == null || sortBy.isBlank()) return SORT_DEFAULT;
+        switch (sortBy) {
+            case SORT_PUBLISHED: return SORT_PUBLISHED;
+            case SORT_VIDEO_ID: return SORT_VIDEO_ID;
+            default: return SORT_TITLE;
+        }
+    }
+
+    /**
+     * ✅ 轉為比較用的 Video（只有排序鍵欄位）
+     */
+    public Video toProbe() {
+        Video v = new Video();
+        v.setTitle(title);
+        v.setPublishedAt(publishedAt);
+        v.setVideoId(videoId);
+        return v;
+    }
+
+    /**
+     * ✅ 編碼為 base64url 字串
+     */
+    public String encode() {
+        JsonObject json = new JsonObject();
+        json.addProperty("s", sortBy);
+        json.addProperty("v", videoId);
+        if (title != null) json.addProperty("t", title);
+        if (publishedAt != null) json.addProperty("p", publishedAt);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(json.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * ✅ 解碼游標字串
+     * @throws IllegalArgumentException 格式錯誤
+     */
+    public static VideoCursor decode(String token) {
+        try {
+            String text = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            JsonObject json = JsonParser.parseString(text).getAsJsonObject();
+            if (!json.has("v")) throw new IllegalArgumentException("游標缺少 videoId");
+            return new VideoCursor(
+                    json.has("s") ? json.get("s").getAsString() : SORT_DEFAULT,
+                    json.has("t") ? json.get("t").getAsString() : null,
+                    json.has("p") ? json.get("p").getAsString() : null,
+                    json.get("v").getAsString());
+        } catch (IllegalArgumentException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("游標格式錯誤", e);
+        }
+    }
+}
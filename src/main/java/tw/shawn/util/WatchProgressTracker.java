@@ -0,0 +1,198 @@
+package tw.shawn.util;
+
+import tw.shawn.dao.WatchProgressDAO;
+import tw.shawn.model.WatchProgress;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * WatchProgressTracker：觀看進度的寫入合併（單例）
+ * - 播放器每隔幾秒送一次心跳，只更新記憶體：pending 以 (userId, videoId) 為鍵，同一組只保留最新位置
+ * - 背景執行緒每 watch.flushSeconds（預設 5 秒）把 pending 整批取出，以一句批次 INSERT … ON DUPLICATE KEY UPDATE 寫入，
+ *   不論期間收到幾次心跳，每組 (userId, videoId) 每個週期最多寫一次
+ * - 讀取續播位置先看記憶體（pending 與最近位置的 LRU，容量 watch.cache.maxEntries），未命中才查資料庫
+ * - 寫入失敗時放回 pending 下個週期重試（期間有新心跳則以新的為準）；違反外鍵等資料錯誤的列直接捨棄
+ * 關閉時 shutdown() 會停止排程並把剩餘的進度寫入資料庫，最多遺失一個週期內的心跳（程序異常終止時）。
+ */
+public class WatchProgressTracker {
+
+    private static WatchProgressTracker instance;
+
+    private final ConcurrentHashMap<Long, WatchProgress> pending = new ConcurrentHashMap<>(); // 尚未寫入的最新位置
+    private final LruCache<Long, Integer> positions;                                          // 最近已知的位置
+    private final ScheduledExecutorService flusher;
+
+    // ✅ 統計用計數器
+    private final AtomicLong heartbeats = new AtomicLong();
+    private final AtomicLong flushes = new AtomicLong();
+    private final AtomicLong rowsWritten = new AtomicLong();
+    private final AtomicLong rowsDropped = new AtomicLong();
+
+    WatchProgressTracker(long flushIntervalMillis, int maxCachedPositions) {
+        this.positions = new LruCache<>(maxCachedPositions);
+        this.flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "watch-progress-flusher");
+            t.setDaemon(true);
+            return t;
+        });
+        flusher.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * ✅ 取得單例（第一次呼叫時啟動背景寫入執行緒）
+     */
+    public static synchronized WatchProgressTracker getInstance() {
+        if (instance == null) {
+            instance = new WatchProgressTracker(
+                    Math.max(1, AppConfig.getLong("watch.flushSeconds", 5)) * 1000,
+                    AppConfig.getInt("watch.cache.maxEntries", 50000));
+        }
+        return instance;
+    }
+
+    /**
+     * ✅ 停止背景寫入並把剩餘的進度寫入資料庫（WebApp 關閉時、連線池關閉前呼叫）
+     */
+    public static synchronized void shutdown() {
+        if (instance == null) return;
+        instance.flusher.shutdown();
+        try {
+            instance.flusher.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        instance.flushQuietly();
+        instance = null;
+    }
+
+    /**
+     * ✅ 記錄一次心跳（只更新記憶體，不存取資料庫）
+     * @param userId 使用者 ID
+     * @param videoId 影片主鍵 ID
+     * @param currentTimeSec 目前播放位置（秒）
+     */
+    public void heartbeat(int userId, int videoId, int currentTimeSec) {
+        long key = key(userId, videoId);
+        pending.put(key, new WatchProgress(userId, videoId, currentTimeSec));
+        positions.put(key, currentTimeSec);
+        heartbeats.incrementAndGet();
+    }
+
+    /**
+     * ✅ 取得續播位置（記憶體優先，未命中才查資料庫）
+     * @return 秒數，沒有紀錄時為 0
+     */
+    public int getPosition(int userId, int videoId) throws SQLException {
+        long key = key(userId, videoId);
+        WatchProgress p = pending.get(key);
+        if (p != null) return p.getCurrentTimeSec();
+        Integer cached = positions.get(key);
+        if (cached != null) return cached;
+
+        Integer stored;
+        try (Connection conn = DBUtil.getConnection()) {
+            stored = new WatchProgressDAO(conn).getCurrentTimeSec(userId, videoId);
+        }
+        int position = stored != null ? stored : 0;
+        Integer newer = positions.putIfAbsent(key, position); // 查詢期間收到的心跳優先
+        return newer != null ? newer : position;
+    }
+
+    /**
+     * ✅ 立即把目前累積的進度寫入資料庫
+     * @return 寫入的筆數
+     */
+    public synchronized int flush() throws SQLException {
+        if (pending.isEmpty()) return 0;
+        List<WatchProgress> batch = new ArrayList<>(pending.size());
+        for (Long key : pending.keySet()) {
+            WatchProgress p = pending.remove(key); // 取出後才到的心跳留給下個週期
+            if (p != null) batch.add(p);
+        }
+        if (batch.isEmpty()) return 0;
+        // 固定寫入順序，多個節點同時寫入時鎖定順序一致，避免死結
+        batch.sort(Comparator.comparingInt(WatchProgress::getUserId).thenComparingInt(WatchProgress::getVideoId));
+        flushes.incrementAndGet();
+
+        try (Connection conn = DBUtil.getConnection()) {
+            WatchProgressDAO dao = new WatchProgressDAO(conn);
+            try {
+                int written = dao.upsertBatch(batch);
+                rowsWritten.addAndGet(written);
+                return written;
+            } catch (SQLException e) {
+                if (!isDataError(e)) throw requeue(batch, 0, e);
+                // 整批因資料錯誤失敗（例如不存在的使用者）：逐筆重寫，只捨棄有問題的列
+                int written = 0;
+                for (int i = 0; i < batch.size(); i++) {
+                    WatchProgress p = batch.get(i);
+                    try {
+                        dao.upsert(p);
+                        written++;
+                    } catch (SQLException rowError) {
+                        if (!isDataError(rowError)) throw requeue(batch, i, rowError);
+                        rowsDropped.incrementAndGet();
+                        System.err.println("⚠️ 捨棄無法寫入的觀看進度（userId=" + p.getUserId()
+                                + ", videoId=" + p.getVideoId() + "）：" + rowError.getMessage());
+                    }
+                }
+                rowsWritten.addAndGet(written);
+                return written;
+            }
+        } catch (SQLException e) {
+            if (!(e instanceof RequeuedException)) requeue(batch, 0, e);
+            throw e;
+        }
+    }
+
+    // 把 from 之後尚未寫入的列放回 pending（期間已有新心跳的保留新的）
+    private RequeuedException requeue(List<WatchProgress> batch, int from, SQLException cause) {
+        for (int i = from; i < batch.size(); i++) {
+            WatchProgress p = batch.get(i);
+            pending.putIfAbsent(key(p.getUserId(), p.getVideoId()), p);
+        }
+        return new RequeuedException(cause);
+    }
+
+    // 已放回 pending 的寫入失敗，外層不需再放一次
+    private static class RequeuedException extends SQLException {
+        RequeuedException(SQLException cause) {
+            super(cause.getMessage(), cause.getSQLState(), cause.getErrorCode(), cause);
+        }
+    }
+
+    // SQLState 23xxx：違反唯一鍵／外鍵等完整性限制，重試也不會成功
+    private static boolean isDataError(SQLException e) {
+        String state = e.getSQLState();
+        return state != null && state.startsWith("23");
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (SQLException e) {
+            System.err.println("⚠️ 觀看進度寫入失敗，下個週期重試：" + e.getMessage());
+        } catch (RuntimeException e) {
+            System.err.println("⚠️ 觀看進度寫入發生錯誤：" + e.getMessage());
+        }
+    }
+
+    private static long key(int userId, int videoId) {
+        return ((long) userId << 32) | (videoId & 0xFFFFFFFFL);
+    }
+
+    public int getPendingCount() { return pending.size(); }
+    public long getHeartbeats() { return heartbeats.get(); }
+    public long getFlushes() { return flushes.get(); }
+    public long getRowsWritten() { return rowsWritten.get(); }
+    public long getRowsDropped() { return rowsDropped.get(); }
+}
@@ -0,0 +1,128 @@
+package tw.shawn.util;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+
+/**
+ * YouTubeBackfillJob：為 V004 之前寫入的影片回填 yt_* 欄位（一次性工作，可中斷後續跑）
+ * - 只處理 yt_parsed = 0 的資料，依主鍵 id 以 keyset 方式分批讀取，每批一個交易
+ * - 進度記錄在資料列本身（yt_parsed = 1），中斷後重新執行會從尚未處理的資料繼續，已處理的不會重做
+ * - 無法辨識的網址同樣標記為已解析（yt_video_id 為 NULL），不會每次啟動都重試
+ * 預設在 WebApp 啟動時於背景執行（video.backfill.onStartup），也可在命令列執行：
+ * java tw.shawn.util.YouTubeBackfillJob [每批筆數]
+ */
+public class YouTubeBackfillJob {
+
+    private static Thread worker;
+    private static volatile YouTubeBackfillJob running;
+
+    private final int batchSize;
+    private volatile boolean stopped;
+
+    public YouTubeBackfillJob(int batchSize) {
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    /**
+     * ✅ 在背景執行緒執行回填（WebApp 啟動時呼叫）
+     */
+    public static synchronized void startInBackground() {
+        if (worker != null) return;
+        YouTubeBackfillJob job = new YouTubeBackfillJob(AppConfig.getInt("video.backfill.batchSize", 500));
+        running = job;
+        worker = new Thread(() -> {
+            try {
+                int updated = job.run();
+                if (updated > 0) System.out.println("✅ YouTube 欄位回填完成：" + updated + " 筆");
+            } catch (SQLException e) {
+                System.err.println("⚠️ YouTube 欄位回填中斷（下次啟動會繼續）：" + e.getMessage());
+            }
+        }, "youtube-backfill");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * ✅ 停止背景回填（已提交的批次保留）
+     */
+    public static synchronized void shutdown() {
+        YouTubeBackfillJob job = running;
+        if (job != null) job.stop();
+        if (worker != null) {
+            try {
+                worker.join(5000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            worker = null;
+        }
+        running = null;
+    }
+
+    public void stop() {
+        stopped = true;
+    }
+
+    /**
+     * ✅ 回填所有尚未解析的影片
+     * @return 本次更新的筆數
+     */
+    public int run() throws SQLException {
+        String selectSql = "SELECT id, video_id, youtube_url FROM video WHERE yt_parsed = 0 AND id > ? ORDER BY id LIMIT ?";
+        String updateSql = "UPDATE video SET yt_video_id = ?, yt_playlist_id = ?, yt_start_sec = ?, yt_parsed = 1 WHERE id = ?";
+        int total = 0;
+        String lastId = "";
+        try (Connection conn = DBUtil.getConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement select = conn.prepareStatement(selectSql);
+                 PreparedStatement update = conn.prepareStatement(updateSql)) {
+                while (!stopped) {
+                    int rows = 0;
+                    select.setString(1, lastId);
+                    select.setInt(2, batchSize);
+                    try (ResultSet rs = select.executeQuery()) {
+                        while (rs.next()) {
+                            lastId = rs.getString("id");
+                            YouTubeRef ref = YouTubeRef.of(rs.getString("video_id"), rs.getString("youtube_url"));
+                            update.setString(1, ref.getVideoId());
+                            update.setString(2, ref.getPlaylistId());
+                            if (ref.getStartSeconds() != null) update.setInt(3, ref.getStartSeconds());
+                            else update.setNull(3, Types.INTEGER);
+                            update.setString(4, lastId);
+                            update.addBatch();
+                            rows++;
+                        }
+                    }
+                    if (rows == 0) break;
+                    update.executeBatch();
+                    conn.commit(); // 每批一個交易，中斷時已提交的批次保留
+                    total += rows;
+                    if (rows < batchSize) break;
+                }
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+        return total;
+    }
+
+    /**
+     * ✅ 命令列入口：回填所有尚未解析的影片
+     */
+    public static void main(String[] args) throws Exception {
+        int batchSize = args.length > 0 ? Integer.parseInt(args[0]) : AppConfig.getInt("video.backfill.batchSize", 500);
+        try {
+            long start = System.currentTimeMillis();
+            int updated = new YouTubeBackfillJob(batchSize).run();
+            System.out.println("✅ YouTube 欄位回填完成：" + updated + " 筆，耗時 " + (System.currentTimeMillis() - start) + " ms");
+        } finally {
+            DBUtil.shutdownPool();
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package tw.shawn.util;
+
+/**
+ * YouTubeRef：從 YouTube 網址或 ID 解析出的標準資訊（不可修改）
+ * - videoId：11 碼影片 ID（純播放清單網址或無法辨識時為 null）
+ * - playlistId：播放清單 ID（list=，沒有時為 null）
+ * - startSeconds：起始秒數（t= 或 start=，支援 90、90s、1m30s、1h2m3s，沒有時為 null）
+ * 支援格式：watch?v=、youtu.be/、embed/、shorts/、live/、v/、playlist?list=、embed/videoseries?list=，
+ * 以及直接給 11 碼 ID。只做單次字串掃描，不使用正規表示式。
+ * 取代 GetVideoServlet／GetLatestVideoServlet 各自的 extractYouTubeId，寫入影片時解析一次並存進 video 表。
+ */
+public final class YouTubeRef {
+
+    public static final int VIDEO_ID_LENGTH = 11;
+    private static final int MAX_PLAYLIST_ID_LENGTH = 64; // 對應 yt_playlist_id 欄位長度
+
+    private final String videoId;
+    private final String playlistId;
+    private final Integer startSeconds;
+
+    private YouTubeRef(String videoId, String playlistId, Integer startSeconds) {
+        this.videoId = videoId;
+        this.playlistId = playlistId;
+        this.startSeconds = startSeconds;
+    }
+
+    public String getVideoId() { return videoId; }
+    public String getPlaylistId() { return playlistId; }
+    public Integer getStartSeconds() { return startSeconds; }
+
+    /**
+     * ✅ 是否為純播放清單（有 list= 但沒有影片 ID）
+     */
+    public boolean isPlaylistOnly() {
+        return videoId == null && playlistId != null;
+    }
+
+    /**
+     * ✅ 解析 YouTube 網址或 ID
+     * @param input 網址或 11 碼 ID（可為 null）
+     * @return 解析結果（一定不為 null，欄位可能皆為 null）
+     */
+    public static YouTubeRef parse(String input) {
+        if (input == null) return new YouTubeRef(null, null, null);
+        String s = input.trim();
+        if (isVideoId(s)) return new YouTubeRef(s, null, null);
+
+        // 拆出 path、query、fragment（去掉 scheme 與 host 前的部分）
+        int schemeEnd = s.indexOf("://");
+        String rest = schemeEnd >= 0 ? s.substring(schemeEnd + 3) : s;
+        int hashIdx = rest.indexOf('#');
+        String fragment = hashIdx >= 0 ? rest.substring(hashIdx + 1) : "";
+        if (hashIdx >= 0) rest = rest.substring(0, hashIdx);
+        int queryIdx = rest.indexOf('?');
+        String query = queryIdx >= 0 ? rest.substring(queryIdx + 1) : "";
+        String hostAndPath = queryIdx >= 0 ? rest.substring(0, queryIdx) : rest;
+        int slash = hostAndPath.indexOf('/');
+        String host = (slash >= 0 ? hostAndPath.substring(0, slash) : hostAndPath).toLowerCase();
+        String path = slash >= 0 ? hostAndPath.substring(slash) : "";
+
+        String videoId = null;
+        if (host.endsWith("youtu.be")) {
+            videoId = firstSegment(path, 1);
+        } else {
+            for (String prefix : new String[]{"/embed/", "/shorts/", "/live/", "/v/", "/e/"}) {
+                if (path.startsWith(prefix)) {
+                    videoId = firstSegment(path, prefix.length());
+                    break;
+                }
+            }
+        }
+        if (!isVideoId(videoId)) videoId = null;
+
+        String v = param(query, "v");
+        if (videoId == null && isVideoId(v)) videoId = v;
+
+        String list = param(query, "list");
+        if (list != null && (list.isEmpty() || list.length() > MAX_PLAYLIST_ID_LENGTH)) list = null;
+
+        Integer start = parseTime(param(query, "t"));
+        if (start == null) start = parseTime(param(query, "start"));
+        if (start == null) start = parseTime(param(fragment, "t"));
+
+        return new YouTubeRef(videoId, list, start);
+    }
+
+    /**
+     * ✅ 依序解析多個來源（例如 video_id 欄位與 youtube_url 欄位），每個欄位取第一個解析得到的值
+     */
+    public static YouTubeRef of(String... inputs) {
+        String videoId = null;
+        String playlistId = null;
+        Integer start = null;
+        for (String input : inputs) {
+            YouTubeRef ref = parse(input);
+            if (videoId == null) videoId = ref.videoId;
+            if (playlistId == null) playlistId = ref.playlistId;
+            if (start == null) start = ref.startSeconds;
+        }
+        return new YouTubeRef(videoId, playlistId, start);
+    }
+
+    /**
+     * ✅ 是否為合法的 11 碼影片 ID（英數字、-、_）
+     */
+    public static boolean isVideoId(String s) {
+        if (s == null || s.length() != VIDEO_ID_LENGTH) return false;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            boolean ok = (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '-' || c == '_';
+            if (!ok) return false;
+        }
+        return true;
+    }
+
+    // path 從 from 開始到下一個 / 為止
+    private static String firstSegment(String path, int from) {
+        if (from > path.length()) return null;
+        int end = path.indexOf('/', from);
+        return end >= 0 ? path.substring(from, end) : path.substring(from);
+    }
+
+    // 取出查詢字串中第一個 name= 的值（不存在時回傳 null）
+    private static String param(String query, String name) {
+        int i = 0;
+        while (i < query.length()) {
+            int amp = query.indexOf('&', i);
+            int end = amp >= 0 ? amp : query.length();
+            int eq = query.indexOf('=', i);
+            if (eq > i && eq < end && query.regionMatches(i, name, 0, name.length()) && eq - i == name.length()) {
+                return query.substring(eq + 1, end);
+            }
+            i = end + 1;
+        }
+        return null;
+    }
+
+    // 解析 90、90s、1m30s、1h2m3s（無法解析時回傳 null）
+    private static Integer parseTime(String t) {
+        if (t == null || t.isEmpty()) return null;
+        long total = 0;
+        long current = 0;
+        boolean digits = false;
+        for (int i = 0; i < t.length(); i++) {
+            char c = t.charAt(i);
+            if (c >= '0' && c <= '9') {
+                current = current * 10 + (c - '0');
+                digits = true;
+                if (current > Integer.MAX_VALUE) return null;
+            } else if (digits && (c == 'h' || c == 'm' || c == 's')) {
+                total += current * (c == 'h' ? 3600 : c == 'm' ? 60 : 1);
+                current = 0;
+                digits = false;
+            } else {
+                return null;
+            }
+        }
+        total += current; // 沒有單位的數字視為秒
+        return total > Integer.MAX_VALUE ? null : (int) total;
+    }
+
+    @Override
+    public String toString() {
+        return "YouTubeRef[videoId=" + videoId + ", playlistId=" + playlistId + ", startSeconds=" + startSeconds + "]";
+    }
+}
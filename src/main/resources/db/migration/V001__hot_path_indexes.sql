@@ -0,0 +1,9 @@
+-- V001：熱門查詢路徑的複合索引
+-- AnswerDAO.getAnswersByUser / deleteAnswersByUser：WHERE user_id = ? AND video_id = ? ORDER BY id
+CREATE INDEX idx_answer_user_video_id ON answer (user_id, video_id, id);
+
+-- QuizDAO.getQuizzesByVideoIdAndSource：WHERE video_id = ? AND source = ? ORDER BY id
+CREATE INDEX idx_quiz_video_source_id ON quiz (video_id, source, id);
+
+-- QuizResultDAO.getLatestQuizResult：WHERE user_id = ? AND video_id = ? ORDER BY submitted_at DESC
+CREATE INDEX idx_quiz_results_user_video_time ON quiz_results (user_id, video_id, submitted_at);
@@ -0,0 +1,25 @@
+-- V002：題目內容雜湊，用於匯入／產題時的重複判斷（取代逐筆 SELECT COUNT(*) WHERE question = ?）
+-- content_hash = SHA-256(正規化題幹 + 0x01 + 正規化選項1..4)，正規化 = 去除空白（含全形空白、換行、Tab）後轉小寫
+-- 計算方式需與 QuizDAO.contentHash 一致
+ALTER TABLE quiz ADD COLUMN content_hash CHAR(64) NULL;
+
+-- 回填既有題目：相同內容只有最早的一筆寫入雜湊，其餘保留 NULL，避免建立唯一索引時衝突
+UPDATE quiz q
+JOIN (
+    SELECT MIN(id) AS id
+    FROM quiz
+    GROUP BY SHA2(CONCAT_WS(CHAR(1),
+        LOWER(REPLACE(REPLACE(REPLACE(REPLACE(REPLACE(COALESCE(question, ''), ' ', ''), '　', ''), CHAR(9), ''), CHAR(10), ''), CHAR(13), '')),
+        LOWER(REPLACE(REPLACE(REPLACE(REPLACE(REPLACE(COALESCE(option1, ''), ' ', ''), '　', ''), CHAR(9), ''), CHAR(10), ''), CHAR(13), '')),
+        LOWER(REPLACE(REPLACE(REPLACE(REPLACE(REPLACE(COALESCE(option2, ''), ' ', ''), '　', ''), CHAR(9), ''), CHAR(10), ''), CHAR(13), '')),
+        LOWER(REPLACE(REPLACE(REPLACE(REPLACE(REPLACE(COALESCE(option3, ''), ' ', ''), '　', ''), CHAR(9), ''), CHAR(10), ''), CHAR(13), '')),
+        LOWER(REPLACE(REPLACE(REPLACE(REPLACE(REPLACE(COALESCE(option4, ''), ' ', ''), '　', ''), CHAR(9), ''), CHAR(10), ''), CHAR(13), ''))), 256)
+) first_rows ON q.id = first_rows.id
+SET q.content_hash = SHA2(CONCAT_WS(CHAR(1),
+        LOWER(REPLACE(REPLACE(REPLACE(REPLACE(REPLACE(COALESCE(q.question, ''), ' ', ''), '　', ''), CHAR(9), ''), CHAR(10), ''), CHAR(13), '')),
+        LOWER(REPLACE(REPLACE(REPLACE(REPLACE(REPLACE(COALESCE(q.option1, ''), ' ', ''), '　', ''), CHAR(9), ''), CHAR(10), ''), CHAR(13), '')),
+        LOWER(REPLACE(REPLACE(REPLACE(REPLACE(REPLACE(COALESCE(q.option2, ''), ' ', ''), '　', ''), CHAR(9), ''), CHAR(10), ''), CHAR(13), '')),
+        LOWER(REPLACE(REPLACE(REPLACE(REPLACE(REPLACE(COALESCE(q.option3, ''), ' ', ''), '　', ''), CHAR(9), ''), CHAR(10), ''), CHAR(13), '')),
+        LOWER(REPLACE(REPLACE(REPLACE(REPLACE(REPLACE(COALESCE(q.option4, ''), ' ', ''), '　', ''), CHAR(9), ''), CHAR(10), ''), CHAR(13), ''))), 256);
+
+CREATE UNIQUE INDEX uk_quiz_content_hash ON quiz (content_hash);
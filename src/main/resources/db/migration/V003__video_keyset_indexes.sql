@@ -0,0 +1,4 @@
+-- V003：/api/videoList 分頁（keyset pagination）使用的索引
+-- VideoDAO.getVideosPage（published）：ORDER BY published_at DESC, video_id DESC，WHERE 從上一頁最後一筆之後開始
+CREATE INDEX idx_video_published_vid ON video (published_at, video_id);
+-- videoId 排序直接使用既有的 video_id 唯一索引；title 為 TEXT 欄位無法以索引排序，預設仍由 VideoCatalog 快照提供
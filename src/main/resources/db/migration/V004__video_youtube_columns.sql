@@ -0,0 +1,6 @@
+-- V004：寫入影片時解析好的 YouTube 標準資訊（YouTubeRef），讀取端直接讀欄位，不再每次解析網址
+-- yt_parsed = 1 表示已解析（無法辨識的網址也會標記，避免回填工作重複處理）；既有資料由 YouTubeBackfillJob 分批回填
+ALTER TABLE video ADD COLUMN yt_video_id CHAR(11) NULL;
+ALTER TABLE video ADD COLUMN yt_playlist_id VARCHAR(64) NULL;
+ALTER TABLE video ADD COLUMN yt_start_sec INT NULL;
+ALTER TABLE video ADD COLUMN yt_parsed TINYINT(1) NOT NULL DEFAULT 0;
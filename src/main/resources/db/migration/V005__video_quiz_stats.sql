@@ -0,0 +1,20 @@
+-- V005：每部影片的測驗統計彙總（由 SubmitAnswerServlet 在作答交易內增量更新，QuizStatsRebuilder 可從歷史重建）
+-- source = '*' 為所有來源合計（與 quiz_results 一致），其餘為各題目來源（local、gpt，小寫）
+CREATE TABLE IF NOT EXISTS video_quiz_stats (
+    video_id VARCHAR(100) NOT NULL,
+    source VARCHAR(10) NOT NULL,
+    attempts INT NOT NULL DEFAULT 0,
+    total_questions BIGINT NOT NULL DEFAULT 0,
+    total_correct BIGINT NOT NULL DEFAULT 0,
+    learners INT NOT NULL DEFAULT 0,
+    updated_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+    PRIMARY KEY (video_id, source)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_general_ci;
+
+-- 已作答過的使用者（INSERT IGNORE 成功代表第一次作答，learners 才加一，不需 COUNT(DISTINCT) 掃描）
+CREATE TABLE IF NOT EXISTS video_quiz_learner (
+    video_id VARCHAR(100) NOT NULL,
+    source VARCHAR(10) NOT NULL,
+    user_id INT NOT NULL,
+    PRIMARY KEY (video_id, source, user_id)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_general_ci;
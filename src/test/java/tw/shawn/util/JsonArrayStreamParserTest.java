@@ -0,0 +1,88 @@
+package tw.shawn.util;
+
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * JsonArrayStreamParserTest：模型輸出的各種包裝方式（說明文字、缺少外層陣列、被截斷）都能切出題目
+ */
+class JsonArrayStreamParserTest {
+
+    private static final String ITEMS = "{\"question\":\"Q1\",\"options\":[\"a\",\"b\"],\"answer\":\"a\"},"
+            + "{\"question\":\"Q2 [註]\",\"options\":[\"c\",\"d\"],\"answer\":\"d\"}";
+
+    @Test
+    void extractsPlainArray() {
+        JsonArrayStreamParser.Extraction r = JsonArrayStreamParser.extract("[" + ITEMS + "]");
+        assertEquals(2, r.items.size());
+        assertEquals("Q2 [註]", r.items.get(1).getString("question"));
+        assertTrue(r.errors.isEmpty());
+    }
+
+    @Test
+    void skipsBracketsInPreamble() {
+        String text = "以下是題目 [JSON]，共 2 題[1]：\n```json\n[\n  " + ITEMS + "\n]\n```\n說明 [完]";
+        JsonArrayStreamParser.Extraction r = JsonArrayStreamParser.extract(text);
+        assertEquals(2, r.items.size());
+        assertEquals("Q1", r.items.get(0).getString("question"));
+        assertTrue(r.errors.isEmpty());
+    }
+
+    @Test
+    void preambleBracketSplitAcrossFeeds() throws Exception {
+        String text = "參考 [ 1 ] 之後：[ \n" + ITEMS + "]";
+        List<String> objects = new ArrayList<>();
+        JsonArrayStreamParser parser = new JsonArrayStreamParser(objects::add);
+        for (int i = 0; i < text.length(); i++) {
+            parser.feed(text.subSequence(i, i + 1)); // 逐字餵入，模擬串流切在任意位置
+        }
+        assertEquals(2, objects.size());
+        assertTrue(parser.isFinished());
+        assertFalse(parser.hasPartialObject());
+    }
+
+    @Test
+    void emptyArrayFinishesWithoutItems() {
+        JsonArrayStreamParser.Extraction r = JsonArrayStreamParser.extract("沒有題目：[ ]");
+        assertTrue(r.items.isEmpty());
+        assertTrue(r.errors.isEmpty());
+    }
+
+    @Test
+    void extractsObjectsWithoutOuterArray() {
+        JsonArrayStreamParser.Extraction r = JsonArrayStreamParser.extract("題目如下：\n" + ITEMS.replace("},{", "}\n{"));
+        assertEquals(2, r.items.size());
+        assertTrue(r.errors.isEmpty());
+    }
+
+    @Test
+    void reportsTruncatedTail() {
+        String text = "[" + ITEMS + ",{\"question\":\"Q3\",\"options\":[\"e\",";
+        JsonArrayStreamParser.Extraction r = JsonArrayStreamParser.extract(text);
+        assertEquals(2, r.items.size());
+        assertEquals(List.of("第 3 項不完整（輸出被截斷）"), r.errors);
+    }
+
+    @Test
+    void malformedItemDoesNotAffectOthers() {
+        String text = "[{\"question\":\"Q1\",\"options\":[\"a\",\"b\"}," + ITEMS + "]";
+        JsonArrayStreamParser.Extraction r = JsonArrayStreamParser.extract(text);
+        assertEquals(1, r.errors.size());
+        assertTrue(r.errors.get(0).startsWith("第 1 項格式錯誤"));
+        assertFalse(r.items.isEmpty());
+    }
+
+    @Test
+    void validatorRejectsItemsWithPosition() {
+        JsonArrayStreamParser.Extraction r = JsonArrayStreamParser.extract("[" + ITEMS + "]",
+                (JSONObject q) -> q.getString("question").equals("Q1") ? "缺少答案" : null);
+        assertEquals(1, r.items.size());
+        assertEquals("Q2 [註]", r.items.get(0).getString("question"));
+        assertEquals(List.of("第 1 項缺少答案"), r.errors);
+    }
+}
@@ -0,0 +1,256 @@
+package tw.shawn.util;
+
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * LlmGatewayTest：以本機 MockWebServer 模擬 OpenAI，驗證重試、退避抖動、斷路器與並行上限
+ */
+class LlmGatewayTest {
+
+    private MockWebServer server;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = new MockWebServer();
+        server.start();
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        server.shutdown();
+    }
+
+    // 建立指向模擬伺服器的閘道（連線與讀取逾時皆為 5 秒）
+    private LlmGateway gateway(int maxInFlight, long queueTimeoutMs, int maxRetries, long backoffMs,
+                               int failureThreshold, long openMs) {
+        return new LlmGateway(server.url("/v1/chat/completions").toString(), "test-key", "test-model",
+                maxInFlight, queueTimeoutMs, maxRetries, backoffMs, failureThreshold, openMs, 5_000, 5_000);
+    }
+
+    private static MockResponse ok(String content) {
+        JSONObject message = new JSONObject().put("role", "assistant").put("content", content);
+        JSONObject body = new JSONObject().put("choices", new JSONArray().put(new JSONObject().put("message", message)));
+        return new MockResponse().setResponseCode(200).setHeader("Content-Type", "application/json").setBody(body.toString());
+    }
+
+    private static MockResponse status(int code) {
+        return new MockResponse().setResponseCode(code).setBody("{\"error\":\"" + code + "\"}");
+    }
+
+    @Test
+    void retriesOn429And5xxWithJitteredBackoff() throws Exception {
+        LlmGateway g = gateway(4, 1_000, 2, 100, 5, 30_000);
+        server.enqueue(status(429));
+        server.enqueue(status(503));
+        server.enqueue(ok("答案"));
+
+        assertEquals("答案", g.chat("hi"));
+        assertEquals(3, server.getRequestCount());
+        assertEquals(3, g.getRequestCount());
+        assertEquals(2, g.getRetryCount());
+        assertEquals("CLOSED", g.getCircuitState());
+
+        // 每次請求都帶金鑰與模型
+        RecordedRequest first = server.takeRequest();
+        assertEquals("Bearer test-key", first.getHeader("Authorization"));
+        assertEquals("test-model", new JSONObject(first.getBody().readUtf8()).getString("model"));
+    }
+
+    @Test
+    void backoffDelayStaysWithinJitterBounds() {
+        Random random = new Random(42);
+        for (int attempt = 1; attempt <= 10; attempt++) {
+            long cap = 200L << Math.min(attempt - 1, 6); // 第 7 次以後不再加倍
+            long min = Long.MAX_VALUE;
+            long max = 0;
+            for (int i = 0; i < 2_000; i++) {
+                long delay = LlmGateway.backoffDelay(200, attempt, random);
+                assertTrue(delay >= 0 && delay <= cap, "第 " + attempt + " 次重試等待 " + delay + " ms 超出 [0, " + cap + "]");
+                min = Math.min(min, delay);
+                max = Math.max(max, delay);
+            }
+            // full jitter：取值遍布整個 [0, cap]，而不是只落在 [cap/2, cap]
+            assertTrue(min < cap / 10, "第 " + attempt + " 次重試最短等待 " + min + " ms");
+            assertTrue(max > cap * 9 / 10, "第 " + attempt + " 次重試最長等待 " + max + " ms");
+        }
+    }
+
+    @Test
+    void retryWaitsNoLongerThanBackoffCap() throws Exception {
+        LlmGateway g = gateway(4, 1_000, 1, 200, 5, 30_000);
+        server.enqueue(status(500));
+        server.enqueue(ok("ok"));
+
+        long start = System.nanoTime();
+        assertEquals("ok", g.chat("hi"));
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        // 第一次重試的等待時間不超過 base
+        assertTrue(elapsedMs < 2_000, "退避時間過長：" + elapsedMs + " ms");
+        assertEquals(1, g.getRetryCount());
+    }
+
+    @Test
+    void clientErrorFailsFastWithoutRetryOrBreaker() throws Exception {
+        LlmGateway g = gateway(4, 1_000, 3, 10, 1, 30_000);
+        server.enqueue(status(400));
+
+        LlmGateway.LlmException e = assertThrows(LlmGateway.LlmException.class, () -> g.chat("hi"));
+        assertEquals(400, e.getStatusCode());
+        assertEquals(1, server.getRequestCount());
+        assertEquals(0, g.getRetryCount());
+        assertEquals("CLOSED", g.getCircuitState());
+    }
+
+    @Test
+    void exhaustedRetriesThrowLastError() {
+        LlmGateway g = gateway(4, 1_000, 2, 10, 5, 30_000);
+        for (int i = 0; i < 3; i++) server.enqueue(status(502));
+
+        LlmGateway.LlmException e = assertThrows(LlmGateway.LlmException.class, () -> g.chat("hi"));
+        assertEquals(502, e.getStatusCode());
+        assertEquals(3, server.getRequestCount());
+        assertEquals(1, g.getFailureCount());
+    }
+
+    @Test
+    void breakerOpensAfterThresholdAndHalfOpenProbeCloses() throws Exception {
+        LlmGateway g = gateway(4, 1_000, 0, 10, 2, 300);
+        server.enqueue(status(500));
+        server.enqueue(status(500));
+
+        assertThrows(LlmGateway.LlmException.class, () -> g.chat("1"));
+        assertEquals("CLOSED", g.getCircuitState());
+        assertThrows(LlmGateway.LlmException.class, () -> g.chat("2"));
+        assertEquals("OPEN", g.getCircuitState());
+
+        // 斷路中：不送出請求，直接失敗
+        assertThrows(LlmGateway.UnavailableException.class, () -> g.chat("3"));
+        assertEquals(2, server.getRequestCount());
+
+        // 斷路時間過後放行一個試探請求，成功則恢復
+        Thread.sleep(350);
+        server.enqueue(ok("恢復"));
+        assertEquals("恢復", g.chat("4"));
+        assertEquals("CLOSED", g.getCircuitState());
+        assertEquals(3, server.getRequestCount());
+    }
+
+    @Test
+    void failedHalfOpenProbeReopensBreaker() throws Exception {
+        LlmGateway g = gateway(4, 1_000, 0, 10, 1, 300);
+        server.enqueue(status(500));
+        assertThrows(LlmGateway.LlmException.class, () -> g.chat("1"));
+        assertEquals("OPEN", g.getCircuitState());
+
+        Thread.sleep(350);
+        server.enqueue(status(503));
+        assertThrows(LlmGateway.LlmException.class, () -> g.chat("probe"));
+        assertEquals("OPEN", g.getCircuitState());
+        assertThrows(LlmGateway.UnavailableException.class, () -> g.chat("again"));
+        assertEquals(2, server.getRequestCount());
+    }
+
+    @Test
+    void halfOpenRejectsOtherCallsWhileProbeIsInFlight() throws Exception {
+        LlmGateway g = gateway(4, 1_000, 0, 10, 1, 300);
+        server.enqueue(status(500));
+        assertThrows(LlmGateway.LlmException.class, () -> g.chat("1"));
+        server.takeRequest(); // 取出已記錄的第一個請求
+        Thread.sleep(350);
+
+        CountDownLatch release = new CountDownLatch(1);
+        server.setDispatcher(blockingDispatcher(release));
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        try {
+            Future<String> probe = pool.submit(() -> g.chat("probe"));
+            assertNotNull(server.takeRequest(2, TimeUnit.SECONDS), "試探請求未送出");
+            assertEquals("HALF_OPEN", g.getCircuitState());
+
+            assertThrows(LlmGateway.UnavailableException.class, () -> g.chat("concurrent"));
+
+            release.countDown();
+            assertEquals("ok", probe.get(5, TimeUnit.SECONDS));
+            assertEquals("CLOSED", g.getCircuitState());
+        } finally {
+            release.countDown();
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void concurrencyLimitQueuesThenRejects() throws Exception {
+        LlmGateway g = gateway(2, 200, 0, 10, 5, 30_000);
+        CountDownLatch release = new CountDownLatch(1);
+        server.setDispatcher(blockingDispatcher(release));
+
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            Future<String> a = pool.submit(() -> g.chat("a"));
+            Future<String> b = pool.submit(() -> g.chat("b"));
+            assertNotNull(server.takeRequest(2, TimeUnit.SECONDS));
+            assertNotNull(server.takeRequest(2, TimeUnit.SECONDS));
+            assertEquals(2, g.getInFlightCount());
+
+            // 名額已滿：第三個請求排隊逾時後失敗，不會送到上游
+            long start = System.nanoTime();
+            assertThrows(LlmGateway.UnavailableException.class, () -> g.chat("c"));
+            assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 150);
+            assertEquals(1, g.getRejectedCount());
+            assertEquals(2, server.getRequestCount());
+
+            release.countDown();
+            assertEquals("ok", a.get(5, TimeUnit.SECONDS));
+            assertEquals("ok", b.get(5, TimeUnit.SECONDS));
+            assertEquals(0, g.getInFlightCount());
+        } finally {
+            release.countDown();
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void streamRetriesBeforeFirstDeltaAndDeliversChunks() throws Exception {
+        LlmGateway g = gateway(4, 1_000, 1, 10, 5, 30_000);
+        server.enqueue(status(503));
+        server.enqueue(new MockResponse().setResponseCode(200).setHeader("Content-Type", "text/event-stream")
+                .setBody("data: {\"choices\":[{\"delta\":{\"content\":\"你\"}}]}\n\n"
+                        + "data: {\"choices\":[{\"delta\":{\"content\":\"好\"}}]}\n\n"
+                        + "data: [DONE]\n\n"));
+
+        StringBuilder sb = new StringBuilder();
+        g.chatStream("hi", sb::append);
+        assertEquals("你好", sb.toString());
+        assertEquals(1, g.getRetryCount());
+        assertTrue(new JSONObject(server.takeRequest().getBody().readUtf8()).has("model"));
+        assertTrue(new JSONObject(server.takeRequest().getBody().readUtf8()).getBoolean("stream"));
+    }
+
+    // 收到請求後等待 release 才回應成功，用來讓請求停留在進行中
+    private static Dispatcher blockingDispatcher(CountDownLatch release) {
+        return new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+                release.await(5, TimeUnit.SECONDS);
+                return ok("ok");
+            }
+        };
+    }
+}